@@ -0,0 +1,39 @@
+package com.goldpricetracker.benchmarks;
+
+import com.goldpricetracker.backend.CalculatorLogic;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 均价计算器：CalculatorLogic.calculateNewAverage（含参数校验）。
+ * 作为纯算术路径的下限参照，回归时能看出是否意外引入了装箱或分配。
+ *
+ * 运行：java -jar target/benchmarks.jar AverageCalculatorBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AverageCalculatorBenchmark {
+
+    private double historyGrams = 12.5;
+    private double historyPrice = 462.80;
+    private double currentGrams = 3.0;
+    private double currentPrice = 480.50;
+
+    @Benchmark
+    public double calculateNewAverage() {
+        return CalculatorLogic.calculateNewAverage(historyGrams, historyPrice, currentGrams, currentPrice);
+    }
+}
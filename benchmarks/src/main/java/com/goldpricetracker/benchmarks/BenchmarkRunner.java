@@ -0,0 +1,36 @@
+package com.goldpricetracker.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * 一次跑完全部基准并开启 GC 分配统计 (gc.alloc.rate.norm = 每次操作分配的字节数)，
+ * 结果以 JSON 写到 results/ 下，便于与 results/baseline.json 对比。
+ *
+ * 运行：java -cp target/benchmarks.jar com.goldpricetracker.benchmarks.BenchmarkRunner [正则] [输出文件]
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {}
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : BenchmarkRunner.class.getPackageName() + ".*Benchmark";
+        String output = args.length > 1 ? args[1] : "results/latest.json";
+        File parent = new File(output).getAbsoluteFile().getParentFile();
+        if (parent != null) parent.mkdirs();
+
+        Options options = new OptionsBuilder()
+            .include(include)
+            .addProfiler(GCProfiler.class)
+            .resultFormat(ResultFormatType.JSON)
+            .result(output)
+            .build();
+        new Runner(options).run();
+    }
+}
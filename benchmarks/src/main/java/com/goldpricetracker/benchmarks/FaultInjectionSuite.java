@@ -0,0 +1,337 @@
+package com.goldpricetracker.benchmarks;
+
+import com.goldpricetracker.backend.PriceService;
+import com.goldpricetracker.backend.PriceSnapshot;
+import com.goldpricetracker.backend.PriceSource;
+import com.goldpricetracker.backend.SinaQuoteParser;
+import com.goldpricetracker.backend.SourceHealthMonitor;
+import com.goldpricetracker.benchmarks.StubUpstream.Fault;
+import com.goldpricetracker.benchmarks.StubUpstream.Upstream;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 上游故障注入套件：让本地桩服务 StubUpstream 按场景返回慢首字节、逐字节慢速正文、连接重置、
+ * HTTP 429/5xx、格式错误的 hq_str 与全零价格，对每个场景连续执行若干次 PriceService.fetchPrices()，断言：
+ *
+ * 1. 有界延迟：每个 tick 不超过 tick 截止时间 + 余量；上游立即报错的场景不超过 FAST_BUDGET_MS。
+ * 2. 兜底正确：稳态快照的国际金价、汇率、国内金价与来源标志位与预期一致（备用源 / 缓存 / 推算），
+ *    且任何 tick 都不会给出 0 价格。
+ * 3. 无线程泄漏：超时被取消的请求不会继续占用 OkHttp 调度线程，稳态下线程数不随 tick 增长。
+ *
+ * 每个场景使用新的 PriceService（熔断状态互不影响），时钟固定在开市时段，并预置与样本不同的缓存值，
+ * 从而能区分 "实时值"、"备用源" 与 "沿用缓存"。任何断言失败时以退出码 1 结束，可直接接入 CI。
+ *
+ * 运行：
+ * java -cp target/benchmarks.jar com.goldpricetracker.benchmarks.FaultInjectionSuite
+ */
+public final class FaultInjectionSuite {
+
+    // 2024-01-05 (周五) 10:15 北京时间，上海黄金交易所日盘
+    private static final Instant OPEN_MARKET = Instant.parse("2024-01-05T02:15:00Z");
+    // 预置缓存：与 Payloads 中的任何样本都不同
+    private static final double SEED_DOMESTIC = 479.0;
+    private static final double SEED_INTERNATIONAL = 2030.0;
+    private static final double SEED_RATE = 7.10;
+    // Payloads.BINANCE / Payloads.COINBASE 中的价格
+    private static final double BINANCE_PRICE = 2041.35;
+    private static final double COINBASE_PRICE = 2040.87;
+    private static final double GRAMS_PER_OUNCE = 31.1034768;
+
+    /** 上游立即报错（重置、429/5xx、坏数据）时单个 tick 的耗时上限 */
+    private static final long FAST_BUDGET_MS = 1000;
+    /** 截止时间之后允许的收尾耗时：取消请求、校验、生成快照 */
+    private static final long DEADLINE_SLACK_MS = 500;
+
+    private final StubUpstream stub;
+    private final Options options;
+    private final Expectation live;
+    private final List<String> failures = new ArrayList<>();
+
+    private FaultInjectionSuite(StubUpstream stub, Options options) {
+        this.stub = stub;
+        this.options = options;
+        double[] slots = new double[SinaQuoteParser.SLOT_COUNT];
+        SinaQuoteParser.parse(Payloads.SINA.getBytes(Payloads.SINA_CHARSET), slots);
+        this.live = new Expectation(slots[SinaQuoteParser.DOMESTIC], slots[SinaQuoteParser.INTERNATIONAL],
+            slots[SinaQuoteParser.RATE], 0, PriceSource.SINA);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        try (StubUpstream stub = StubUpstream.start()) {
+            stub.installSystemProperties();
+            // 慢首字节要超过截止时间，才能验证截止时间真正生效
+            stub.setStallMillis(Math.max(8000, options.deadlineMs + 2000));
+            FaultInjectionSuite suite = new FaultInjectionSuite(stub, options);
+            suite.run();
+            if (!suite.failures.isEmpty()) {
+                System.out.println();
+                System.out.println("失败 " + suite.failures.size() + " 项：");
+                suite.failures.forEach(f -> System.out.println("  - " + f));
+                System.exit(1);
+            }
+            System.out.println();
+            System.out.println("全部通过");
+        }
+    }
+
+    private void run() throws InterruptedException {
+        long deadlineBudget = options.deadlineMs + DEADLINE_SLACK_MS;
+        Expectation binance = backup(PriceSource.BINANCE, BINANCE_PRICE);
+        Expectation coinbase = backup(PriceSource.COINBASE, COINBASE_PRICE);
+        Expectation cached = new Expectation(calculated(SEED_INTERNATIONAL, SEED_RATE), SEED_INTERNATIONAL, SEED_RATE,
+            PriceSnapshot.INTERNATIONAL_CACHED | PriceSnapshot.RATE_CACHED | PriceSnapshot.DOMESTIC_CALCULATED, null);
+
+        // 预热：加载类、建立连接池，避免首个场景把一次性开销算进延迟
+        tick(newService());
+
+        System.out.printf(Locale.ROOT, "故障注入：每个场景 %d 个 tick，截止时间 %d ms，慢首字节 %d ms%n%n",
+            options.ticks, options.deadlineMs, Math.max(8000, options.deadlineMs + 2000));
+        System.out.printf(Locale.ROOT, "%-38s %8s %8s %6s %8s  %s%n", "场景", "max ms", "预算 ms", "flags", "OkHttp", "结果");
+
+        scenario("正常", faults(), FAST_BUDGET_MS, live);
+        scenario("新浪 慢首字节", faults(Upstream.SINA, Fault.SLOW_FIRST_BYTE), deadlineBudget, binance);
+        scenario("新浪 慢速正文", faults(Upstream.SINA, Fault.TRICKLE), deadlineBudget, binance);
+        scenario("新浪 连接重置", faults(Upstream.SINA, Fault.RESET), FAST_BUDGET_MS, binance);
+        scenario("新浪 HTTP 429", faults(Upstream.SINA, Fault.HTTP_429), FAST_BUDGET_MS, binance);
+        scenario("新浪 HTTP 500", faults(Upstream.SINA, Fault.HTTP_500), FAST_BUDGET_MS, binance);
+        scenario("新浪 格式错误", faults(Upstream.SINA, Fault.MALFORMED), FAST_BUDGET_MS, binance);
+        scenario("新浪 全零价格", faults(Upstream.SINA, Fault.ZERO_PRICES), FAST_BUDGET_MS, binance);
+        scenario("Binance 慢首字节 (新浪正常)", faults(Upstream.BINANCE, Fault.SLOW_FIRST_BYTE), FAST_BUDGET_MS, live);
+        scenario("新浪 503 + Binance 全零", faults(Upstream.SINA, Fault.HTTP_503, Upstream.BINANCE, Fault.ZERO_PRICES),
+            FAST_BUDGET_MS, coinbase);
+        scenario("新浪 429 + Binance 格式错误", faults(Upstream.SINA, Fault.HTTP_429, Upstream.BINANCE, Fault.MALFORMED),
+            FAST_BUDGET_MS, coinbase);
+        scenario("新浪 慢首字节 + Binance 慢速正文",
+            faults(Upstream.SINA, Fault.SLOW_FIRST_BYTE, Upstream.BINANCE, Fault.TRICKLE), deadlineBudget, coinbase);
+        scenario("全部 连接重置", faults(Upstream.SINA, Fault.RESET, Upstream.BINANCE, Fault.RESET,
+            Upstream.COINBASE, Fault.RESET), FAST_BUDGET_MS, cached);
+        scenario("全部 慢首字节", faults(Upstream.SINA, Fault.SLOW_FIRST_BYTE, Upstream.BINANCE, Fault.SLOW_FIRST_BYTE,
+            Upstream.COINBASE, Fault.SLOW_FIRST_BYTE), deadlineBudget, cached);
+        circuitBreaker(binance);
+    }
+
+    /**
+     * 执行一个场景：注入故障，连续 tick，检查延迟、稳态快照与线程
+     */
+    private void scenario(String name, Map<Upstream, Fault> faults, long budgetMs, Expectation expected)
+            throws InterruptedException {
+        stub.reset();
+        faults.forEach(stub::setFault);
+        PriceService service = newService();
+        List<String> problems = new ArrayList<>();
+
+        long maxMs = 0;
+        int firstHalfThreads = 0;
+        int secondHalfThreads = 0;
+        PriceSnapshot last = null;
+        for (int t = 0; t < options.ticks; t++) {
+            long start = System.nanoTime();
+            last = tick(service);
+            long ms = (System.nanoTime() - start) / 1_000_000;
+            maxMs = Math.max(maxMs, ms);
+            if (ms > budgetMs) problems.add("tick " + t + " 耗时 " + ms + " ms，超过预算 " + budgetMs + " ms");
+            if (last.getDomestic() <= 0 || last.getInternational() <= 0 || last.getRate() <= 0) {
+                problems.add("tick " + t + " 给出了无效价格: " + last);
+            }
+            int threads = LoadTest.countThreads("OkHttp");
+            if (t < options.ticks / 2) {
+                firstHalfThreads = Math.max(firstHalfThreads, threads);
+            } else {
+                secondHalfThreads = Math.max(secondHalfThreads, threads);
+            }
+            Thread.sleep(options.intervalMs);
+        }
+        expected.check(last, problems);
+        // 稳态下每个 tick 复用空闲的调度线程；被取消的请求若仍占着线程，线程数会随 tick 持续增长
+        if (secondHalfThreads > firstHalfThreads + 1) {
+            problems.add("OkHttp 线程数持续增长: 前半程峰值 " + firstHalfThreads + "，后半程峰值 " + secondHalfThreads);
+        }
+        int busy = awaitIdle();
+        if (busy > 0) problems.add(busy + " 个 OkHttp 线程在场景结束后仍在执行请求");
+
+        report(name, maxMs, budgetMs, last, busy, problems);
+    }
+
+    /**
+     * 熔断器：新浪连续失败后打开，冷却期内不再请求新浪；上游恢复后，冷却期满的探测请求成功即恢复实时数据
+     */
+    private void circuitBreaker(Expectation backup) throws InterruptedException {
+        String name = "新浪 熔断与恢复";
+        stub.reset();
+        stub.setFault(Upstream.SINA, Fault.RESET);
+        PriceService service = newService();
+        SourceHealthMonitor health = service.getSourceHealth();
+        List<String> problems = new ArrayList<>();
+        long maxMs = 0;
+
+        PriceSnapshot last = null;
+        for (int t = 0; t < SourceHealthMonitor.FAILURE_THRESHOLD; t++) {
+            long start = System.nanoTime();
+            last = tick(service);
+            maxMs = Math.max(maxMs, (System.nanoTime() - start) / 1_000_000);
+        }
+        if (health.getState(PriceSource.SINA) != SourceHealthMonitor.CircuitState.OPEN) {
+            problems.add("连续失败 " + SourceHealthMonitor.FAILURE_THRESHOLD + " 次后熔断器未打开: "
+                    + health.getState(PriceSource.SINA));
+        }
+
+        long sinaRequests = stub.requestCount(Upstream.SINA);
+        for (int t = 0; t < 3; t++) {
+            long start = System.nanoTime();
+            last = tick(service);
+            maxMs = Math.max(maxMs, (System.nanoTime() - start) / 1_000_000);
+        }
+        if (stub.requestCount(Upstream.SINA) != sinaRequests) {
+            problems.add("熔断期间仍向新浪发出了 " + (stub.requestCount(Upstream.SINA) - sinaRequests) + " 个请求");
+        }
+        backup.check(last, problems);
+
+        // 上游恢复，等冷却期满后由探测请求关闭熔断器
+        stub.reset();
+        Thread.sleep(SourceHealthMonitor.BASE_COOLDOWN_MS + 500);
+        long start = System.nanoTime();
+        last = tick(service);
+        maxMs = Math.max(maxMs, (System.nanoTime() - start) / 1_000_000);
+        // 健康度在回调线程上于本轮结束之后记录，稍等片刻再读
+        long until = System.nanoTime() + 1_000_000_000L;
+        while (health.getState(PriceSource.SINA) != SourceHealthMonitor.CircuitState.CLOSED
+                && System.nanoTime() - until < 0) {
+            Thread.sleep(10);
+        }
+        if (health.getState(PriceSource.SINA) != SourceHealthMonitor.CircuitState.CLOSED) {
+            problems.add("探测成功后熔断器未关闭: " + health.getState(PriceSource.SINA));
+        }
+        live.check(last, problems);
+        if (maxMs > FAST_BUDGET_MS) problems.add("最慢 tick " + maxMs + " ms，超过预算 " + FAST_BUDGET_MS + " ms");
+        int busy = awaitIdle();
+        if (busy > 0) problems.add(busy + " 个 OkHttp 线程在场景结束后仍在执行请求");
+
+        report(name, maxMs, FAST_BUDGET_MS, last, busy, problems);
+    }
+
+    private void report(String name, long maxMs, long budgetMs, PriceSnapshot last, int busy, List<String> problems) {
+        System.out.printf(Locale.ROOT, "%-38s %8d %8d %6d %8s  %s%n", name, maxMs, budgetMs,
+            last == null ? -1 : last.getFlags(), busy + " 忙", problems.isEmpty() ? "通过" : "失败");
+        for (String problem : problems) {
+            System.out.println("    " + problem);
+            failures.add(name + ": " + problem);
+        }
+    }
+
+    private PriceService newService() {
+        PriceService service = new PriceService();
+        service.setClock(Clock.fixed(OPEN_MARKET, ZoneId.of("Asia/Shanghai")));
+        service.setTickDeadline(options.deadlineMs);
+        service.seed(new PriceSnapshot(0, OPEN_MARKET.toEpochMilli(), SEED_DOMESTIC, SEED_INTERNATIONAL, SEED_RATE,
+            0, PriceSource.SINA));
+        return service;
+    }
+
+    private static PriceSnapshot tick(PriceService service) {
+        return service.fetchPrices();
+    }
+
+    /**
+     * 等待 OkHttp 调度线程上的请求全部结束（执行请求时线程名为 "OkHttp &lt;url&gt;"，空闲时为 "OkHttp Dispatcher"）。
+     * 被取消的请求应在连接关闭后立即让出线程。
+     * @return 超时后仍在执行请求的线程数
+     */
+    private static int awaitIdle() throws InterruptedException {
+        long until = System.nanoTime() + 2_000_000_000L;
+        int busy;
+        while ((busy = busyOkHttpThreads()) > 0 && System.nanoTime() - until < 0) {
+            Thread.sleep(50);
+        }
+        return busy;
+    }
+
+    private static int busyOkHttpThreads() {
+        int busy = 0;
+        for (ThreadInfo info : ManagementFactory.getThreadMXBean().dumpAllThreads(false, false)) {
+            if (info.getThreadName().startsWith("OkHttp http")) busy++;
+        }
+        return busy;
+    }
+
+    private static Expectation backup(PriceSource source, double price) {
+        return new Expectation(calculated(price, SEED_RATE), price, SEED_RATE,
+            PriceSnapshot.INTERNATIONAL_BACKUP | PriceSnapshot.RATE_CACHED | PriceSnapshot.DOMESTIC_CALCULATED, source);
+    }
+
+    private static double calculated(double international, double rate) {
+        return international / GRAMS_PER_OUNCE * rate;
+    }
+
+    private static Map<Upstream, Fault> faults(Object... pairs) {
+        Map<Upstream, Fault> map = new EnumMap<>(Upstream.class);
+        for (int i = 0; i < pairs.length; i += 2) map.put((Upstream) pairs[i], (Fault) pairs[i + 1]);
+        return map;
+    }
+
+    /** 稳态快照的预期值 */
+    private static final class Expectation {
+        private static final double EPSILON = 1e-6;
+
+        final double domestic;
+        final double international;
+        final double rate;
+        final int flags;
+        final PriceSource source;
+
+        Expectation(double domestic, double international, double rate, int flags, PriceSource source) {
+            this.domestic = domestic;
+            this.international = international;
+            this.rate = rate;
+            this.flags = flags;
+            this.source = source;
+        }
+
+        void check(PriceSnapshot snapshot, List<String> problems) {
+            if (Math.abs(snapshot.getInternational() - international) > EPSILON
+                    || Math.abs(snapshot.getRate() - rate) > EPSILON
+                    || Math.abs(snapshot.getDomestic() - domestic) > EPSILON
+                    || snapshot.getFlags() != flags
+                    || snapshot.getInternationalSource() != source) {
+                problems.add(String.format(Locale.ROOT,
+                    "稳态快照不符: 预期 domestic=%.4f international=%.2f rate=%.4f flags=%d source=%s，实际 %s",
+                    domestic, international, rate, flags, source == null ? "-" : source.id(), snapshot));
+            }
+        }
+    }
+
+    static final class Options {
+        int ticks = 6;
+        long deadlineMs = 3000;
+        long intervalMs = 100;
+
+        static Options parse(String[] args) {
+            Options o = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String value = i + 1 < args.length ? args[i + 1] : null;
+                switch (args[i]) {
+                    case "--ticks": o.ticks = Integer.parseInt(value); i++; break;
+                    case "--deadline": o.deadlineMs = Long.parseLong(value); i++; break;
+                    case "--interval": o.intervalMs = Long.parseLong(value); i++; break;
+                    default:
+                        throw new IllegalArgumentException("未知参数: " + args[i] + "（可用：--ticks --deadline --interval）");
+                }
+            }
+            int threshold = SourceHealthMonitor.FAILURE_THRESHOLD;
+            if (o.ticks <= threshold) {
+                throw new IllegalArgumentException("--ticks 至少为 " + (threshold + 1) + "（熔断器在第 " + threshold + " 次失败后打开）");
+            }
+            return o;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.goldpricetracker.benchmarks;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 备用源 (Binance / Coinbase) 的 JSON 解析。
+ *
+ * readTree 组与 PriceService 的线上路径一致（每次构建完整的 JsonNode 树）；
+ * streaming 组用 JsonParser 只找目标字段，作为"不建树"能省多少的参照。
+ *
+ * 运行：java -jar target/benchmarks.jar JacksonParseBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JacksonParseBenchmark {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final JsonFactory factory = mapper.getFactory();
+    private byte[] binance;
+    private byte[] coinbase;
+
+    @Setup
+    public void setup() {
+        binance = Payloads.BINANCE.getBytes(StandardCharsets.UTF_8);
+        coinbase = Payloads.COINBASE.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public double binanceReadTree() throws IOException {
+        JsonNode node = mapper.readTree(binance);
+        return node.get("price").asDouble();
+    }
+
+    @Benchmark
+    public double coinbaseReadTree() throws IOException {
+        JsonNode node = mapper.readTree(coinbase);
+        return node.get("data").get("amount").asDouble();
+    }
+
+    @Benchmark
+    public double binanceStreaming() throws IOException {
+        return findDouble(binance, "price");
+    }
+
+    @Benchmark
+    public double coinbaseStreaming() throws IOException {
+        return findDouble(coinbase, "amount");
+    }
+
+    private double findDouble(byte[] body, String field) throws IOException {
+        try (JsonParser parser = factory.createParser(body)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token == JsonToken.FIELD_NAME && field.equals(parser.currentName())) {
+                    parser.nextToken();
+                    return parser.getValueAsDouble();
+                }
+            }
+        }
+        return 0.0;
+    }
+}
@@ -0,0 +1,56 @@
+package com.goldpricetracker.benchmarks;
+
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * PriceService 改用 TradingCalendar 之前的休市判断（原样保留），作为基准对照组。
+ * 每次调用都构造 LocalDateTime 并逐段比较 LocalTime，不识别节假日。
+ */
+final class LegacyMarketHours {
+
+    private LegacyMarketHours() {}
+
+    static boolean isMarketClosed(Clock clock) {
+        // 使用注入的 Clock 获取当前时间 (默认为 Asia/Shanghai)
+        LocalDateTime now = LocalDateTime.now(clock);
+        DayOfWeek day = now.getDayOfWeek();
+        LocalTime time = now.toLocalTime();
+
+        // 周日全天休市
+        if (day == DayOfWeek.SUNDAY) {
+            return true;
+        }
+
+        // 周六 02:30 之后休市 (周五夜盘结束)
+        if (day == DayOfWeek.SATURDAY) {
+            return time.isAfter(LocalTime.of(2, 30));
+        }
+
+        // 周一 09:00 之前休市 (周一凌晨无夜盘)
+        if (day == DayOfWeek.MONDAY) {
+            if (time.isBefore(LocalTime.of(9, 0))) {
+                return true;
+            }
+        } else {
+            // 周二至周五 02:30 - 09:00 休市 (夜盘结束到早盘开始之间)
+            if (time.isAfter(LocalTime.of(2, 30)) && time.isBefore(LocalTime.of(9, 0))) {
+                return true;
+            }
+        }
+
+        // 午间休市 11:30 - 13:30
+        if (time.isAfter(LocalTime.of(11, 30)) && time.isBefore(LocalTime.of(13, 30))) {
+            return true;
+        }
+
+        // 傍晚休市 15:30 - 20:00
+        if (time.isAfter(LocalTime.of(15, 30)) && time.isBefore(LocalTime.of(20, 0))) {
+            return true;
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,53 @@
+package com.goldpricetracker.benchmarks;
+
+import java.util.Map;
+
+/**
+ * PriceService 改用 SinaQuoteParser 之前的解析实现（原样保留），作为基准对照组。
+ * 先把响应转成 String，再对每个品种做 contains / indexOf / substring / split。
+ */
+final class LegacySinaParser {
+
+    private LegacySinaParser() {}
+
+    static void parseSinaResponse(String content, Map<String, Double> prices) {
+        // 1. 处理国际金价 (hf_XAU)
+        if (content.contains("hf_XAU")) {
+            String[] parts = extractData(content, "hf_XAU");
+            if (parts.length > 0) {
+                try {
+                    prices.put("international", Double.parseDouble(parts[0]));
+                } catch (NumberFormatException ignored) {}
+            }
+        }
+
+        // 2. 处理国内金价 (gds_AUTD)
+        if (content.contains("gds_AUTD")) {
+            String[] parts = extractData(content, "gds_AUTD");
+            if (parts.length > 0) {
+                try {
+                    prices.put("domestic", Double.parseDouble(parts[0]));
+                } catch (NumberFormatException ignored) {}
+            }
+        }
+
+        // 3. 处理汇率 (USDCNY)
+        if (content.contains("USDCNY")) {
+            String[] parts = extractData(content, "USDCNY");
+            if (parts.length > 1) {
+                try {
+                    prices.put("rate", Double.parseDouble(parts[1]));
+                } catch (NumberFormatException ignored) {}
+            }
+        }
+    }
+
+    private static String[] extractData(String content, String symbol) {
+        int start = content.indexOf(symbol + "=\"") + symbol.length() + 2;
+        int end = content.indexOf("\"", start);
+        if (start > symbol.length() + 1 && end > start) {
+            return content.substring(start, end).split(",");
+        }
+        return new String[0];
+    }
+}
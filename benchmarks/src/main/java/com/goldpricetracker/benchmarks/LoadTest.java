@@ -0,0 +1,431 @@
+package com.goldpricetracker.benchmarks;
+
+import com.goldpricetracker.backend.LatencyHistogram;
+import com.goldpricetracker.backend.PriceDataServer;
+import com.goldpricetracker.backend.PriceHub;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * PriceDataServer 端到端压测：同一进程内启动本地上游桩、PriceHub 与 PriceDataServer 并施压，完全离线。
+ *
+ * 负载由三部分组成，可以同时开启：
+ * 1. 请求客户端 (--clients)：每个客户端一个 keep-alive 连接（NioLoadClient），按 --mix 的权重请求 /price、/settings 等接口；
+ *    --rate 为 0 时每个客户端收到响应后立刻发下一个（闭环），
+ *    大于 0 时按总速率定时发出（开环），延迟从计划发送时刻算起，避免协调遗漏。
+ *    收到 503 时按 Retry-After 等待，连接被拒时退避重连。
+ * 2. SSE 连接 (--streams)：统计收到的事件数与 "事件时间戳 → 收到" 的延迟。
+ * 3. 长轮询客户端 (--long-polls)：循环 /price?after=序号。
+ * SSE 与长轮询用 java.net.http 的异步客户端。
+ *
+ * 报告吞吐、状态码分布、延迟分位、平台线程数（总数与服务端线程）以及 GC 后的堆增长。
+ * 线程与堆都是整个进程的数字，包含施压端本身；基线取自施压开始之前。
+ *
+ * 运行（建议在临时目录中，服务会写 data/ 与配置文件）：
+ * java -cp target/benchmarks.jar com.goldpricetracker.benchmarks.LoadTest --clients 100 --duration 30
+ * 上万连接时先调高文件描述符上限：ulimit -n 65536
+ */
+public final class LoadTest {
+
+    // 长轮询收到 503 或连接出错后等待多久再重试（与服务端的 Retry-After 一致）
+    private static final long RETRY_BACKOFF_SECONDS = 1;
+
+    private final Options options;
+    private final URI base;
+    private final HttpClient client;
+    private final ExecutorService clientExecutor;
+    private final ScheduledExecutorService ticker;
+    private volatile boolean running = true;
+    private volatile Phase phase;
+    // /price 等普通请求的施压端；SSE 与长轮询连接数少，仍用 java.net.http
+    private NioLoadClient requests;
+    // 已建立的 SSE 连接数，跨预热与测量阶段
+    private final AtomicInteger streamsOpen = new AtomicInteger();
+
+    private LoadTest(Options options) {
+        this.options = options;
+        this.base = URI.create("http://127.0.0.1:" + options.port);
+        this.clientExecutor = Executors.newFixedThreadPool(options.ioThreads, daemon("load-client"));
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .executor(clientExecutor)
+            .build();
+        this.ticker = Executors.newSingleThreadScheduledExecutor(daemon("load-ticker"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        System.setProperty("gold.server.port", String.valueOf(options.port));
+        // 服务端的 jdk.httpserver.* 属性在本进程第一个 HttpServer（桩服务）创建时读取，必须先于 StubUpstream.start()
+        PriceDataServer.applyServerProperties();
+        StubUpstream stub = StubUpstream.start();
+        stub.setDelayMillis(options.upstreamDelayMs);
+        stub.installSystemProperties();
+
+        PriceHub.getInstance().start();
+        PriceDataServer.startAsync();
+        if (PriceHub.getInstance().refresh() == null) {
+            throw new IllegalStateException("没有拿到首个快照，检查桩服务与端口 " + options.port);
+        }
+
+        LoadTest test = new LoadTest(options);
+        try {
+            test.run();
+        } finally {
+            PriceHub.getInstance().stop();
+            stub.close();
+            System.exit(0);
+        }
+    }
+
+    private void run() throws Exception {
+        checkFileDescriptors();
+        Baseline baseline = Baseline.take();
+        System.out.printf(Locale.ROOT, "压测：%d 个请求客户端 (%s)，%d 个 SSE，%d 个长轮询，预热 %ds + 测量 %ds，混合 %s%n",
+            options.clients, options.rate > 0 ? options.rate + " req/s 开环" : "闭环", options.streams,
+            options.longPolls, options.warmupSeconds, options.durationSeconds, options.mixSpec);
+
+        phase = new Phase();
+        for (int i = 0; i < options.streams; i++) openStream();
+        for (int i = 0; i < options.longPolls; i++) longPoll(-1);
+        if (options.clients > 0) {
+            requests = new NioLoadClient(new InetSocketAddress("127.0.0.1", options.port), options.clients,
+                options.rate > 0 ? null : options::pick, new Recorder());
+            requests.start();
+            if (options.rate > 0) startOpenLoop();
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        int peakThreads = 0;
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(options.warmupSeconds);
+        while (System.nanoTime() < end) {
+            Thread.sleep(200);
+            peakThreads = Math.max(peakThreads, threads.getThreadCount());
+        }
+        // 预热结束：换一组新的统计，只报告测量阶段
+        phase = new Phase();
+        long start = System.nanoTime();
+        end = start + TimeUnit.SECONDS.toNanos(options.durationSeconds);
+        long nextReport = start + TimeUnit.SECONDS.toNanos(5);
+        long lastCompleted = 0;
+        while (System.nanoTime() < end) {
+            Thread.sleep(200);
+            peakThreads = Math.max(peakThreads, threads.getThreadCount());
+            if (System.nanoTime() >= nextReport) {
+                long completed = phase.completed.get();
+                System.out.printf(Locale.ROOT, "  %3ds  %8.0f req/s  SSE 事件 %d  线程 %d%n",
+                    TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start), (completed - lastCompleted) / 5.0,
+                    phase.streamEvents.get(), threads.getThreadCount());
+                lastCompleted = completed;
+                nextReport += TimeUnit.SECONDS.toNanos(5);
+            }
+        }
+        Phase measured = phase;
+        double seconds = (System.nanoTime() - start) / 1e9;
+        int serverThreads = countThreads("price-server", "sse-", "HTTP-Dispatcher", "price-long-poll");
+        running = false;
+        ticker.shutdownNow();
+        if (requests != null) requests.close();
+        Thread.sleep(500);
+        report(measured, seconds, baseline, peakThreads, serverThreads);
+    }
+
+    private void startOpenLoop() {
+        long start = System.nanoTime();
+        double intervalNanos = 1e9 / options.rate;
+        AtomicLong issued = new AtomicLong();
+        ticker.scheduleAtFixedRate(() -> {
+            long due = (long) ((System.nanoTime() - start) / intervalNanos);
+            for (long n = issued.get(); n < due && running; n = issued.incrementAndGet()) {
+                // 没有空闲连接（在途请求已达 --clients 上限）时由 requests 计为未能按计划发出
+                requests.submit(options.pick(n), start + (long) (n * intervalNanos));
+            }
+        }, 0, 1, TimeUnit.MILLISECONDS);
+    }
+
+    /** 请求客户端的结果统计，在 NioLoadClient 的线程上回调 */
+    private final class Recorder implements NioLoadClient.Listener {
+        @Override
+        public void onResponse(long startNanos, int status) {
+            record(startNanos, status, null);
+        }
+
+        @Override
+        public void onError(long startNanos, Throwable error) {
+            record(startNanos, 0, error);
+        }
+
+        @Override
+        public void onUnsent() {
+            phase.unsent.incrementAndGet();
+        }
+    }
+
+    private void record(long startNanos, int status, Throwable error) {
+        Phase p = phase;
+        p.latency.record(System.nanoTime() - startNanos);
+        p.completed.incrementAndGet();
+        if (error != null) {
+            p.errors.incrementAndGet();
+            p.lastError.set(rootCause(error).toString());
+        } else if (status >= 200 && status < 300 || status == 304) {
+            p.ok.incrementAndGet();
+            p.servedLatency.record(System.nanoTime() - startNanos);
+        } else if (status == 503) {
+            p.shed.incrementAndGet();
+        } else {
+            p.otherStatus.incrementAndGet();
+        }
+    }
+
+    private void longPoll(long after) {
+        if (!running) return;
+        HttpRequest request = HttpRequest.newBuilder(base.resolve("/price?after=" + after + "&timeout=20000"))
+            .timeout(Duration.ofSeconds(30)).GET().build();
+        client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, error) -> {
+            long next = after;
+            if (error != null) {
+                phase.errors.incrementAndGet();
+                phase.lastError.set(rootCause(error).toString());
+            } else if (response.statusCode() == 200) {
+                phase.longPollResponses.incrementAndGet();
+                next = parseLong(response.body(), "\"seq\":", after);
+            } else if (response.statusCode() == 503) {
+                phase.shed.incrementAndGet();
+            }
+            if (error != null || response.statusCode() == 503) {
+                long retryAfter = next;
+                ticker.schedule(() -> longPoll(retryAfter), RETRY_BACKOFF_SECONDS, TimeUnit.SECONDS);
+            } else {
+                longPoll(next);
+            }
+        });
+    }
+
+    private void openStream() {
+        HttpRequest request = HttpRequest.newBuilder(base.resolve("/stream")).GET().build();
+        client.sendAsync(request, HttpResponse.BodyHandlers.fromLineSubscriber(new Flow.Subscriber<String>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                streamsOpen.incrementAndGet();
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(String line) {
+                if (!line.startsWith("data:")) return;
+                Phase p = phase;
+                p.streamEvents.incrementAndGet();
+                long ts = parseLong(line, "\"ts\":", -1);
+                if (ts > 0) p.streamLag.record(TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - ts));
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                if (running) {
+                    phase.errors.incrementAndGet();
+                    phase.lastError.set(rootCause(throwable).toString());
+                }
+            }
+
+            @Override
+            public void onComplete() {}
+        }));
+    }
+
+    private void report(Phase p, double seconds, Baseline baseline, int peakThreads, int serverThreads) {
+        Baseline after = Baseline.take();
+        StringBuilder sb = new StringBuilder("\n==== 结果 ====\n");
+        sb.append(String.format(Locale.ROOT, "请求        完成 %d，%.0f req/s；2xx/304 %d，503 %d，其他状态 %d，异常 %d，未按计划发出 %d%n",
+            p.completed.get(), p.completed.get() / seconds, p.ok.get(), p.shed.get(), p.otherStatus.get(),
+            p.errors.get(), p.unsent.get()));
+        sb.append("延迟        ").append(percentiles(p.latency)).append('\n');
+        sb.append("  其中成功  ").append(percentiles(p.servedLatency)).append('\n');
+        if (options.streams > 0) {
+            sb.append(String.format(Locale.ROOT, "SSE         已连接 %d/%d，事件 %d，", streamsOpen.get(), options.streams,
+                p.streamEvents.get())).append("推送延迟 ").append(percentiles(p.streamLag)).append('\n');
+        }
+        if (options.longPolls > 0) {
+            sb.append(String.format(Locale.ROOT, "长轮询      %d 个客户端收到 %d 次更新%n", options.longPolls, p.longPollResponses.get()));
+        }
+        sb.append(String.format(Locale.ROOT, "线程        开始前 %d，峰值 %d，结束时 %d（其中服务端 %d）%n",
+            baseline.threads, peakThreads, after.threads, serverThreads));
+        sb.append(String.format(Locale.ROOT, "堆 (GC 后)  开始前 %.1f MB，结束时 %.1f MB，增长 %+.1f MB%n",
+            baseline.heapBytes / 1048576.0, after.heapBytes / 1048576.0,
+            (after.heapBytes - baseline.heapBytes) / 1048576.0));
+        String lastError = p.lastError.get();
+        if (lastError != null) sb.append("最后一个异常 ").append(lastError).append('\n');
+        System.out.print(sb);
+    }
+
+    /**
+     * 客户端与服务端在同一进程，每个连接占两个文件描述符；上限不够时提前提示，而不是在报告里看到一堆异常
+     */
+    private void checkFileDescriptors() {
+        if (!(ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.UnixOperatingSystemMXBean)) return;
+        com.sun.management.UnixOperatingSystemMXBean os =
+            (com.sun.management.UnixOperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        long needed = 2L * (options.clients + options.streams + options.longPolls) + 256;
+        if (os.getMaxFileDescriptorCount() < needed) {
+            System.out.printf(Locale.ROOT, "警告：文件描述符上限 %d，本次约需 %d，请先执行 ulimit -n %d%n",
+                os.getMaxFileDescriptorCount(), needed, needed);
+        }
+    }
+
+    static String percentiles(LatencyHistogram h) {
+        if (h.count() == 0) return "无样本";
+        return String.format(Locale.ROOT, "p50 %.2f ms  p90 %.2f ms  p99 %.2f ms  p99.9 %.2f ms  max %.2f ms",
+            h.quantileNanos(0.5) / 1e6, h.quantileNanos(0.9) / 1e6, h.quantileNanos(0.99) / 1e6,
+            h.quantileNanos(0.999) / 1e6, h.maxNanos() / 1e6);
+    }
+
+    static int countThreads(String... prefixes) {
+        int count = 0;
+        for (ThreadInfo info : ManagementFactory.getThreadMXBean().dumpAllThreads(false, false)) {
+            for (String prefix : prefixes) {
+                if (info.getThreadName().startsWith(prefix)) {
+                    count++;
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    static long parseLong(String text, String key, long fallback) {
+        int at = text.indexOf(key);
+        if (at < 0) return fallback;
+        int i = at + key.length();
+        int j = i;
+        while (j < text.length() && Character.isDigit(text.charAt(j))) j++;
+        return j > i ? Long.parseLong(text.substring(i, j)) : fallback;
+    }
+
+    static Throwable rootCause(Throwable t) {
+        while (t.getCause() != null && t.getCause() != t) t = t.getCause();
+        return t;
+    }
+
+    static java.util.concurrent.ThreadFactory daemon(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /** 一个统计阶段（预热或测量）的全部计数 */
+    private static final class Phase {
+        final LatencyHistogram latency = new LatencyHistogram();
+        // 只含 2xx/304：被拒绝的请求很快结束，会把整体分位数拉低
+        final LatencyHistogram servedLatency = new LatencyHistogram();
+        final LatencyHistogram streamLag = new LatencyHistogram();
+        final AtomicLong completed = new AtomicLong();
+        final AtomicLong ok = new AtomicLong();
+        final AtomicLong shed = new AtomicLong();
+        final AtomicLong otherStatus = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong unsent = new AtomicLong();
+        final AtomicLong streamEvents = new AtomicLong();
+        final AtomicLong longPollResponses = new AtomicLong();
+        final AtomicReference<String> lastError = new AtomicReference<>();
+    }
+
+    /** 线程数与 GC 后的堆占用 */
+    private static final class Baseline {
+        final int threads;
+        final long heapBytes;
+
+        private Baseline(int threads, long heapBytes) {
+            this.threads = threads;
+            this.heapBytes = heapBytes;
+        }
+
+        static Baseline take() {
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            memory.gc();
+            return new Baseline(ManagementFactory.getThreadMXBean().getThreadCount(),
+                memory.getHeapMemoryUsage().getUsed());
+        }
+    }
+
+    /** 命令行参数 */
+    static final class Options {
+        int clients = 100;
+        double rate = 0;
+        int streams = 0;
+        int longPolls = 0;
+        int durationSeconds = 30;
+        int warmupSeconds = 5;
+        int port = 19876;
+        int ioThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        long upstreamDelayMs = 50;
+        String mixSpec = "/price:95,/settings:5";
+        private String[] wheel;
+
+        static Options parse(String[] args) {
+            Options o = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String value = i + 1 < args.length ? args[i + 1] : null;
+                switch (args[i]) {
+                    case "--clients": o.clients = Integer.parseInt(value); i++; break;
+                    case "--rate": o.rate = Double.parseDouble(value); i++; break;
+                    case "--streams": o.streams = Integer.parseInt(value); i++; break;
+                    case "--long-polls": o.longPolls = Integer.parseInt(value); i++; break;
+                    case "--duration": o.durationSeconds = Integer.parseInt(value); i++; break;
+                    case "--warmup": o.warmupSeconds = Integer.parseInt(value); i++; break;
+                    case "--port": o.port = Integer.parseInt(value); i++; break;
+                    case "--io-threads": o.ioThreads = Integer.parseInt(value); i++; break;
+                    case "--upstream-delay": o.upstreamDelayMs = Long.parseLong(value); i++; break;
+                    case "--mix": o.mixSpec = value; i++; break;
+                    default:
+                        throw new IllegalArgumentException("未知参数: " + args[i]
+                            + "（可用：--clients --rate --streams --long-polls --duration --warmup --port"
+                            + " --io-threads --upstream-delay --mix）");
+                }
+            }
+            o.wheel = buildWheel(o.mixSpec);
+            return o;
+        }
+
+        /**
+         * 按权重展开成轮盘，取路径只是一次取模
+         */
+        private static String[] buildWheel(String spec) {
+            List<String> wheel = new ArrayList<>();
+            for (String part : spec.split(",")) {
+                String[] kv = part.trim().split(":");
+                int weight = kv.length > 1 ? Integer.parseInt(kv[1].trim()) : 1;
+                for (int i = 0; i < weight; i++) wheel.add(kv[0].trim());
+            }
+            if (wheel.isEmpty()) throw new IllegalArgumentException("--mix 为空");
+            return wheel.toArray(new String[0]);
+        }
+
+        String pick(long n) {
+            return wheel[(int) Math.floorMod(n * 7919, (long) wheel.length)];
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.goldpricetracker.benchmarks;
+
+import com.goldpricetracker.backend.TradingCalendar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 休市判断：旧的 LocalDateTime 逐段比较 vs TradingCalendar 的分钟位图查询。
+ *
+ * 两组都以同一个 Clock 为时间来源（PriceService 的线上路径），
+ * 时刻固定在一个工作日的开市时段，走完旧实现的全部分支。
+ *
+ * 运行：java -jar target/benchmarks.jar MarketClosedBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MarketClosedBenchmark {
+
+    private Clock clock;
+    private TradingCalendar calendar;
+
+    @Setup
+    public void setup() {
+        // 2024-01-05（周五）10:15 北京时间
+        clock = Clock.fixed(Instant.parse("2024-01-05T02:15:00Z"), ZoneId.of("Asia/Shanghai"));
+        calendar = TradingCalendar.getInstance();
+    }
+
+    @Benchmark
+    public boolean legacyLocalDateTime() {
+        return LegacyMarketHours.isMarketClosed(clock);
+    }
+
+    @Benchmark
+    public boolean tradingCalendar() {
+        return !calendar.isOpen(clock.millis());
+    }
+}
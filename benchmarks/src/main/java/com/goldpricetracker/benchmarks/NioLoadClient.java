@@ -0,0 +1,374 @@
+package com.goldpricetracker.benchmarks;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+/**
+ * 压测用的极简 HTTP/1.1 keep-alive 客户端：一个线程、一个 Selector 驱动全部连接。
+ *
+ * java.net.http 每个请求的开销在几百微秒量级，上千个客户端时施压端先于服务端饱和，
+ * 测到的是客户端自己的排队；这里每个请求只是一次写、一次读和一次响应头扫描，施压端不再是瓶颈。
+ * 只发 GET，响应体按 Content-Length 或 chunked 读完后丢弃。
+ *
+ * 行为与真实客户端一致：收到 503 后按 Retry-After 等待；连接被拒或被关闭时指数退避后重连。
+ * 两种模式：
+ * 1. 闭环：每个连接收到响应后立即发下一个请求。
+ * 2. 开环：submit() 按计划时刻提交请求，交给一个空闲连接；没有空闲连接时计为未能按计划发出。
+ */
+final class NioLoadClient implements AutoCloseable {
+
+    /** 请求结果回调，在客户端线程上执行，应尽快返回 */
+    interface Listener {
+        /** @param startNanos 闭环为实际发出时刻，开环为计划发出时刻 */
+        void onResponse(long startNanos, int status);
+
+        void onError(long startNanos, Throwable error);
+
+        /** 开环模式下没有空闲连接，请求未能发出 */
+        void onUnsent();
+    }
+
+    private static final long RETRY_AFTER_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MAX_RECONNECT_NANOS = TimeUnit.SECONDS.toNanos(8);
+    private static final byte[] CRLF_CRLF = { '\r', '\n', '\r', '\n' };
+
+    private final InetSocketAddress address;
+    private final String host;
+    private final Listener listener;
+    // 闭环模式下为下一个请求选路径；开环模式下为 null
+    private final LongFunction<String> closedLoopPicker;
+    private final Selector selector;
+    private final Thread thread;
+    private final Connection[] connections;
+    private final ArrayDeque<Connection> idle = new ArrayDeque<>();
+    private final PriorityQueue<Connection> timers = new PriorityQueue<>((a, b) -> Long.compare(a.wakeAt, b.wakeAt));
+    private final ConcurrentLinkedQueue<Submitted> submitted = new ConcurrentLinkedQueue<>();
+    private long requestCounter;
+    private volatile boolean running = true;
+
+    /**
+     * @param picker 不为 null 时为闭环模式，按请求序号选择路径
+     */
+    NioLoadClient(InetSocketAddress address, int connections, LongFunction<String> picker, Listener listener)
+            throws IOException {
+        this.address = address;
+        this.host = address.getHostString() + ":" + address.getPort();
+        this.listener = listener;
+        this.closedLoopPicker = picker;
+        this.selector = Selector.open();
+        this.connections = new Connection[connections];
+        for (int i = 0; i < connections; i++) this.connections[i] = new Connection();
+        this.thread = new Thread(this::loop, "load-nio");
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * 开环模式：提交一个计划在 intendedNanos 发出的请求（任意线程）
+     */
+    void submit(String path, long intendedNanos) {
+        submitted.add(new Submitted(path, intendedNanos));
+        selector.wakeup();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void loop() {
+        for (Connection c : connections) connect(c);
+        try {
+            while (running) {
+                long now = System.nanoTime();
+                Connection next = timers.peek();
+                long timeout = next == null ? 100 : Math.max(1, TimeUnit.NANOSECONDS.toMillis(next.wakeAt - now));
+                selector.select(Math.min(100, timeout));
+                for (SelectionKey key : selector.selectedKeys()) {
+                    Connection c = (Connection) key.attachment();
+                    try {
+                        if (key.isConnectable()) {
+                            c.channel.finishConnect();
+                            key.interestOps(SelectionKey.OP_READ);
+                            ready(c);
+                        } else if (key.isReadable()) {
+                            read(c);
+                        }
+                    } catch (IOException e) {
+                        fail(c, e);
+                    }
+                }
+                selector.selectedKeys().clear();
+                fireTimers(System.nanoTime());
+                drainSubmitted();
+            }
+        } catch (IOException e) {
+            throw new java.io.UncheckedIOException(e);
+        } finally {
+            for (Connection c : connections) c.closeQuietly();
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+                // 退出
+            }
+        }
+    }
+
+    private void connect(Connection c) {
+        try {
+            c.channel = SocketChannel.open();
+            c.channel.configureBlocking(false);
+            c.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            c.channel.connect(address);
+            c.key = c.channel.register(selector, SelectionKey.OP_CONNECT, c);
+        } catch (IOException e) {
+            fail(c, e);
+        }
+    }
+
+    /** 连接空闲：闭环模式立即发下一个请求，开环模式放回空闲队列 */
+    private void ready(Connection c) throws IOException {
+        if (closedLoopPicker != null) {
+            send(c, closedLoopPicker.apply(requestCounter++), System.nanoTime());
+        } else {
+            idle.add(c);
+        }
+    }
+
+    private void drainSubmitted() {
+        Submitted s;
+        while ((s = submitted.poll()) != null) {
+            Connection c = idle.poll();
+            if (c == null) {
+                listener.onUnsent();
+                continue;
+            }
+            try {
+                send(c, s.path, s.intendedNanos);
+            } catch (IOException e) {
+                fail(c, e);
+            }
+        }
+    }
+
+    private void send(Connection c, String path, long startNanos) throws IOException {
+        c.startNanos = startNanos;
+        c.inFlight = true;
+        c.resetResponse();
+        ByteBuffer request = ByteBuffer.wrap(("GET " + path + " HTTP/1.1\r\nHost: " + host + "\r\n\r\n")
+            .getBytes(StandardCharsets.US_ASCII));
+        // 请求很小，非阻塞写一次即可写完；写不完说明连接已异常
+        c.channel.write(request);
+        if (request.hasRemaining()) throw new IOException("请求未能一次写出");
+    }
+
+    private void read(Connection c) throws IOException {
+        int n = c.channel.read(c.in);
+        if (n < 0) throw new EOFException("连接被服务端关闭");
+        c.in.flip();
+        try {
+            if (!c.inFlight || !c.parse()) return;
+        } finally {
+            c.in.compact();
+        }
+        c.inFlight = false;
+        c.backoffNanos = 0;
+        int status = c.status;
+        listener.onResponse(c.startNanos, status);
+        if (c.closeAfterResponse) {
+            c.closeQuietly();
+            c.reconnect = true;
+        }
+        if (status == 503 || c.reconnect) {
+            schedule(c, status == 503 ? RETRY_AFTER_NANOS : 0);
+        } else {
+            ready(c);
+        }
+    }
+
+    private void fail(Connection c, IOException e) {
+        if (c.inFlight) listener.onError(c.startNanos, e);
+        c.inFlight = false;
+        c.closeQuietly();
+        idle.remove(c);
+        if (!running) return;
+        // 连接被拒或被关闭：1s 起指数退避后重连
+        c.backoffNanos = c.backoffNanos == 0 ? RETRY_AFTER_NANOS : Math.min(MAX_RECONNECT_NANOS, c.backoffNanos * 2);
+        c.reconnect = true;
+        schedule(c, c.backoffNanos);
+    }
+
+    private void schedule(Connection c, long delayNanos) {
+        c.wakeAt = System.nanoTime() + delayNanos;
+        timers.add(c);
+    }
+
+    private void fireTimers(long now) throws IOException {
+        Connection c;
+        while ((c = timers.peek()) != null && c.wakeAt - now <= 0) {
+            timers.poll();
+            if (c.reconnect) {
+                c.reconnect = false;
+                connect(c);
+            } else {
+                try {
+                    ready(c);
+                } catch (IOException e) {
+                    fail(c, e);
+                }
+            }
+        }
+    }
+
+    private static final class Submitted {
+        final String path;
+        final long intendedNanos;
+
+        Submitted(String path, long intendedNanos) {
+            this.path = path;
+            this.intendedNanos = intendedNanos;
+        }
+    }
+
+    /** 一个 keep-alive 连接及其响应解析状态 */
+    private static final class Connection {
+        SocketChannel channel;
+        SelectionKey key;
+        ByteBuffer in = ByteBuffer.allocate(16 * 1024);
+        long startNanos;
+        long wakeAt;
+        long backoffNanos;
+        boolean reconnect;
+        boolean inFlight;
+
+        // 响应解析状态
+        int status;
+        boolean headersDone;
+        boolean chunked;
+        boolean closeAfterResponse;
+        long remaining;
+        boolean lastChunk;
+
+        void resetResponse() {
+            status = 0;
+            headersDone = false;
+            chunked = false;
+            closeAfterResponse = false;
+            remaining = 0;
+            lastChunk = false;
+        }
+
+        /**
+         * 消费 in 中已读到的字节（读模式）
+         * @return 完整响应是否已读完
+         */
+        boolean parse() throws IOException {
+            if (!headersDone) {
+                int end = indexOf(in, CRLF_CRLF);
+                if (end < 0) {
+                    if (in.remaining() == in.capacity()) throw new IOException("响应头过长");
+                    return false;
+                }
+                String head = new String(in.array(), in.position(), end - in.position(), StandardCharsets.ISO_8859_1);
+                in.position(end + CRLF_CRLF.length);
+                parseHead(head);
+                headersDone = true;
+            }
+            if (!chunked) {
+                int skip = (int) Math.min(remaining, in.remaining());
+                in.position(in.position() + skip);
+                remaining -= skip;
+                return remaining == 0;
+            }
+            while (true) {
+                if (remaining > 0) {
+                    int skip = (int) Math.min(remaining, in.remaining());
+                    in.position(in.position() + skip);
+                    remaining -= skip;
+                    if (remaining > 0) return false;
+                }
+                int lineEnd = indexOf(in, CRLF_CRLF, 2);
+                if (lineEnd < 0) return false;
+                String line = new String(in.array(), in.position(), lineEnd - in.position(), StandardCharsets.ISO_8859_1);
+                in.position(lineEnd + 2);
+                if (line.isEmpty()) {
+                    // 数据块之后的 CRLF，或最后一块之后的结束行
+                    if (lastChunk) return true;
+                    continue;
+                }
+                int semi = line.indexOf(';');
+                long size = Long.parseLong((semi < 0 ? line : line.substring(0, semi)).trim(), 16);
+                if (size == 0) {
+                    lastChunk = true;
+                } else {
+                    remaining = size;
+                }
+            }
+        }
+
+        private void parseHead(String head) throws IOException {
+            if (!head.startsWith("HTTP/1.")) throw new IOException("无效的响应: " + head);
+            status = Integer.parseInt(head.substring(9, 12));
+            remaining = 0;
+            for (String line : head.split("\r\n")) {
+                int colon = line.indexOf(':');
+                if (colon < 0) continue;
+                String name = line.substring(0, colon).trim();
+                String value = line.substring(colon + 1).trim();
+                if (name.equalsIgnoreCase("Content-Length")) {
+                    remaining = Long.parseLong(value);
+                } else if (name.equalsIgnoreCase("Transfer-Encoding") && value.equalsIgnoreCase("chunked")) {
+                    chunked = true;
+                } else if (name.equalsIgnoreCase("Connection") && value.equalsIgnoreCase("close")) {
+                    closeAfterResponse = true;
+                }
+            }
+        }
+
+        void closeQuietly() {
+            if (channel == null) return;
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // 已关闭
+            }
+            channel = null;
+        }
+    }
+
+    /** 在 buf 的 [position, limit) 中查找 pattern 的前 length 个字节，返回绝对下标 */
+    private static int indexOf(ByteBuffer buf, byte[] pattern, int length) {
+        byte[] a = buf.array();
+        for (int i = buf.position(); i + length <= buf.limit(); i++) {
+            int k = 0;
+            while (k < length && a[i + k] == pattern[k]) k++;
+            if (k == length) return i;
+        }
+        return -1;
+    }
+
+    private static int indexOf(ByteBuffer buf, byte[] pattern) {
+        return indexOf(buf, pattern, pattern.length);
+    }
+}
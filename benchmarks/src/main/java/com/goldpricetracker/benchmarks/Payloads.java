@@ -0,0 +1,44 @@
+package com.goldpricetracker.benchmarks;
+
+import java.nio.charset.Charset;
+
+/**
+ * 基准测试使用的上游响应样本（按真实接口格式构造）。
+ */
+final class Payloads {
+
+    /** 新浪接口按 GBK 编码返回，名称字段含中文 */
+    static final Charset SINA_CHARSET = Charset.forName("GBK");
+
+    static final String SINA =
+        "var hq_str_hf_XAU=\"2034.560,2030.100,2034.500,2034.800,2040.120,2025.330,15:30:00,2031.000,2030.500,0,0,0,2024-01-05,伦敦金（现货黄金）\";\n"
+        + "var hq_str_gds_AUTD=\"480.50,0,480.40,480.60,482.00,478.00,15:29:59,479.00,478.80,12345,5000,0,2024-01-05,黄金延期\";\n"
+        + "var hq_str_USDCNY=\"15:30:00,7.1234,7.1240,7.1190,120,7.1250,7.1288,7.1150,7.1234,美元人民币,0.05,0.0036,0.0098,2024-01-05\";\n";
+
+    static final String BINANCE = "{\"symbol\":\"PAXGUSDT\",\"price\":\"2041.35000000\"}";
+
+    static final String COINBASE = "{\"data\":{\"amount\":\"2040.87\",\"base\":\"PAXG\",\"currency\":\"USD\"}}";
+
+    // 以下为故障注入用的异常样本
+
+    /** 三个品种都在，但价格字段全为 0（停牌 / 数据源故障时的真实表现） */
+    static final String SINA_ZERO =
+        "var hq_str_hf_XAU=\"0.000,0.000,0.000,0.000,0.000,0.000,15:30:00,0.000,0.000,0,0,0,2024-01-05,伦敦金（现货黄金）\";\n"
+        + "var hq_str_gds_AUTD=\"0.00,0,0.00,0.00,0.00,0.00,15:29:59,0.00,0.00,0,0,0,2024-01-05,黄金延期\";\n"
+        + "var hq_str_USDCNY=\"15:30:00,0.0000,0.0000,0.0000,0,0.0000,0.0000,0.0000,0.0000,美元人民币,0,0,0,2024-01-05\";\n";
+
+    /** 品种都在，但数值字段被截断或混入非数字字符；最后一行缺少结尾引号 */
+    static final String SINA_MALFORMED =
+        "var hq_str_hf_XAU=\"20x4.5,abc,\";\n"
+        + "var hq_str_gds_AUTD=\",,,\";\n"
+        + "var hq_str_USDCNY=\"15:30:00,7.12-34";
+
+    static final String BINANCE_ZERO = "{\"symbol\":\"PAXGUSDT\",\"price\":\"0.00000000\"}";
+
+    static final String COINBASE_ZERO = "{\"data\":{\"amount\":\"0\",\"base\":\"PAXG\",\"currency\":\"USD\"}}";
+
+    /** 被截断的 JSON */
+    static final String JSON_MALFORMED = "{\"symbol\":\"PAXGUSDT\",\"price\":";
+
+    private Payloads() {}
+}
@@ -0,0 +1,44 @@
+package com.goldpricetracker.benchmarks;
+
+import com.goldpricetracker.backend.PriceCalculator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 国际金价换算国内金价：PriceCalculator.calculateDomesticPrice 含 BigDecimal 四舍五入。
+ *
+ * arithmeticOnly 只做同样的浮点换算、不做舍入，二者之差就是 BigDecimal 舍入的代价。
+ * 输入放在非 final 字段里，避免被常量折叠。
+ *
+ * 运行：java -jar target/benchmarks.jar PriceCalculatorBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PriceCalculatorBenchmark {
+
+    private double international = 2034.56;
+    private double rate = 7.1234;
+
+    @Benchmark
+    public double calculateDomesticPrice() {
+        return PriceCalculator.calculateDomesticPrice(international, rate);
+    }
+
+    @Benchmark
+    public double arithmeticOnly() {
+        return (international / 31.1034768) * rate;
+    }
+}
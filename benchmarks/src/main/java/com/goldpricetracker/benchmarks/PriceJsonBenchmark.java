@@ -0,0 +1,71 @@
+package com.goldpricetracker.benchmarks;
+
+import com.goldpricetracker.backend.PricePayload;
+import com.goldpricetracker.backend.PriceSnapshot;
+import com.goldpricetracker.backend.PriceSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /price 响应体格式化：旧的每请求 String.format vs 发布时生成一次的 PricePayload。
+ *
+ * payloadBuild 轮换一组序号不同的快照，每次都真正序列化（Decimals 定点格式化 + ETag）；
+ * payloadCached 对同一快照反复取，即请求路径上的实际代价。
+ *
+ * 运行：java -jar target/benchmarks.jar PriceJsonBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PriceJsonBenchmark {
+
+    private static final int SNAPSHOTS = 1024;
+
+    private final PriceSnapshot[] snapshots = new PriceSnapshot[SNAPSHOTS];
+    private PriceSnapshot latest;
+    private int next;
+
+    @Setup
+    public void setup() {
+        long ts = 1_704_420_900_000L;
+        for (int i = 0; i < SNAPSHOTS; i++) {
+            snapshots[i] = new PriceSnapshot(i + 1, ts + i * 1000L, 480.5 + i * 0.01, 2034.56 + i * 0.05,
+                7.1234, 0, PriceSource.SINA);
+        }
+        // 缓存的快照序号大于轮换组，轮换组的快照每次都会重新序列化
+        latest = new PriceSnapshot(SNAPSHOTS + 1, ts + SNAPSHOTS * 1000L, 480.5, 2034.56, 7.1234, 0, PriceSource.SINA);
+        PricePayload.of(latest);
+    }
+
+    @Benchmark
+    public byte[] legacyStringFormat() {
+        PriceSnapshot s = snapshots[next++ & (SNAPSHOTS - 1)];
+        String json = String.format("{\"domestic\":%.4f,\"international\":%.4f,\"market_closed\":%d}",
+            s.getDomestic(), s.getInternational(), s.isMarketClosed() ? 1 : 0);
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] payloadBuild() {
+        return PricePayload.of(snapshots[next++ & (SNAPSHOTS - 1)]).getJson();
+    }
+
+    @Benchmark
+    public byte[] payloadCached() {
+        return PricePayload.of(latest).getJson();
+    }
+}
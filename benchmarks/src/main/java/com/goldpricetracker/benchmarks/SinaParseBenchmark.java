@@ -0,0 +1,58 @@
+package com.goldpricetracker.benchmarks;
+
+import com.goldpricetracker.backend.SinaQuoteParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 新浪响应解析：旧的 String 解析 vs 字节级 SinaQuoteParser。
+ *
+ * 两组都从原始响应字节开始计时，旧实现包含 new String(bytes, GBK) 的解码开销，
+ * 与线上 response.body().string() 的实际路径一致。
+ *
+ * 运行：java -jar target/benchmarks.jar SinaParseBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SinaParseBenchmark {
+
+    private byte[] body;
+    private final double[] slots = new double[SinaQuoteParser.SLOT_COUNT];
+
+    @Setup
+    public void setup() {
+        body = Payloads.SINA.getBytes(Payloads.SINA_CHARSET);
+    }
+
+    @Benchmark
+    public Map<String, Double> legacyStringParse() {
+        Map<String, Double> prices = new HashMap<>();
+        LegacySinaParser.parseSinaResponse(new String(body, Payloads.SINA_CHARSET), prices);
+        return prices;
+    }
+
+    @Benchmark
+    public void byteParser(Blackhole bh) {
+        bh.consume(SinaQuoteParser.parse(body, slots));
+        bh.consume(slots[SinaQuoteParser.INTERNATIONAL]);
+        bh.consume(slots[SinaQuoteParser.DOMESTIC]);
+        bh.consume(slots[SinaQuoteParser.RATE]);
+    }
+}
@@ -0,0 +1,202 @@
+package com.goldpricetracker.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 本地上游桩服务：用 Payloads 中的样本模拟新浪、Binance、Coinbase 三个接口，完全离线。
+ * 每个上游可以单独注入故障（见 Fault），供压测与故障注入套件使用。
+ *
+ * installSystemProperties() 把 gold.upstream.* 指向本服务，必须在 PriceService 类加载之前调用
+ * （地址是 PriceService 的静态常量）。
+ */
+public final class StubUpstream implements AutoCloseable {
+
+    /** 桩服务模拟的上游 */
+    public enum Upstream { SINA, BINANCE, COINBASE }
+
+    /** 可注入的故障 */
+    public enum Fault {
+        NONE,
+        /** 接受连接后迟迟不发响应头（stallMillis） */
+        SLOW_FIRST_BYTE,
+        /** 响应头立即发出，正文每 trickleMillis 才写一个字节 */
+        TRICKLE,
+        /** 读完请求后直接断开连接，不发任何响应 */
+        RESET,
+        HTTP_429,
+        HTTP_500,
+        HTTP_503,
+        /** 200，但正文格式错误（截断的 JSON / 非法的 hq_str 数值） */
+        MALFORMED,
+        /** 200，格式正确但价格全为 0 */
+        ZERO_PRICES
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong[] requests = new AtomicLong[Upstream.values().length];
+    private final byte[][] bodies = new byte[Upstream.values().length][];
+    private final byte[][] zeroBodies = new byte[Upstream.values().length][];
+    private final byte[][] malformedBodies = new byte[Upstream.values().length][];
+    private final AtomicReferenceArray<Fault> faults = new AtomicReferenceArray<>(Upstream.values().length);
+    private volatile long delayMillis;
+    private volatile long stallMillis = 8000;
+    private volatile long trickleMillis = 500;
+
+    private StubUpstream(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+        for (Upstream upstream : Upstream.values()) requests[upstream.ordinal()] = new AtomicLong();
+        bodies[Upstream.SINA.ordinal()] = Payloads.SINA.getBytes(Payloads.SINA_CHARSET);
+        bodies[Upstream.BINANCE.ordinal()] = Payloads.BINANCE.getBytes(StandardCharsets.UTF_8);
+        bodies[Upstream.COINBASE.ordinal()] = Payloads.COINBASE.getBytes(StandardCharsets.UTF_8);
+        zeroBodies[Upstream.SINA.ordinal()] = Payloads.SINA_ZERO.getBytes(Payloads.SINA_CHARSET);
+        zeroBodies[Upstream.BINANCE.ordinal()] = Payloads.BINANCE_ZERO.getBytes(StandardCharsets.UTF_8);
+        zeroBodies[Upstream.COINBASE.ordinal()] = Payloads.COINBASE_ZERO.getBytes(StandardCharsets.UTF_8);
+        malformedBodies[Upstream.SINA.ordinal()] = Payloads.SINA_MALFORMED.getBytes(Payloads.SINA_CHARSET);
+        malformedBodies[Upstream.BINANCE.ordinal()] = Payloads.JSON_MALFORMED.getBytes(StandardCharsets.UTF_8);
+        malformedBodies[Upstream.COINBASE.ordinal()] = Payloads.JSON_MALFORMED.getBytes(StandardCharsets.UTF_8);
+        reset();
+    }
+
+    /**
+     * 在随机端口上启动
+     */
+    public static StubUpstream start() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 256);
+        ExecutorService executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "stub-upstream");
+            t.setDaemon(true);
+            return t;
+        });
+        StubUpstream stub = new StubUpstream(server, executor);
+        server.createContext("/sina", e -> stub.serve(e, Upstream.SINA, "application/javascript; charset=GBK"));
+        server.createContext("/binance", e -> stub.serve(e, Upstream.BINANCE, "application/json"));
+        server.createContext("/coinbase", e -> stub.serve(e, Upstream.COINBASE, "application/json"));
+        server.setExecutor(executor);
+        server.start();
+        return stub;
+    }
+
+    /**
+     * 让 PriceService 的三个上游地址指向本服务
+     */
+    public void installSystemProperties() {
+        System.setProperty("gold.upstream.sina", url("/sina/list=hf_XAU,gds_AUTD,USDCNY"));
+        System.setProperty("gold.upstream.binance", url("/binance/api/v3/ticker/price?symbol=PAXGUSDT"));
+        System.setProperty("gold.upstream.coinbase", url("/coinbase/v2/prices/PAXG-USD/spot"));
+    }
+
+    public String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    /**
+     * 每个响应前的固定延迟，用于模拟真实上游的网络耗时
+     */
+    public void setDelayMillis(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    /**
+     * SLOW_FIRST_BYTE 的停顿时长；应介于 tick 截止时间与 OkHttp 读超时 (10s) 之间
+     */
+    public void setStallMillis(long stallMillis) {
+        this.stallMillis = stallMillis;
+    }
+
+    /**
+     * TRICKLE 每写一个字节的间隔
+     */
+    public void setTrickleMillis(long trickleMillis) {
+        this.trickleMillis = trickleMillis;
+    }
+
+    public void setFault(Upstream upstream, Fault fault) {
+        faults.set(upstream.ordinal(), fault);
+    }
+
+    /**
+     * 清除所有故障
+     */
+    public void reset() {
+        for (Upstream upstream : Upstream.values()) faults.set(upstream.ordinal(), Fault.NONE);
+    }
+
+    public long requestCount(Upstream upstream) {
+        return requests[upstream.ordinal()].get();
+    }
+
+    private void serve(HttpExchange exchange, Upstream upstream, String contentType) throws IOException {
+        requests[upstream.ordinal()].incrementAndGet();
+        Fault fault = faults.get(upstream.ordinal());
+        try (exchange) {
+            exchange.getRequestBody().readAllBytes();
+            long delay = delayMillis;
+            if (delay > 0) Thread.sleep(delay);
+            switch (fault) {
+                case RESET:
+                    // 不发响应头就关闭：客户端读到连接被意外关闭
+                    return;
+                case HTTP_429:
+                case HTTP_500:
+                case HTTP_503:
+                    write(exchange, Integer.parseInt(fault.name().substring(5)), "text/plain",
+                        "error".getBytes(StandardCharsets.US_ASCII));
+                    return;
+                case SLOW_FIRST_BYTE:
+                    Thread.sleep(stallMillis);
+                    break;
+                case TRICKLE:
+                    trickle(exchange, contentType, bodies[upstream.ordinal()]);
+                    return;
+                default:
+                    break;
+            }
+            byte[] body = fault == Fault.MALFORMED ? malformedBodies[upstream.ordinal()]
+                : fault == Fault.ZERO_PRICES ? zeroBodies[upstream.ordinal()]
+                : bodies[upstream.ordinal()];
+            write(exchange, 200, contentType, body);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // 客户端已取消请求并关闭连接，属于预期情况
+        }
+    }
+
+    private static void write(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    private void trickle(HttpExchange exchange, String contentType, byte[] body) throws IOException, InterruptedException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            for (byte b : body) {
+                os.write(b);
+                os.flush();
+                Thread.sleep(trickleMillis);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
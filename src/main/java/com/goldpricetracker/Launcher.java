@@ -35,7 +35,8 @@ public class Launcher {
         
         try {
             // 3. 启动 JavaFX 主程序
-            // 3.1 启动本地数据服务 (供原生 AppBar 或其他前端拉取)
+            // 3.1 启动全局价格轮询，并启动本地数据服务 (供原生 AppBar 或其他前端拉取)
+            com.goldpricetracker.backend.PriceHub.getInstance().start();
             com.goldpricetracker.backend.PriceDataServer.startAsync();
             MainApp.main(args);
         } catch (Throwable t) {
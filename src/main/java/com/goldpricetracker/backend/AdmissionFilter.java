@@ -0,0 +1,105 @@
+package com.goldpricetracker.backend;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个接口的准入控制：并发数上限 + 排队深度 / 排队时长上限。
+ * 超出任何一项都立即返回 503 与 Retry-After，处理代价只有一次小响应的写出。
+ *
+ * 并发数按 handler 返回为止计算；/stream 与长轮询在挂起后立即返回，
+ * 它们持有的连接数由各自的上限单独控制。
+ */
+public class AdmissionFilter extends Filter {
+
+    private static final byte[] BUSY = "{\"error\":\"server_busy\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final String name;
+    private final Semaphore permits;
+    private final ServerExecutor executor;
+    private final int maxQueueDepth;
+    private final long maxQueueWaitNanos;
+    private final int retryAfterSeconds;
+    private final Metrics.Endpoint metrics;
+
+    public AdmissionFilter(String name, int maxConcurrent, ServerExecutor executor,
+                           int maxQueueDepth, long maxQueueWaitMillis, int retryAfterSeconds) {
+        this.name = name;
+        this.permits = new Semaphore(maxConcurrent);
+        this.executor = executor;
+        this.maxQueueDepth = maxQueueDepth;
+        this.maxQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueWaitMillis);
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.metrics = Metrics.getInstance().endpoint(name);
+    }
+
+    @Override
+    public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+        PipelineEvents.ServerRequest event = new PipelineEvents.ServerRequest();
+        event.begin();
+        metrics.onRequest();
+        if (executor.queueDepth() > maxQueueDepth || ServerExecutor.currentQueueWaitNanos() > maxQueueWaitNanos
+                || !permits.tryAcquire()) {
+            reject(exchange, retryAfterSeconds);
+            commit(event, exchange, "rejected");
+            return;
+        }
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            chain.doFilter(exchange);
+            outcome = exchange.getResponseCode() == 503 ? "rejected" : "served";
+        } finally {
+            permits.release();
+            metrics.recordDuration(System.nanoTime() - start);
+            commit(event, exchange, outcome);
+        }
+    }
+
+    private void commit(PipelineEvents.ServerRequest event, HttpExchange exchange, String outcome) {
+        if (!event.shouldCommit()) return;
+        event.source = name;
+        event.method = exchange.getRequestMethod();
+        event.status = exchange.getResponseCode();
+        // 分块传输（/history、/stream）没有固定长度，记为 0
+        String length = exchange.getResponseHeaders().getFirst("Content-length");
+        try {
+            event.bytes = length == null ? 0 : Long.parseLong(length);
+        } catch (NumberFormatException e) {
+            event.bytes = 0;
+        }
+        event.outcome = outcome;
+        event.commit();
+    }
+
+    /**
+     * 以 503 + Retry-After 结束请求
+     */
+    static void reject(HttpExchange exchange, int retryAfterSeconds) throws IOException {
+        Metrics.getInstance().endpoint(exchange.getHttpContext().getPath()).onRejected();
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+        exchange.sendResponseHeaders(503, BUSY.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(BUSY);
+        }
+    }
+
+    @Override
+    public String description() {
+        return "admission control for " + name;
+    }
+
+    /**
+     * @return 当前空闲的并发名额
+     */
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+}
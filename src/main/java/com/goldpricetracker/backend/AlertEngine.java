@@ -0,0 +1,634 @@
+package com.goldpricetracker.backend;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * 增量式预警引擎：在每个 tick 上求值配置中的全部预警规则（语法见 AlertRule）。
+ *
+ * 为什么每个 tick 是 O(1)？
+ * 1. 时间窗涨跌幅用单调队列维护窗口内的最低/最高价，每个 tick 均摊 O(1) 入队出队。
+ * 2. 均线在 K 线收盘时更新一次：环形数组 + 累加和，O(1)。
+ * 3. 相同 (品种, 窗口) 或 (品种, 周期, 均线长度) 的规则共享同一份状态，几百条规则也只维护少量窗口。
+ * 4. 每条规则的求值只是几次基本类型比较；提醒文案只在真正触发时才拼接。
+ *
+ * 配置变化时重新编译规则，并用环形缓冲区中的最近 tick 与 CandleStore 中的 K 线预热窗口与均线，
+ * 修改规则不会让时间窗从零开始。编译与预热（要读磁盘）在专用的编译线程上进行，
+ * 保存设置的 FX 线程不会被阻塞；新规则集预热完成后才替换旧的。
+ * 旧版的四个固定阈值 (alert.domestic.max 等) 自动转换为 above / below 规则。
+ */
+public final class AlertEngine {
+    private static final Logger logger = LoggerFactory.getLogger(AlertEngine.class);
+
+    private static final AlertEngine INSTANCE = new AlertEngine(PriceHub.getInstance(), ConfigStore.getInstance());
+
+    private static final String RULE_PREFIX = "alert.rule.";
+    private static final double OUNCE_TO_GRAM = 31.1034768;
+
+    /** 一次触发的预警 */
+    public static final class Alert {
+        private final AlertRule rule;
+        private final String title;
+        private final String message;
+        private final long timestamp;
+
+        Alert(AlertRule rule, String title, String message, long timestamp) {
+            this.rule = rule;
+            this.title = title;
+            this.message = message;
+            this.timestamp = timestamp;
+        }
+
+        public AlertRule getRule() {
+            return rule;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+    }
+
+    private final PriceHub priceHub;
+    private final ConfigStore configStore;
+    private final List<Consumer<Alert>> listeners = new CopyOnWriteArrayList<>();
+    private final Consumer<PriceSnapshot> tickListener = this::onTick;
+    private final Consumer<ConfigSnapshot> configListener = this::onConfig;
+    // 求值与规则集切换共用的锁：快照可能在任何调用 refresh() 的线程上发布，配置变化在配置或文件监视线程上到达
+    private final Object evaluationLock = new Object();
+    private volatile Compiled compiled;
+    // 最近一次求值的 tick 序号（持 evaluationLock 访问），切换时新规则集据此补上编译期间的 tick
+    private long evaluatedSequence = -1;
+    private Map<String, String> compiledFrom;
+    // 单线程：多次配置变化按到达顺序编译，最后一次生效
+    private ExecutorService compiler;
+    private boolean started = false;
+
+    AlertEngine(PriceHub priceHub, ConfigStore configStore) {
+        this.priceHub = priceHub;
+        this.configStore = configStore;
+    }
+
+    /**
+     * @return 全进程共享的实例
+     */
+    public static AlertEngine getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 编译当前配置中的规则并开始订阅价格。重复调用无副作用。
+     */
+    public synchronized void start() {
+        if (started) return;
+        started = true;
+        compiler = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "alert-compile");
+            t.setDaemon(true);
+            return t;
+        });
+        onConfig(configStore.current());
+        configStore.addListener(configListener);
+        priceHub.addListener(tickListener);
+    }
+
+    public synchronized void stop() {
+        if (!started) return;
+        started = false;
+        priceHub.removeListener(tickListener);
+        configStore.removeListener(configListener);
+        compiler.shutdownNow();
+        compiler = null;
+    }
+
+    /**
+     * 注册预警监听者。回调在发布快照的线程上执行（轮询线程或任何调用了 PriceHub.refresh() 的线程），需要更新界面的监听者应自行切换到 UI 线程。
+     */
+    public void addListener(Consumer<Alert> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<Alert> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return 当前生效的规则
+     */
+    public List<AlertRule> getRules() {
+        Compiled c = compiled;
+        List<AlertRule> rules = new ArrayList<>();
+        if (c != null) {
+            for (AlertRule rule : c.rules) rules.add(rule);
+        }
+        return rules;
+    }
+
+    private synchronized void onConfig(ConfigSnapshot config) {
+        Map<String, String> relevant = new HashMap<>();
+        for (Map.Entry<String, String> e : config.asMap().entrySet()) {
+            if (e.getKey().startsWith("alert.")) relevant.put(e.getKey(), e.getValue());
+        }
+        // 只有预警相关的键变化才重新编译；窗口位置等其他键变化不影响冷却与滞回状态
+        if (relevant.equals(compiledFrom) || compiler == null) return;
+        compiledFrom = relevant;
+        try {
+            compiler.execute(() -> {
+                Compiled next = compile(config);
+                install(next);
+                logger.info("预警规则已编译: " + next.rules.length + " 条");
+            });
+        } catch (RejectedExecutionException e) {
+            // 已停止
+        }
+    }
+
+    /**
+     * 在求值锁内切换规则集：先沿用旧规则的冷却与滞回状态，再把预热之后、切换之前已被旧规则集求值过的 tick
+     * 补进新的窗口与均线。切换前后每个 tick 恰好被一个规则集求值一次。
+     */
+    private void install(Compiled next) {
+        synchronized (evaluationLock) {
+            Compiled previous = compiled;
+            if (previous != null) next.inherit(previous);
+            next.catchUp(priceHub.getRecentTicks(), evaluatedSequence);
+            compiled = next;
+        }
+    }
+
+    private void onTick(PriceSnapshot snapshot) {
+        synchronized (evaluationLock) {
+            if (snapshot.getSequence() <= evaluatedSequence) return; // 注册时的立即回调可能与发布重复
+            evaluatedSequence = snapshot.getSequence();
+            Compiled c = compiled;
+            if (c != null) c.evaluate(snapshot);
+        }
+    }
+
+    private void fire(Alert alert) {
+        for (Consumer<Alert> listener : listeners) {
+            try {
+                listener.accept(alert);
+            } catch (Exception e) {
+                logger.error("预警监听者处理失败: " + e.getMessage());
+            }
+        }
+    }
+
+    private Compiled compile(ConfigSnapshot config) {
+        List<AlertRule> rules = new ArrayList<>();
+        legacyThreshold(rules, config, "alert.domestic.max", "domestic_max", AlertRule.DOMESTIC, true);
+        legacyThreshold(rules, config, "alert.domestic.min", "domestic_min", AlertRule.DOMESTIC, false);
+        legacyThreshold(rules, config, "alert.international.max", "intl_max", AlertRule.INTERNATIONAL, true);
+        legacyThreshold(rules, config, "alert.international.min", "intl_min", AlertRule.INTERNATIONAL, false);
+        for (Map.Entry<String, String> e : config.asMap().entrySet()) {
+            if (!e.getKey().startsWith(RULE_PREFIX)) continue;
+            String id = e.getKey().substring(RULE_PREFIX.length());
+            try {
+                rules.add(AlertRule.parse(id, e.getValue()));
+            } catch (IllegalArgumentException ex) {
+                logger.error("忽略无效的预警规则 " + e.getKey() + ": " + ex.getMessage());
+            }
+        }
+        Compiled c = new Compiled(rules.toArray(new AlertRule[0]));
+        c.warmUp(priceHub);
+        return c;
+    }
+
+    private static void legacyThreshold(List<AlertRule> rules, ConfigSnapshot config, String key, String id,
+                                        int series, boolean above) {
+        double value = config.getDouble(key, 0);
+        if (value > 0) rules.add(AlertRule.threshold(id, series, above, value));
+    }
+
+    private static String seriesTitle(int series) {
+        switch (series) {
+            case AlertRule.DOMESTIC: return "国内金价预警";
+            case AlertRule.INTERNATIONAL: return "国际金价预警";
+            default: return "汇率预警";
+        }
+    }
+
+    private static String formatDuration(long millis) {
+        if (millis % 3_600_000 == 0) return (millis / 3_600_000) + " 小时";
+        if (millis % 60_000 == 0) return (millis / 60_000) + " 分钟";
+        return (millis / 1000) + " 秒";
+    }
+
+    private static double value(int series, double domestic, double international, double rate) {
+        return series == AlertRule.DOMESTIC ? domestic : series == AlertRule.INTERNATIONAL ? international : rate;
+    }
+
+    private static double seriesValue(PriceSnapshot s, int series) {
+        switch (series) {
+            case AlertRule.DOMESTIC: return s.getDomestic();
+            case AlertRule.INTERNATIONAL: return s.getInternational();
+            default: return s.getRate();
+        }
+    }
+
+    /**
+     * 编译后的规则与其运行状态。求值、继承与补齐都在 evaluationLock 内进行；预热在切换之前完成，不持锁。
+     */
+    private final class Compiled {
+        final AlertRule[] rules;
+        final boolean[] armed;
+        final long[] lastFired;
+        // cross 规则上一次所在的一侧：1 在均线上方，-1 在下方，0 未知
+        final int[] side;
+        // 规则 -> 共享状态下标（move 对应 windows，cross 对应 averages）
+        final int[] stateIndex;
+        final MinMaxWindow[] windows;
+        final MovingAverage[] averages;
+        // 预热覆盖到的 tick 序号，切换时从这之后补齐
+        long warmedSequence = -1;
+
+        Compiled(AlertRule[] rules) {
+            this.rules = rules;
+            this.armed = new boolean[rules.length];
+            this.lastFired = new long[rules.length];
+            this.side = new int[rules.length];
+            this.stateIndex = new int[rules.length];
+            List<MinMaxWindow> windowList = new ArrayList<>();
+            List<MovingAverage> averageList = new ArrayList<>();
+            Map<String, Integer> shared = new HashMap<>();
+            for (int i = 0; i < rules.length; i++) {
+                AlertRule rule = rules[i];
+                armed[i] = true;
+                lastFired[i] = Long.MIN_VALUE / 2;
+                stateIndex[i] = -1;
+                if (rule.getType() == AlertRule.Type.MOVE) {
+                    String key = "w" + rule.getSeries() + ":" + rule.getWindowMillis();
+                    Integer index = shared.get(key);
+                    if (index == null) {
+                        index = windowList.size();
+                        windowList.add(new MinMaxWindow(rule.getSeries(), rule.getWindowMillis()));
+                        shared.put(key, index);
+                    }
+                    stateIndex[i] = index;
+                } else if (rule.getType() == AlertRule.Type.CROSS) {
+                    String key = "a" + rule.getSeries() + ":" + rule.getResolution().id() + ":" + rule.getPeriod();
+                    Integer index = shared.get(key);
+                    if (index == null) {
+                        index = averageList.size();
+                        averageList.add(new MovingAverage(rule.getSeries(), rule.getResolution(), rule.getPeriod()));
+                        shared.put(key, index);
+                    }
+                    stateIndex[i] = index;
+                }
+            }
+            this.windows = windowList.toArray(new MinMaxWindow[0]);
+            this.averages = averageList.toArray(new MovingAverage[0]);
+        }
+
+        /**
+         * 沿用上一版中定义（id 与规则文本，含阈值）未变的规则的冷却、武装与穿越状态，
+         * 改动一条规则不会清掉其他规则的冷却；阈值变了的规则按新规则从头开始。
+         */
+        void inherit(Compiled previous) {
+            Map<String, Integer> byDefinition = new HashMap<>();
+            for (int j = 0; j < previous.rules.length; j++) {
+                byDefinition.put(previous.rules[j].getId() + "\n" + previous.rules[j].getSpec(), j);
+            }
+            for (int i = 0; i < rules.length; i++) {
+                Integer j = byDefinition.get(rules[i].getId() + "\n" + rules[i].getSpec());
+                if (j == null) continue;
+                armed[i] = previous.armed[j];
+                lastFired[i] = previous.lastFired[j];
+                side[i] = previous.side[j];
+            }
+        }
+
+        /**
+         * 用环形缓冲区与 CandleStore 预热窗口与均线，只用到当时最新快照为止的数据，之后的由 catchUp 补齐
+         */
+        void warmUp(PriceHub hub) {
+            PriceSnapshot latest = hub.latest();
+            if (latest == null) return;
+            warmedSequence = latest.getSequence();
+            if (windows.length > 0) {
+                long maxWindow = 0;
+                for (MinMaxWindow w : windows) maxWindow = Math.max(maxWindow, w.windowMillis);
+                long since = System.currentTimeMillis() - maxWindow;
+                hub.getRecentTicks().forEachSince(since, (seq, ts, d, in, r, f) -> {
+                    if (seq > warmedSequence) return false;
+                    for (MinMaxWindow w : windows) {
+                        w.add(ts, value(w.series, d, in, r));
+                    }
+                    return true;
+                });
+            }
+            CandleStore store = hub.getCandleStore();
+            if (store == null) return;
+            for (MovingAverage a : averages) {
+                a.warmUp(store, latest);
+            }
+        }
+
+        /**
+         * 把预热之后、不晚于 upToSequence 的 tick 补进窗口与均线（只更新状态，不求值规则）
+         */
+        void catchUp(TickRingBuffer ticks, long upToSequence) {
+            if (upToSequence <= warmedSequence) return;
+            ticks.forEachAfterSequence(warmedSequence, (seq, ts, d, in, r, f) -> {
+                if (seq > upToSequence) return false;
+                for (MinMaxWindow w : windows) {
+                    w.add(ts, value(w.series, d, in, r));
+                }
+                for (MovingAverage a : averages) {
+                    a.onTick(ts, value(a.series, d, in, r));
+                }
+                return true;
+            });
+            warmedSequence = upToSequence;
+        }
+
+        void evaluate(PriceSnapshot s) {
+            long ts = s.getTimestamp();
+            for (MinMaxWindow w : windows) {
+                w.add(ts, seriesValue(s, w.series));
+            }
+            for (MovingAverage a : averages) {
+                a.onTick(ts, seriesValue(s, a.series));
+            }
+            for (int i = 0; i < rules.length; i++) {
+                AlertRule rule = rules[i];
+                switch (rule.getType()) {
+                    case ABOVE: {
+                        double v = seriesValue(s, rule.getSeries());
+                        if (v <= 0) break;
+                        level(i, s, v >= rule.getThreshold(), v < rule.getThreshold() - rule.getBand(), v);
+                        break;
+                    }
+                    case BELOW: {
+                        double v = seriesValue(s, rule.getSeries());
+                        if (v <= 0) break;
+                        level(i, s, v <= rule.getThreshold(), v > rule.getThreshold() + rule.getBand(), v);
+                        break;
+                    }
+                    case MOVE: {
+                        MinMaxWindow w = windows[stateIndex[i]];
+                        double v = seriesValue(s, rule.getSeries());
+                        if (v <= 0 || w.isEmpty()) break;
+                        double up = (v - w.min()) / w.min() * 100;
+                        double down = (w.max() - v) / w.max() * 100;
+                        double move = Math.max(up, down);
+                        level(i, s, move >= rule.getThreshold(), move < rule.getThreshold() - rule.getBand(),
+                                up >= down ? move : -move);
+                        break;
+                    }
+                    case CROSS:
+                        cross(i, s, averages[stateIndex[i]]);
+                        break;
+                    case PREMIUM_ABOVE:
+                    case PREMIUM_BELOW: {
+                        double d = s.getDomestic();
+                        double converted = s.getInternational() / OUNCE_TO_GRAM * s.getRate();
+                        if (d <= 0 || converted <= 0) break;
+                        double premium = rule.isPercent() ? (d - converted) / converted * 100 : d - converted;
+                        if (rule.getType() == AlertRule.Type.PREMIUM_ABOVE) {
+                            level(i, s, premium >= rule.getThreshold(), premium < rule.getThreshold() - rule.getBand(), premium);
+                        } else {
+                            level(i, s, premium <= rule.getThreshold(), premium > rule.getThreshold() + rule.getBand(), premium);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        /**
+         * 带滞回的电平触发：条件成立且处于武装状态时提醒一次，退回带宽之外才重新武装
+         */
+        private void level(int i, PriceSnapshot s, boolean condition, boolean rearm, double value) {
+            if (!armed[i]) {
+                if (rearm) armed[i] = true;
+                return;
+            }
+            if (!condition) return;
+            long now = s.getTimestamp();
+            if (now - lastFired[i] < rules[i].getCooldownMillis()) return;
+            armed[i] = false;
+            lastFired[i] = now;
+            fire(new Alert(rules[i], title(rules[i]), message(rules[i], s, value), now));
+        }
+
+        private void cross(int i, PriceSnapshot s, MovingAverage a) {
+            if (!a.closedThisTick || !a.isReady()) return;
+            double diff = a.lastClose - a.average();
+            int current = diff > rules[i].getBand() ? 1 : diff < -rules[i].getBand() ? -1 : 0;
+            if (current == 0) return; // 仍在带宽内，保持原来的一侧
+            int previous = side[i];
+            side[i] = current;
+            if (previous == 0 || previous == current) return;
+            long now = s.getTimestamp();
+            if (now - lastFired[i] < rules[i].getCooldownMillis()) return;
+            lastFired[i] = now;
+            AlertRule rule = rules[i];
+            String message = String.format("%s 收盘 %.2f %s MA%d (%.2f)", rule.getResolution().id(), a.lastClose,
+                    current > 0 ? "上穿" : "下穿", rule.getPeriod(), a.average());
+            fire(new Alert(rule, title(rule), message, now));
+        }
+
+        private String title(AlertRule rule) {
+            if (rule.getType() == AlertRule.Type.PREMIUM_ABOVE || rule.getType() == AlertRule.Type.PREMIUM_BELOW) {
+                return "溢价预警";
+            }
+            return seriesTitle(rule.getSeries());
+        }
+
+        private String message(AlertRule rule, PriceSnapshot s, double value) {
+            switch (rule.getType()) {
+                case ABOVE:
+                    return "当前价格: " + value + " (高于 " + rule.getThreshold() + ")";
+                case BELOW:
+                    return "当前价格: " + value + " (低于 " + rule.getThreshold() + ")";
+                case MOVE:
+                    return String.format("%s内%s %.2f%%，当前 %.2f", formatDuration(rule.getWindowMillis()),
+                            value >= 0 ? "上涨" : "下跌", Math.abs(value), seriesValue(s, rule.getSeries()));
+                default:
+                    return String.format("国内溢价 %.2f%s (%s %s%s)", value, rule.isPercent() ? "%" : " 元/克",
+                            rule.getType() == AlertRule.Type.PREMIUM_ABOVE ? "高于" : "低于",
+                            rule.getThreshold(), rule.isPercent() ? "%" : "");
+            }
+        }
+    }
+
+    /**
+     * 时间窗内的最低/最高价：两条单调队列，基本类型环形数组实现，容量不足时翻倍
+     */
+    static final class MinMaxWindow {
+        final int series;
+        final long windowMillis;
+        private long[] minTs = new long[64];
+        private double[] minVal = new double[64];
+        private int minHead, minSize;
+        private long[] maxTs = new long[64];
+        private double[] maxVal = new double[64];
+        private int maxHead, maxSize;
+
+        MinMaxWindow(int series, long windowMillis) {
+            this.series = series;
+            this.windowMillis = windowMillis;
+        }
+
+        void add(long ts, double v) {
+            if (v > 0) {
+                // 最小值队列：从队尾弹出所有 >= v 的元素
+                while (minSize > 0 && minVal[(minHead + minSize - 1) & (minVal.length - 1)] >= v) minSize--;
+                if (minSize == minVal.length) growMin();
+                int slot = (minHead + minSize++) & (minVal.length - 1);
+                minTs[slot] = ts;
+                minVal[slot] = v;
+                // 最大值队列：从队尾弹出所有 <= v 的元素
+                while (maxSize > 0 && maxVal[(maxHead + maxSize - 1) & (maxVal.length - 1)] <= v) maxSize--;
+                if (maxSize == maxVal.length) growMax();
+                slot = (maxHead + maxSize++) & (maxVal.length - 1);
+                maxTs[slot] = ts;
+                maxVal[slot] = v;
+            }
+            long cutoff = ts - windowMillis;
+            while (minSize > 0 && minTs[minHead] < cutoff) {
+                minHead = (minHead + 1) & (minVal.length - 1);
+                minSize--;
+            }
+            while (maxSize > 0 && maxTs[maxHead] < cutoff) {
+                maxHead = (maxHead + 1) & (maxVal.length - 1);
+                maxSize--;
+            }
+        }
+
+        boolean isEmpty() {
+            return minSize == 0;
+        }
+
+        double min() {
+            return minVal[minHead];
+        }
+
+        double max() {
+            return maxVal[maxHead];
+        }
+
+        private void growMin() {
+            long[] ts = new long[minTs.length * 2];
+            double[] val = new double[minVal.length * 2];
+            for (int i = 0; i < minSize; i++) {
+                int slot = (minHead + i) & (minVal.length - 1);
+                ts[i] = minTs[slot];
+                val[i] = minVal[slot];
+            }
+            minTs = ts;
+            minVal = val;
+            minHead = 0;
+        }
+
+        private void growMax() {
+            long[] ts = new long[maxTs.length * 2];
+            double[] val = new double[maxVal.length * 2];
+            for (int i = 0; i < maxSize; i++) {
+                int slot = (maxHead + i) & (maxVal.length - 1);
+                ts[i] = maxTs[slot];
+                val[i] = maxVal[slot];
+            }
+            maxTs = ts;
+            maxVal = val;
+            maxHead = 0;
+        }
+    }
+
+    /**
+     * N 周期收盘价均线：跟踪当前 K 线的最新价，跨入新时间桶时把它作为收盘价计入均线
+     */
+    static final class MovingAverage {
+        final int series;
+        final CandleResolution resolution;
+        private final double[] closes;
+        private int next;
+        private int count;
+        private double sum;
+        private long bucket = Long.MIN_VALUE;
+        private double lastPrice;
+        boolean closedThisTick;
+        double lastClose;
+
+        MovingAverage(int series, CandleResolution resolution, int period) {
+            this.series = series;
+            this.resolution = resolution;
+            this.closes = new double[period];
+        }
+
+        void warmUp(CandleStore store, PriceSnapshot latest) {
+            long current = resolution.bucketStart(latest.getTimestamp());
+            long from = current - resolution.millis() * closes.length;
+            try {
+                store.scan(resolution, from, current - 1, (openTime, values, tickCount) -> {
+                    double close = values[series * 4 + CandleStore.CLOSE];
+                    if (close > 0) push(close);
+                    return true;
+                });
+            } catch (IOException e) {
+                logger.error("预热均线失败: " + e.getMessage());
+            }
+            bucket = current;
+            lastPrice = seriesValue(latest, series);
+        }
+
+        void onTick(long ts, double v) {
+            closedThisTick = false;
+            long b = resolution.bucketStart(ts);
+            if (b > bucket) {
+                if (bucket != Long.MIN_VALUE && lastPrice > 0) {
+                    push(lastPrice);
+                    lastClose = lastPrice;
+                    closedThisTick = true;
+                }
+                bucket = b;
+                lastPrice = 0;
+            }
+            if (v > 0) lastPrice = v;
+        }
+
+        private void push(double close) {
+            if (count == closes.length) {
+                sum -= closes[next];
+            } else {
+                count++;
+            }
+            closes[next] = close;
+            sum += close;
+            next = (next + 1) % closes.length;
+            if (next == 0) {
+                // 每转一圈精确重算一次，避免浮点累加误差随时间漂移（均摊 O(1)）
+                sum = 0;
+                for (int i = 0; i < count; i++) sum += closes[i];
+            }
+        }
+
+        boolean isReady() {
+            return count == closes.length;
+        }
+
+        double average() {
+            return sum / count;
+        }
+    }
+}
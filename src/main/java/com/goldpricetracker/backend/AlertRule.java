@@ -0,0 +1,231 @@
+package com.goldpricetracker.backend;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一条预警规则（已解析、不可变）。
+ *
+ * 规则写在配置里，形如 alert.rule.&lt;名称&gt;=&lt;规则&gt;，语法：
+ * <pre>
+ *   above   &lt;品种&gt; &lt;价格&gt;                 价格升至阈值以上
+ *   below   &lt;品种&gt; &lt;价格&gt;                 价格跌至阈值以下
+ *   move    &lt;品种&gt; &lt;百分比&gt;% &lt;时长&gt;        时间窗内相对最高/最低点的涨跌幅达到阈值，如 move domestic 1% 15m
+ *   cross   &lt;品种&gt; ma&lt;N&gt; &lt;周期&gt;           K 线收盘价上穿/下穿 N 周期均线，如 cross international ma20 1m
+ *   premium above|below &lt;值&gt;[%]          国内金价相对 "国际金价 × 汇率" 折算价的溢价（元/克或百分比）
+ * </pre>
+ * 品种：domestic | international | rate；时长：30s、15m、1h、1d。
+ * 可选后缀：band &lt;值&gt; 滞回带宽（与阈值同单位，默认 0），cooldown &lt;时长&gt; 两次提醒的最小间隔（默认 10m）。
+ *
+ * 滞回：条件成立时提醒一次并"解除武装"，直到数值回到阈值另一侧再退回 band 之后才重新武装，
+ * 价格在阈值附近来回波动时不会反复提醒。
+ */
+public final class AlertRule {
+
+    public enum Type { ABOVE, BELOW, MOVE, CROSS, PREMIUM_ABOVE, PREMIUM_BELOW }
+
+    public static final int DOMESTIC = 0;
+    public static final int INTERNATIONAL = 1;
+    public static final int RATE = 2;
+
+    public static final long DEFAULT_COOLDOWN_MS = TimeUnit.MINUTES.toMillis(10);
+
+    private final String id;
+    private final String spec;
+    private final Type type;
+    private final int series;
+    private final double threshold;
+    private final boolean percent;
+    private final long windowMillis;
+    private final int period;
+    private final CandleResolution resolution;
+    private final double band;
+    private final long cooldownMillis;
+
+    private AlertRule(String id, String spec, Type type, int series, double threshold, boolean percent,
+                      long windowMillis, int period, CandleResolution resolution, double band, long cooldownMillis) {
+        this.id = id;
+        this.spec = spec;
+        this.type = type;
+        this.series = series;
+        this.threshold = threshold;
+        this.percent = percent;
+        this.windowMillis = windowMillis;
+        this.period = period;
+        this.resolution = resolution;
+        this.band = band;
+        this.cooldownMillis = cooldownMillis;
+    }
+
+    /**
+     * 解析一条规则。
+     * @param id 规则标识（配置键中的名称）
+     * @throws IllegalArgumentException 语法错误
+     */
+    public static AlertRule parse(String id, String spec) {
+        String[] tokens = spec.trim().toLowerCase(Locale.ROOT).split("\\s+");
+        int n = tokens.length;
+        // 先剥离可选后缀
+        double band = 0;
+        long cooldown = DEFAULT_COOLDOWN_MS;
+        while (n >= 2 && (tokens[n - 2].equals("band") || tokens[n - 2].equals("cooldown"))) {
+            if (tokens[n - 2].equals("band")) {
+                band = parseNumber(stripPercent(tokens[n - 1]));
+            } else {
+                cooldown = parseDuration(tokens[n - 1]);
+            }
+            n -= 2;
+        }
+        if (band < 0) throw new IllegalArgumentException("band 不能为负数: " + spec);
+        if (n < 1) throw new IllegalArgumentException("空规则");
+
+        switch (tokens[0]) {
+            case "above":
+            case "below": {
+                expect(n, 3, spec);
+                Type type = tokens[0].equals("above") ? Type.ABOVE : Type.BELOW;
+                return new AlertRule(id, spec, type, parseSeries(tokens[1]), parseNumber(tokens[2]), false,
+                        0, 0, null, band, cooldown);
+            }
+            case "move": {
+                expect(n, 4, spec);
+                if (!tokens[2].endsWith("%")) throw new IllegalArgumentException("move 的幅度需以 % 结尾: " + spec);
+                double pct = parseNumber(stripPercent(tokens[2]));
+                if (pct <= 0) throw new IllegalArgumentException("move 的幅度必须为正: " + spec);
+                return new AlertRule(id, spec, Type.MOVE, parseSeries(tokens[1]), pct, true,
+                        parseDuration(tokens[3]), 0, null, band, cooldown);
+            }
+            case "cross": {
+                expect(n, 4, spec);
+                if (!tokens[2].startsWith("ma")) throw new IllegalArgumentException("cross 需指定 ma<N>: " + spec);
+                int period = (int) parseNumber(tokens[2].substring(2));
+                if (period < 1 || period > 1000) throw new IllegalArgumentException("均线周期需在 1~1000 之间: " + spec);
+                CandleResolution resolution = CandleResolution.fromId(tokens[3]);
+                if (resolution == null) throw new IllegalArgumentException("不支持的 K 线周期: " + spec);
+                return new AlertRule(id, spec, Type.CROSS, parseSeries(tokens[1]), 0, false,
+                        0, period, resolution, band, cooldown);
+            }
+            case "premium": {
+                expect(n, 3, spec);
+                Type type;
+                if (tokens[1].equals("above")) {
+                    type = Type.PREMIUM_ABOVE;
+                } else if (tokens[1].equals("below")) {
+                    type = Type.PREMIUM_BELOW;
+                } else {
+                    throw new IllegalArgumentException("premium 需为 above 或 below: " + spec);
+                }
+                boolean pct = tokens[2].endsWith("%");
+                return new AlertRule(id, spec, type, DOMESTIC, parseNumber(stripPercent(tokens[2])), pct,
+                        0, 0, null, band, cooldown);
+            }
+            default:
+                throw new IllegalArgumentException("未知的规则类型: " + spec);
+        }
+    }
+
+    /**
+     * 由旧版的固定阈值配置（alert.domestic.max 等）生成等价规则。
+     */
+    static AlertRule threshold(String id, int series, boolean above, double value) {
+        String spec = (above ? "above " : "below ") + seriesName(series) + " " + value;
+        return new AlertRule(id, spec, above ? Type.ABOVE : Type.BELOW, series, value, false,
+                0, 0, null, 0, DEFAULT_COOLDOWN_MS);
+    }
+
+    private static void expect(int n, int count, String spec) {
+        if (n != count) throw new IllegalArgumentException("参数个数不正确: " + spec);
+    }
+
+    private static String stripPercent(String token) {
+        return token.endsWith("%") ? token.substring(0, token.length() - 1) : token;
+    }
+
+    private static double parseNumber(String token) {
+        try {
+            return Double.parseDouble(token);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("不是数字: " + token);
+        }
+    }
+
+    private static int parseSeries(String token) {
+        switch (token) {
+            case "domestic": return DOMESTIC;
+            case "international": return INTERNATIONAL;
+            case "rate": return RATE;
+            default: throw new IllegalArgumentException("未知的品种: " + token);
+        }
+    }
+
+    static String seriesName(int series) {
+        switch (series) {
+            case DOMESTIC: return "domestic";
+            case INTERNATIONAL: return "international";
+            default: return "rate";
+        }
+    }
+
+    static long parseDuration(String token) {
+        if (token.length() < 2) throw new IllegalArgumentException("无法识别的时长: " + token);
+        char unit = token.charAt(token.length() - 1);
+        long value = (long) parseNumber(token.substring(0, token.length() - 1));
+        if (value <= 0) throw new IllegalArgumentException("时长必须为正: " + token);
+        switch (unit) {
+            case 's': return TimeUnit.SECONDS.toMillis(value);
+            case 'm': return TimeUnit.MINUTES.toMillis(value);
+            case 'h': return TimeUnit.HOURS.toMillis(value);
+            case 'd': return TimeUnit.DAYS.toMillis(value);
+            default: throw new IllegalArgumentException("无法识别的时长: " + token);
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getSpec() {
+        return spec;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getSeries() {
+        return series;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    public boolean isPercent() {
+        return percent;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public int getPeriod() {
+        return period;
+    }
+
+    public CandleResolution getResolution() {
+        return resolution;
+    }
+
+    public double getBand() {
+        return band;
+    }
+
+    public long getCooldownMillis() {
+        return cooldownMillis;
+    }
+
+    @Override
+    public String toString() {
+        return id + ": " + spec;
+    }
+}
@@ -0,0 +1,100 @@
+package com.goldpricetracker.backend;
+
+/**
+ * 增量 K 线聚合：在 tick 流上同时维护 1m / 5m / 15m / 1h / 1d 五个周期、
+ * 国内金价 / 国际金价 / 汇率三个序列的 OHLC。
+ *
+ * 每个 tick 只做 5 × 3 次比较与赋值 (O(1))，不分配对象；
+ * 某个周期跨入新的时间桶时，把上一根已完成的 K 线交给 CandleSink（通常是 CandleStore）。
+ * 值 <= 0 的字段视为缺失，不参与聚合。
+ */
+public class CandleAggregator {
+
+    /** 已完成 K 线的接收方 */
+    @FunctionalInterface
+    public interface CandleSink {
+        void onCandleClosed(CandleResolution resolution, long openTime, double[] values, int tickCount);
+    }
+
+    private static final CandleResolution[] RESOLUTIONS = CandleResolution.values();
+    private static final int V = CandleStore.VALUE_COUNT;
+
+    private final CandleSink sink;
+    private final long[] openTimes = new long[RESOLUTIONS.length];
+    private final int[] tickCounts = new int[RESOLUTIONS.length];
+    // 按周期展开：values[resolution * 12 + series * 4 + OPEN/HIGH/LOW/CLOSE]
+    private final double[] values = new double[RESOLUTIONS.length * V];
+    // 交给 sink 的复用缓冲
+    private final double[] emitBuffer = new double[V];
+
+    public CandleAggregator(CandleSink sink) {
+        this.sink = sink;
+        for (int r = 0; r < RESOLUTIONS.length; r++) {
+            openTimes[r] = Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * 处理一个 tick。
+     */
+    public synchronized void onTick(long timestamp, double domestic, double international, double rate) {
+        for (int r = 0; r < RESOLUTIONS.length; r++) {
+            long bucket = RESOLUTIONS[r].bucketStart(timestamp);
+            if (bucket != openTimes[r]) {
+                if (bucket < openTimes[r]) continue; // 时钟回拨：忽略
+                emit(r);
+                openTimes[r] = bucket;
+                tickCounts[r] = 0;
+                int base = r * V;
+                for (int k = 0; k < V; k++) values[base + k] = 0.0;
+            }
+            int base = r * V;
+            update(base + CandleStore.DOMESTIC * 4, domestic);
+            update(base + CandleStore.INTERNATIONAL * 4, international);
+            update(base + CandleStore.RATE * 4, rate);
+            tickCounts[r]++;
+        }
+    }
+
+    public void onTick(PriceSnapshot snapshot) {
+        onTick(snapshot.getTimestamp(), snapshot.getDomestic(), snapshot.getInternational(), snapshot.getRate());
+    }
+
+    /**
+     * 读取某个周期尚未完成的当前 K 线。
+     * @param out 长度至少为 CandleStore.VALUE_COUNT
+     * @return 当前 K 线的起始时间；还没有任何 tick 时返回 Long.MIN_VALUE
+     */
+    public synchronized long current(CandleResolution resolution, double[] out) {
+        int r = resolution.ordinal();
+        if (tickCounts[r] == 0) return Long.MIN_VALUE;
+        System.arraycopy(values, r * V, out, 0, V);
+        return openTimes[r];
+    }
+
+    /**
+     * @return 当前 K 线包含的 tick 数
+     */
+    public synchronized int currentTickCount(CandleResolution resolution) {
+        return tickCounts[resolution.ordinal()];
+    }
+
+    private void update(int offset, double price) {
+        if (price <= 0) return;
+        if (values[offset + CandleStore.OPEN] == 0.0) {
+            values[offset + CandleStore.OPEN] = price;
+            values[offset + CandleStore.HIGH] = price;
+            values[offset + CandleStore.LOW] = price;
+        } else {
+            if (price > values[offset + CandleStore.HIGH]) values[offset + CandleStore.HIGH] = price;
+            if (price < values[offset + CandleStore.LOW]) values[offset + CandleStore.LOW] = price;
+        }
+        values[offset + CandleStore.CLOSE] = price;
+    }
+
+    private void emit(int r) {
+        if (tickCounts[r] == 0 || sink == null) return;
+        System.arraycopy(values, r * V, emitBuffer, 0, V);
+        sink.onCandleClosed(RESOLUTIONS[r], openTimes[r], emitBuffer, tickCounts[r]);
+    }
+}
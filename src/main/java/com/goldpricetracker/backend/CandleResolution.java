@@ -0,0 +1,51 @@
+package com.goldpricetracker.backend;
+
+/**
+ * K 线周期。周期按北京时间对齐，日线从 00:00 开始。
+ */
+public enum CandleResolution {
+    M1("1m", 60_000L),
+    M5("5m", 5 * 60_000L),
+    M15("15m", 15 * 60_000L),
+    H1("1h", 60 * 60_000L),
+    D1("1d", 24 * 60 * 60_000L);
+
+    private static final long OFFSET_MS = 8 * 60 * 60_000L;
+
+    private final String id;
+    private final long millis;
+
+    CandleResolution(String id, long millis) {
+        this.id = id;
+        this.millis = millis;
+    }
+
+    /**
+     * @return 用于目录名与接口参数的标识，如 "5m"
+     */
+    public String id() {
+        return id;
+    }
+
+    public long millis() {
+        return millis;
+    }
+
+    /**
+     * @return 包含该时刻的 K 线的起始时间 (epoch 毫秒)
+     */
+    public long bucketStart(long epochMillis) {
+        return Math.floorDiv(epochMillis + OFFSET_MS, millis) * millis - OFFSET_MS;
+    }
+
+    /**
+     * 按标识查找周期，不区分大小写。
+     * @return 找不到时返回 null
+     */
+    public static CandleResolution fromId(String id) {
+        for (CandleResolution r : values()) {
+            if (r.id.equalsIgnoreCase(id)) return r;
+        }
+        return null;
+    }
+}
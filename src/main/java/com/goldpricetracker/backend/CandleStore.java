@@ -0,0 +1,92 @@
+package com.goldpricetracker.backend;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * 已完成 K 线的持久化存储：每个周期一个 MappedRecordLog，永久保留。
+ *
+ * 每条记录的 12 个 double 依次为 国内金价、国际金价、汇率 三个序列的 开/高/低/收，
+ * flags 字段保存该 K 线包含的 tick 数。
+ * 1 分钟线约 60MB/年，其余周期可以忽略不计。
+ */
+public class CandleStore implements Closeable {
+
+    /** 默认存储目录（相对运行目录） */
+    public static final Path DEFAULT_DIR = Paths.get("data", "candles");
+
+    // 序列下标
+    public static final int DOMESTIC = 0;
+    public static final int INTERNATIONAL = 1;
+    public static final int RATE = 2;
+    public static final int SERIES_COUNT = 3;
+    // 单个序列内的偏移：values[series * 4 + OPEN]
+    public static final int OPEN = 0;
+    public static final int HIGH = 1;
+    public static final int LOW = 2;
+    public static final int CLOSE = 3;
+    public static final int VALUE_COUNT = SERIES_COUNT * 4;
+
+    private static final int RECORDS_PER_SEGMENT = 16384;
+
+    /** 范围扫描的回调；values 数组在回调之间复用 */
+    @FunctionalInterface
+    public interface CandleVisitor {
+        /**
+         * @return false 表示停止扫描
+         */
+        boolean onCandle(long openTime, double[] values, int tickCount);
+    }
+
+    private final MappedRecordLog[] logs = new MappedRecordLog[CandleResolution.values().length];
+    private final long[] lastOpenTime = new long[CandleResolution.values().length];
+
+    public CandleStore(Path dir) throws IOException {
+        for (CandleResolution r : CandleResolution.values()) {
+            MappedRecordLog log = new MappedRecordLog(dir.resolve(r.id()), "candles", VALUE_COUNT, RECORDS_PER_SEGMENT, 0);
+            logs[r.ordinal()] = log;
+            long[] last = { Long.MIN_VALUE };
+            log.readLast((ts, v, flags) -> {
+                last[0] = ts;
+                return false;
+            });
+            lastOpenTime[r.ordinal()] = last[0];
+        }
+    }
+
+    /**
+     * 追加一根已完成的 K 线。起始时间不晚于已存储的最后一根时忽略，
+     * 因此启动时从 tick 重放生成的重复 K 线不会被写入两次。
+     * @return 是否实际写入
+     */
+    public synchronized boolean append(CandleResolution resolution, long openTime, double[] values, int tickCount)
+            throws IOException {
+        int i = resolution.ordinal();
+        if (openTime <= lastOpenTime[i]) return false;
+        logs[i].append(openTime, values, tickCount);
+        lastOpenTime[i] = openTime;
+        return true;
+    }
+
+    /**
+     * 按时间范围 [from, to] 扫描某个周期的 K 线（按起始时间）。
+     */
+    public void scan(CandleResolution resolution, long from, long to, CandleVisitor visitor) throws IOException {
+        logs[resolution.ordinal()].scan(from, to, visitor::onCandle);
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException error = null;
+        for (MappedRecordLog log : logs) {
+            try {
+                log.close();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        if (error != null) throw error;
+    }
+}
@@ -0,0 +1,73 @@
+package com.goldpricetracker.backend;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 配置的不可变视图。读取只是一次哈希查找，不涉及文件或锁；
+ * 需要在热路径上使用的数值应在配置变化时预先解析（见 ConfigStore 的监听者）。
+ */
+public final class ConfigSnapshot {
+
+    private final Map<String, String> values;
+    private final long version;
+
+    ConfigSnapshot(Map<String, String> values, long version) {
+        this.values = Collections.unmodifiableMap(values);
+        this.version = version;
+    }
+
+    /**
+     * @return 每次内容变化递增的版本号
+     */
+    public long version() {
+        return version;
+    }
+
+    public String get(String key) {
+        return values.get(key);
+    }
+
+    public String get(String key, String defaultValue) {
+        String value = values.get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = values.get(key);
+        return value != null ? Boolean.parseBoolean(value.trim()) : defaultValue;
+    }
+
+    /**
+     * @return 缺失或无法解析时返回 defaultValue
+     */
+    public double getDouble(String key, double defaultValue) {
+        String value = values.get(key);
+        if (value == null) return defaultValue;
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * @return 缺失或无法解析时返回 defaultValue
+     */
+    public int getInt(String key, int defaultValue) {
+        String value = values.get(key);
+        if (value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * @return 只读的全部键值
+     */
+    public Map<String, String> asMap() {
+        return values;
+    }
+}
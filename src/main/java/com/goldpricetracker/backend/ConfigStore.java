@@ -0,0 +1,244 @@
+package com.goldpricetracker.backend;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 全进程共享的配置存储 (gold_tracker_config.properties)。
+ *
+ * 原来界面、设置窗口和本地服务各持有一份 Properties，服务端每个请求都重新读文件，
+ * 写入是直接覆盖的 FileOutputStream，并发写可能把文件写坏。现在：
+ * 1. 内存中只有一份不可变的 ConfigSnapshot，读取是一次 volatile 读。
+ * 2. 写入串行化：先写同目录的临时文件，再原子重命名覆盖，任何时刻文件都是完整的；文件权限保持不变。
+ * 3. WatchService 监听文件被外部修改（手工编辑、另一个进程），自动重新加载。
+ * 4. 内容变化时通知监听者，界面和预警规则据此重新编译，而不是每个 tick 解析字符串。
+ */
+public final class ConfigStore {
+    private static final Logger logger = LoggerFactory.getLogger(ConfigStore.class);
+
+    public static final String CONFIG_FILE = "gold_tracker_config.properties";
+
+    // 首次创建配置文件时的权限，与 umask 022 下直接写文件得到的一致（createTempFile 默认只有 0600）
+    private static final Set<PosixFilePermission> NEW_FILE_PERMISSIONS = PosixFilePermissions.fromString("rw-r--r--");
+
+    private static final class Holder {
+        static final ConfigStore INSTANCE = create();
+
+        private static ConfigStore create() {
+            ConfigStore store = new ConfigStore(Paths.get(CONFIG_FILE));
+            store.startWatching();
+            return store;
+        }
+    }
+
+    private final Path file;
+    private final List<Consumer<ConfigSnapshot>> listeners = new CopyOnWriteArrayList<>();
+    private volatile ConfigSnapshot current;
+    private WatchService watchService;
+
+    ConfigStore(Path file) {
+        this.file = file.toAbsolutePath();
+        this.current = new ConfigSnapshot(read(), 1);
+    }
+
+    /**
+     * @return 全进程共享的实例
+     */
+    public static ConfigStore getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * @return 当前配置（不可变）
+     */
+    public ConfigSnapshot current() {
+        return current;
+    }
+
+    /**
+     * @return 是否已保存，见 update
+     */
+    public boolean set(String key, String value) {
+        Map<String, String> changes = new HashMap<>();
+        changes.put(key, value);
+        return update(changes);
+    }
+
+    /**
+     * 原子地应用一组修改并持久化。值为 null 表示删除该键。
+     * 内容没有变化时不写文件、不通知监听者。
+     * 写文件失败时当前配置保持不变、不通知监听者，以免界面显示一份重启后就会消失的配置。
+     *
+     * @return 已保存（或无需保存）返回 true；写文件失败返回 false
+     */
+    public boolean update(Map<String, String> changes) {
+        ConfigSnapshot snapshot;
+        synchronized (this) {
+            Map<String, String> values = new HashMap<>(current.asMap());
+            for (Map.Entry<String, String> e : changes.entrySet()) {
+                if (e.getValue() == null) {
+                    values.remove(e.getKey());
+                } else {
+                    values.put(e.getKey(), e.getValue());
+                }
+            }
+            if (values.equals(current.asMap())) return true;
+            try {
+                write(values);
+            } catch (IOException e) {
+                logger.error("保存配置失败: " + e.getMessage());
+                return false;
+            }
+            snapshot = new ConfigSnapshot(values, current.version() + 1);
+            current = snapshot;
+        }
+        notifyListeners(snapshot);
+        return true;
+    }
+
+    /**
+     * 注册配置变化监听者。回调在写入线程或文件监听线程上执行。
+     */
+    public void addListener(Consumer<ConfigSnapshot> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<ConfigSnapshot> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 从磁盘重新加载；内容变化时发布新快照并通知监听者。
+     */
+    public void reload() {
+        ConfigSnapshot snapshot;
+        synchronized (this) {
+            Map<String, String> values = read();
+            if (values.equals(current.asMap())) return;
+            snapshot = new ConfigSnapshot(values, current.version() + 1);
+            current = snapshot;
+        }
+        logger.info("配置文件已被外部修改，重新加载");
+        notifyListeners(snapshot);
+    }
+
+    private Map<String, String> read() {
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            props.load(in);
+        } catch (NoSuchFileException ignored) {
+            // 首次运行没有配置文件
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error("读取配置失败: " + e.getMessage());
+        }
+        Map<String, String> values = new HashMap<>();
+        for (String key : props.stringPropertyNames()) {
+            values.put(key, props.getProperty(key));
+        }
+        return values;
+    }
+
+    private void write(Map<String, String> values) throws IOException {
+        Properties props = new Properties();
+        props.putAll(values);
+        Path dir = file.getParent();
+        Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            copyPermissions(temp);
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                props.store(out, null);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 原子重命名会把临时文件的权限带到配置文件上：POSIX 系统上沿用原文件的权限，外部工具照常可读
+     */
+    private void copyPermissions(Path temp) throws IOException {
+        if (Files.getFileAttributeView(temp, PosixFileAttributeView.class) == null) return;
+        Set<PosixFilePermission> permissions;
+        try {
+            permissions = Files.getPosixFilePermissions(file);
+        } catch (NoSuchFileException e) {
+            permissions = NEW_FILE_PERMISSIONS;
+        }
+        Files.setPosixFilePermissions(temp, permissions);
+    }
+
+    private void notifyListeners(ConfigSnapshot snapshot) {
+        for (Consumer<ConfigSnapshot> listener : listeners) {
+            try {
+                listener.accept(snapshot);
+            } catch (Exception e) {
+                logger.error("配置监听者处理失败: " + e.getMessage());
+            }
+        }
+    }
+
+    private void startWatching() {
+        try {
+            watchService = file.getFileSystem().newWatchService();
+            file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            logger.error("无法监听配置文件变化: " + e.getMessage());
+            return;
+        }
+        Thread watcher = new Thread(this::watchLoop, "config-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void watchLoop() {
+        Path name = file.getFileName();
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (name.equals(event.context())) changed = true;
+                }
+                key.reset();
+                if (changed) {
+                    // 编辑器保存时往往连续触发多次事件，稍等片刻合并为一次加载
+                    Thread.sleep(50);
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // 退出监听
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.goldpricetracker.backend;
+
+/**
+ * 价格的定点小数格式化。
+ * String.format("%.4f") 每次都要解析格式串并分配 Formatter，
+ * 在批量输出（历史查询、每个 tick 的 JSON）时开销明显；这里直接按整数拆分写入。
+ */
+final class Decimals {
+
+    // 超过该值时 v * 10000 可能丢失整数精度，退回 Double.toString
+    private static final double FAST_LIMIT = 1e14;
+
+    private Decimals() {}
+
+    /**
+     * 按四位小数（四舍五入）追加到 sb。与 String.format("%.4f", v) 的差别只出现在恰好落在舍入边界上的二进制值。
+     * NaN 与无穷大写为 "null"。
+     */
+    static void appendFixed4(StringBuilder sb, double v) {
+        if (Double.isNaN(v) || Double.isInfinite(v)) {
+            sb.append("null");
+            return;
+        }
+        if (v < 0) {
+            long probe = Math.round(-v * 10000.0);
+            if (probe != 0) sb.append('-');
+            v = -v;
+        }
+        if (v >= FAST_LIMIT) {
+            sb.append(v);
+            return;
+        }
+        long scaled = Math.round(v * 10000.0);
+        long integer = scaled / 10000;
+        int fraction = (int) (scaled % 10000);
+        sb.append(integer).append('.');
+        if (fraction < 1000) sb.append('0');
+        if (fraction < 100) sb.append('0');
+        if (fraction < 10) sb.append('0');
+        sb.append(fraction);
+    }
+}
@@ -0,0 +1,477 @@
+package com.goldpricetracker.backend;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 历史区间查询：从 TickStore / CandleStore 流式读出一段时间的数据，
+ * 按需在服务端降采样后以 JSON、CSV 或紧凑二进制写出。
+ *
+ * 参数（均可省略）：
+ * - from / to：epoch 毫秒，默认最近 24 小时
+ * - resolution：raw | 1m | 5m | 15m | 1h | 1d | auto（默认 auto）
+ * - max_points：最多返回的点数，默认 2000，上限 100000
+ * - format：json | csv | bin（默认 json）
+ *
+ * 点数超过 max_points 时，相邻的 tick / K 线会合并成更宽的 OHLC 桶（开取首、收取尾、高低取极值），
+ * 因此一年的数据也只返回几千个点。整个过程只保留一个正在合并的桶，内存占用与区间长度无关。
+ *
+ * 二进制格式（大端）：4 字节魔数 "GPH1"，1 字节类型（0 = tick，1 = K 线），随后是定长记录直到流结束：
+ * tick 为 long 时间戳 + 3 个 double (国内, 国际, 汇率) + int flags；
+ * K 线为 long 起始时间 + 12 个 double (国内/国际/汇率 各 开高低收) + int tick 数。
+ */
+public class HistoryQuery {
+
+    public enum Format { JSON, CSV, BIN }
+
+    public static final int DEFAULT_MAX_POINTS = 2000;
+    public static final int MAX_POINTS_LIMIT = 100_000;
+    private static final long DEFAULT_RANGE_MS = TimeUnit.HOURS.toMillis(24);
+    // auto 模式下，平均每个点跨度不超过该值时直接返回原始 tick（开市时 tick 间隔约 0.75~2 秒）
+    private static final long RAW_SPACING_MS = 2000;
+
+    private static final String[] TICK_COLUMNS = { "t", "domestic", "international", "rate", "flags" };
+    private static final String[] CANDLE_COLUMNS = {
+            "t",
+            "domestic_open", "domestic_high", "domestic_low", "domestic_close",
+            "international_open", "international_high", "international_low", "international_close",
+            "rate_open", "rate_high", "rate_low", "rate_close",
+            "ticks" };
+
+    private final long from;
+    private final long to;
+    // null 表示原始 tick
+    private final CandleResolution resolution;
+    private final int maxPoints;
+    private final Format format;
+
+    public HistoryQuery(long from, long to, CandleResolution resolution, int maxPoints, Format format) {
+        this.from = from;
+        this.to = to;
+        this.resolution = resolution;
+        this.maxPoints = maxPoints;
+        this.format = format;
+    }
+
+    /**
+     * 从查询参数构造。
+     * @throws IllegalArgumentException 参数不合法
+     */
+    public static HistoryQuery fromParams(Map<String, String> params, long now) {
+        long to = parseLong(params, "to", now);
+        long from = parseLong(params, "from", to - DEFAULT_RANGE_MS);
+        if (from > to) throw new IllegalArgumentException("from 晚于 to");
+        int maxPoints = (int) parseLong(params, "max_points", DEFAULT_MAX_POINTS);
+        if (maxPoints < 1 || maxPoints > MAX_POINTS_LIMIT) {
+            throw new IllegalArgumentException("max_points 需在 1~" + MAX_POINTS_LIMIT + " 之间");
+        }
+
+        Format format;
+        String f = params.getOrDefault("format", "json");
+        switch (f.toLowerCase()) {
+            case "json": format = Format.JSON; break;
+            case "csv": format = Format.CSV; break;
+            case "bin": format = Format.BIN; break;
+            default: throw new IllegalArgumentException("不支持的 format: " + f);
+        }
+
+        String r = params.getOrDefault("resolution", "auto");
+        CandleResolution resolution;
+        if ("raw".equalsIgnoreCase(r)) {
+            resolution = null;
+        } else if ("auto".equalsIgnoreCase(r)) {
+            resolution = autoResolution(to - from, maxPoints);
+        } else {
+            resolution = CandleResolution.fromId(r);
+            if (resolution == null) throw new IllegalArgumentException("不支持的 resolution: " + r);
+        }
+        return new HistoryQuery(from, to, resolution, maxPoints, format);
+    }
+
+    /**
+     * 选择能在 maxPoints 以内覆盖区间的最细周期；区间很短时直接用原始 tick。
+     */
+    static CandleResolution autoResolution(long range, int maxPoints) {
+        if (range <= maxPoints * RAW_SPACING_MS) return null;
+        for (CandleResolution r : CandleResolution.values()) {
+            if (range / r.millis() <= maxPoints) return r;
+        }
+        return CandleResolution.D1;
+    }
+
+    private static long parseLong(Map<String, String> params, String name, long defaultValue) {
+        String value = params.get(name);
+        if (value == null || value.isEmpty()) return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " 不是整数: " + value);
+        }
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public String getContentType() {
+        switch (format) {
+            case CSV: return "text/csv; charset=utf-8";
+            case BIN: return "application/octet-stream";
+            default: return "application/json; charset=utf-8";
+        }
+    }
+
+    /**
+     * @return 实际使用的周期标识（"raw" 或 "1m" 等）
+     */
+    public String getResolutionId() {
+        return resolution == null ? "raw" : resolution.id();
+    }
+
+    /**
+     * 执行查询并把结果流式写入 out（不负责关闭 out）。
+     * @param candles 进行中的 K 线来源，用于补上尚未完成的最后一根；可为 null
+     * @throws IllegalStateException 所需的存储不可用
+     */
+    public void execute(TickStore tickStore, CandleStore candleStore, CandleAggregator candles, OutputStream out)
+            throws IOException {
+        if (resolution == null && tickStore == null) throw new IllegalStateException("tick 存储不可用");
+        if (resolution != null && candleStore == null) throw new IllegalStateException("K 线存储不可用");
+
+        long bucketMs = bucketWidth(tickStore);
+        boolean candleOutput = resolution != null || bucketMs > 0;
+        RowWriter writer = createWriter(out);
+        Bucketer bucketer = bucketMs > 0 ? new Bucketer(writer, bucketMs) : null;
+
+        try {
+            writer.begin(candleOutput, bucketMs);
+            if (resolution == null) {
+                tickStore.scan(from, to, (ts, domestic, international, rate, flags) -> {
+                    if (bucketer != null) {
+                        bucketer.addTick(ts, domestic, international, rate);
+                    } else {
+                        writer.tick(ts, domestic, international, rate, flags);
+                    }
+                    return true;
+                });
+            } else {
+                long[] lastOpen = { Long.MIN_VALUE };
+                candleStore.scan(resolution, resolution.bucketStart(from), to, (openTime, values, tickCount) -> {
+                    lastOpen[0] = openTime;
+                    emitCandle(writer, bucketer, openTime, values, tickCount);
+                    return true;
+                });
+                if (candles != null) {
+                    double[] current = new double[CandleStore.VALUE_COUNT];
+                    long openTime = candles.current(resolution, current);
+                    int tickCount = candles.currentTickCount(resolution);
+                    if (openTime > lastOpen[0] && openTime <= to && openTime + resolution.millis() > from) {
+                        emitCandle(writer, bucketer, openTime, current, tickCount);
+                    }
+                }
+            }
+            // 最后一个桶在 flush 时才写出，写出错误同样以 UncheckedIOException 抛出
+            if (bucketer != null) bucketer.flush();
+            writer.end();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void emitCandle(RowWriter writer, Bucketer bucketer, long openTime, double[] values, int tickCount) {
+        if (bucketer != null) {
+            bucketer.addCandle(openTime, values, tickCount);
+        } else {
+            writer.candle(openTime, values, tickCount);
+        }
+    }
+
+    /**
+     * @return 降采样的桶宽；不需要降采样时返回 0
+     */
+    private long bucketWidth(TickStore tickStore) throws IOException {
+        long range = Math.max(1, to - from);
+        if (resolution != null) {
+            if (range / resolution.millis() <= maxPoints) return 0;
+            long width = (range + maxPoints - 1) / maxPoints;
+            // 取周期的整数倍，避免一根 K 线被拆到两个桶里
+            return (width + resolution.millis() - 1) / resolution.millis() * resolution.millis();
+        }
+        // 原始 tick 的数量事先未知，先数一遍（内存映射顺序读，很快）
+        long[] count = { 0 };
+        tickStore.scan(from, to, (ts, d, i, r, f) -> ++count[0] <= maxPoints);
+        if (count[0] <= maxPoints) return 0;
+        return (range + maxPoints - 1) / maxPoints;
+    }
+
+    private RowWriter createWriter(OutputStream out) {
+        switch (format) {
+            case CSV: return new CsvWriter(out);
+            case BIN: return new BinaryWriter(out);
+            default: return new JsonWriter(out);
+        }
+    }
+
+    /**
+     * 把输入的 tick 或 K 线合并到以 from 为基准、宽度固定的 OHLC 桶中
+     */
+    private final class Bucketer {
+        private final RowWriter writer;
+        private final long width;
+        private final double[] values = new double[CandleStore.VALUE_COUNT];
+        private long bucket = Long.MIN_VALUE;
+        private int tickCount;
+
+        Bucketer(RowWriter writer, long width) {
+            this.writer = writer;
+            this.width = width;
+        }
+
+        void addTick(long ts, double domestic, double international, double rate) {
+            roll(ts);
+            merge(CandleStore.DOMESTIC * 4, domestic, domestic, domestic, domestic);
+            merge(CandleStore.INTERNATIONAL * 4, international, international, international, international);
+            merge(CandleStore.RATE * 4, rate, rate, rate, rate);
+            tickCount++;
+        }
+
+        void addCandle(long openTime, double[] v, int ticks) {
+            roll(openTime);
+            for (int s = 0; s < CandleStore.SERIES_COUNT; s++) {
+                int o = s * 4;
+                merge(o, v[o + CandleStore.OPEN], v[o + CandleStore.HIGH], v[o + CandleStore.LOW], v[o + CandleStore.CLOSE]);
+            }
+            tickCount += ticks;
+        }
+
+        void flush() {
+            if (bucket != Long.MIN_VALUE && tickCount > 0) {
+                writer.candle(bucket, values, tickCount);
+            }
+        }
+
+        private void roll(long ts) {
+            long b = from + Math.floorDiv(ts - from, width) * width;
+            if (b == bucket) return;
+            flush();
+            bucket = b;
+            tickCount = 0;
+            Arrays.fill(values, 0.0);
+        }
+
+        private void merge(int offset, double open, double high, double low, double close) {
+            if (!(open > 0)) return;
+            if (values[offset + CandleStore.OPEN] == 0.0) {
+                values[offset + CandleStore.OPEN] = open;
+                values[offset + CandleStore.HIGH] = high;
+                values[offset + CandleStore.LOW] = low;
+            } else {
+                if (high > values[offset + CandleStore.HIGH]) values[offset + CandleStore.HIGH] = high;
+                if (low < values[offset + CandleStore.LOW]) values[offset + CandleStore.LOW] = low;
+            }
+            values[offset + CandleStore.CLOSE] = close;
+        }
+    }
+
+    /**
+     * 输出编码。写出错误以 UncheckedIOException 抛出，以便穿过扫描回调，由 execute 还原。
+     */
+    private abstract class RowWriter {
+        abstract void begin(boolean candleOutput, long bucketMs);
+        abstract void tick(long ts, double domestic, double international, double rate, int flags);
+        abstract void candle(long openTime, double[] values, int tickCount);
+        abstract void end() throws IOException;
+    }
+
+    /**
+     * 文本编码的公共部分：逐行拼到可复用的 StringBuilder，攒够一批再以 ASCII 写出
+     */
+    private abstract class TextWriter extends RowWriter {
+        private static final int FLUSH_CHARS = 32 * 1024;
+        private final OutputStream out;
+        final StringBuilder sb = new StringBuilder(FLUSH_CHARS + 1024);
+        private byte[] bytes = new byte[FLUSH_CHARS + 1024];
+
+        TextWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        void appendPrice(double v, String missing) {
+            if (v > 0) {
+                Decimals.appendFixed4(sb, v);
+            } else {
+                sb.append(missing);
+            }
+        }
+
+        void maybeFlush() {
+            if (sb.length() >= FLUSH_CHARS) {
+                try {
+                    drain();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        void drain() throws IOException {
+            int n = sb.length();
+            if (bytes.length < n) bytes = new byte[n];
+            // 输出只包含 ASCII 字符
+            for (int i = 0; i < n; i++) bytes[i] = (byte) sb.charAt(i);
+            out.write(bytes, 0, n);
+            sb.setLength(0);
+        }
+
+        @Override
+        void end() throws IOException {
+            drain();
+            out.flush();
+        }
+    }
+
+    private final class JsonWriter extends TextWriter {
+        private boolean first = true;
+
+        JsonWriter(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        void begin(boolean candleOutput, long bucketMs) {
+            sb.append("{\"resolution\":\"").append(getResolutionId())
+                    .append("\",\"bucket_ms\":").append(bucketMs)
+                    .append(",\"from\":").append(from)
+                    .append(",\"to\":").append(to)
+                    .append(",\"columns\":[");
+            String[] columns = candleOutput ? CANDLE_COLUMNS : TICK_COLUMNS;
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append('"').append(columns[i]).append('"');
+            }
+            sb.append("],\"data\":[");
+        }
+
+        @Override
+        void tick(long ts, double domestic, double international, double rate, int flags) {
+            row(ts);
+            appendPrice(domestic, "null");
+            sb.append(',');
+            appendPrice(international, "null");
+            sb.append(',');
+            appendPrice(rate, "null");
+            sb.append(',').append(flags).append(']');
+            maybeFlush();
+        }
+
+        @Override
+        void candle(long openTime, double[] values, int tickCount) {
+            row(openTime);
+            for (double v : values) {
+                appendPrice(v, "null");
+                sb.append(',');
+            }
+            sb.append(tickCount).append(']');
+            maybeFlush();
+        }
+
+        private void row(long ts) {
+            if (!first) sb.append(',');
+            first = false;
+            sb.append('[').append(ts).append(',');
+        }
+
+        @Override
+        void end() throws IOException {
+            sb.append("]}");
+            super.end();
+        }
+    }
+
+    private final class CsvWriter extends TextWriter {
+        CsvWriter(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        void begin(boolean candleOutput, long bucketMs) {
+            sb.append(String.join(",", candleOutput ? CANDLE_COLUMNS : TICK_COLUMNS)).append('\n');
+        }
+
+        @Override
+        void tick(long ts, double domestic, double international, double rate, int flags) {
+            sb.append(ts).append(',');
+            appendPrice(domestic, "");
+            sb.append(',');
+            appendPrice(international, "");
+            sb.append(',');
+            appendPrice(rate, "");
+            sb.append(',').append(flags).append('\n');
+            maybeFlush();
+        }
+
+        @Override
+        void candle(long openTime, double[] values, int tickCount) {
+            sb.append(openTime).append(',');
+            for (double v : values) {
+                appendPrice(v, "");
+                sb.append(',');
+            }
+            sb.append(tickCount).append('\n');
+            maybeFlush();
+        }
+    }
+
+    private final class BinaryWriter extends RowWriter {
+        private final DataOutputStream out;
+
+        BinaryWriter(OutputStream out) {
+            this.out = new DataOutputStream(out);
+        }
+
+        @Override
+        void begin(boolean candleOutput, long bucketMs) {
+            try {
+                out.write("GPH1".getBytes(StandardCharsets.US_ASCII));
+                out.writeByte(candleOutput ? 1 : 0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        void tick(long ts, double domestic, double international, double rate, int flags) {
+            try {
+                out.writeLong(ts);
+                out.writeDouble(domestic);
+                out.writeDouble(international);
+                out.writeDouble(rate);
+                out.writeInt(flags);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        void candle(long openTime, double[] values, int tickCount) {
+            try {
+                out.writeLong(openTime);
+                for (double v : values) out.writeDouble(v);
+                out.writeInt(tickCount);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        void end() throws IOException {
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,438 @@
+package com.goldpricetracker.backend;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基于内存映射文件的定长记录追加日志。
+ *
+ * 记录格式（Java 默认的大端字节序，跨平台一致）：
+ *   [时间戳 long][N 个 double][flags int][校验和 int]
+ * 时间戳单调不减，作为范围查询的键。
+ *
+ * 1. 文件按段 (segment) 切分，每段预分配固定条数，写满后切换到新段；旧段只保留文件，不再映射。
+ * 2. 追加只是几次对映射内存的绝对写入，最后写校验和，不经过堆、也不调用 force()，
+ *    进程崩溃后数据仍在操作系统页缓存中。
+ * 3. 启动时扫描最后一段，遇到第一条校验和不匹配（写了一半或全零）的记录即为尾部，从这里继续追加。
+ * 4. 可选的保留期：超过保留期的旧段在切换新段时删除，磁盘占用有上限。
+ *    映射要等 GC 才会释放，而 Windows 上仍被映射的文件删不掉，所以段封存时立即显式解除映射；
+ *    删除失败的段记下来，下次切换新段时重试。
+ *
+ * 追加需要单线程或外部同步；读取 (scan) 可与追加并发，只会看到已完整写入的记录。
+ */
+public class MappedRecordLog implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(MappedRecordLog.class);
+
+    private static final String SUFFIX = ".seg";
+    // 校验和种子：保证全零的记录校验失败
+    private static final long CHECKSUM_SEED = 0x9E3779B97F4A7C15L;
+
+    // sun.misc.Unsafe.invokeCleaner：立即解除映射（通过反射调用，不可用时退回等待 GC）
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.info("无法显式解除内存映射，旧段要等 GC 后才能删除: " + e.getMessage());
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    /** 范围扫描的回调；values 数组在回调之间复用，不要持有它 */
+    @FunctionalInterface
+    public interface RecordVisitor {
+        /**
+         * @return false 表示停止扫描
+         */
+        boolean visit(long timestamp, double[] values, int flags);
+    }
+
+    private final Path dir;
+    private final String prefix;
+    private final int valueCount;
+    private final int recordSize;
+    private final int recordsPerSegment;
+    private final long retentionMillis;
+
+    // 已封存的段，按序号升序；只在持有 this 锁时修改
+    private final List<Segment> sealed = new ArrayList<>();
+    private Segment active;
+    private MappedByteBuffer activeBuffer;
+    private volatile int activeCount;
+    private long lastTimestamp = Long.MIN_VALUE;
+    // 过期但没能删除的段文件，只在持有 this 锁时访问
+    private final List<Path> pendingDeletes = new ArrayList<>();
+
+    /**
+     * @param dir 段文件所在目录，不存在时自动创建
+     * @param prefix 段文件名前缀
+     * @param valueCount 每条记录的 double 字段数
+     * @param recordsPerSegment 每段记录条数
+     * @param retentionMillis 段的保留时长，0 表示永久保留
+     */
+    public MappedRecordLog(Path dir, String prefix, int valueCount, int recordsPerSegment, long retentionMillis)
+            throws IOException {
+        this.dir = dir;
+        this.prefix = prefix;
+        this.valueCount = valueCount;
+        this.recordSize = 8 + 8 * valueCount + 4 + 4;
+        this.recordsPerSegment = recordsPerSegment;
+        this.retentionMillis = retentionMillis;
+        Files.createDirectories(dir);
+        recover();
+    }
+
+    public int getValueCount() {
+        return valueCount;
+    }
+
+    /**
+     * 追加一条记录。时间戳小于上一条时按上一条处理，保证键单调不减。
+     */
+    public synchronized void append(long timestamp, double[] values, int flags) throws IOException {
+        if (active == null) throw new IOException("日志已关闭");
+        if (activeCount >= recordsPerSegment) {
+            roll(timestamp);
+        }
+        long ts = Math.max(timestamp, lastTimestamp);
+        int pos = activeCount * recordSize;
+        MappedByteBuffer buf = activeBuffer;
+        buf.putLong(pos, ts);
+        long h = mix(CHECKSUM_SEED ^ ts);
+        for (int i = 0; i < valueCount; i++) {
+            long bits = Double.doubleToRawLongBits(values[i]);
+            buf.putLong(pos + 8 + 8 * i, bits);
+            h = mix(h ^ bits);
+        }
+        buf.putInt(pos + 8 + 8 * valueCount, flags);
+        h = mix(h ^ flags);
+        // 校验和最后写入：它出现之前，这条记录对恢复过程和读者都是无效的
+        buf.putInt(pos + 8 + 8 * valueCount + 4, (int) (h ^ (h >>> 32)));
+        if (active.firstTimestamp == Long.MIN_VALUE) active.firstTimestamp = ts;
+        lastTimestamp = ts;
+        activeCount++;
+    }
+
+    /**
+     * 读取最后一条记录。
+     * @return 是否存在记录
+     */
+    public synchronized boolean readLast(RecordVisitor visitor) throws IOException {
+        if (active != null && activeCount > 0) {
+            return readAt(active, activeCount - 1, visitor);
+        }
+        for (int i = sealed.size() - 1; i >= 0; i--) {
+            Segment segment = sealed.get(i);
+            if (segment.count > 0) return readAt(segment, segment.count - 1, visitor);
+        }
+        return false;
+    }
+
+    /**
+     * 按时间范围 [from, to] 顺序扫描记录。
+     */
+    public void scan(long from, long to, RecordVisitor visitor) throws IOException {
+        List<Segment> segments;
+        synchronized (this) {
+            segments = new ArrayList<>(sealed);
+            if (active != null) {
+                active.count = activeCount;
+                segments.add(active);
+            }
+        }
+        // 找到最后一个起始时间 <= from 的段，从它开始扫描
+        int start = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            long first = segments.get(i).firstTimestamp;
+            if (first != Long.MIN_VALUE && first <= from) start = i;
+        }
+        double[] values = new double[valueCount];
+        ByteBuffer buf = ByteBuffer.allocate(recordSize * 256);
+        for (int i = start; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            if (segment.firstTimestamp != Long.MIN_VALUE && segment.firstTimestamp > to) break;
+            if (!scanSegment(segment, from, to, values, buf, visitor)) return;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (active == null) return;
+        if (activeBuffer != null) {
+            activeBuffer.force();
+            unmap(activeBuffer);
+        }
+        active.count = activeCount;
+        active.close();
+        active = null;
+        activeBuffer = null;
+    }
+
+    // ---------------- 内部实现 ----------------
+
+    private boolean scanSegment(Segment segment, long from, long to, double[] values, ByteBuffer buf,
+                                RecordVisitor visitor) throws IOException {
+        int count = segment.count;
+        try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+            int index = lowerBound(channel, count, from);
+            while (index < count) {
+                buf.clear();
+                int batch = Math.min(buf.capacity() / recordSize, count - index);
+                buf.limit(batch * recordSize);
+                long position = (long) index * recordSize;
+                while (buf.hasRemaining()) {
+                    if (channel.read(buf, position + buf.position()) < 0) return true;
+                }
+                for (int r = 0; r < batch; r++) {
+                    int pos = r * recordSize;
+                    if (!decode(buf, pos, values)) return true;
+                    long ts = buf.getLong(pos);
+                    if (ts > to) return false;
+                    if (!visitor.visit(ts, values, buf.getInt(pos + 8 + 8 * valueCount))) return false;
+                }
+                index += batch;
+            }
+        } catch (NoSuchFileException e) {
+            // 段已按保留期删除，跳过
+        }
+        return true;
+    }
+
+    /** 二分查找第一条时间戳 >= from 的记录下标 */
+    private int lowerBound(FileChannel channel, int count, long from) throws IOException {
+        ByteBuffer tsBuf = ByteBuffer.allocate(8);
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            tsBuf.clear();
+            channel.read(tsBuf, (long) mid * recordSize);
+            if (tsBuf.getLong(0) < from) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private boolean readAt(Segment segment, int index, RecordVisitor visitor) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(recordSize);
+        try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+            channel.read(buf, (long) index * recordSize);
+        }
+        double[] values = new double[valueCount];
+        if (!decode(buf, 0, values)) return false;
+        visitor.visit(buf.getLong(0), values, buf.getInt(8 + 8 * valueCount));
+        return true;
+    }
+
+    /**
+     * 解码并校验 pos 处的记录。
+     * @return 校验和是否匹配
+     */
+    private boolean decode(ByteBuffer buf, int pos, double[] values) {
+        long ts = buf.getLong(pos);
+        long h = mix(CHECKSUM_SEED ^ ts);
+        for (int i = 0; i < valueCount; i++) {
+            long bits = buf.getLong(pos + 8 + 8 * i);
+            if (values != null) values[i] = Double.longBitsToDouble(bits);
+            h = mix(h ^ bits);
+        }
+        int flags = buf.getInt(pos + 8 + 8 * valueCount);
+        h = mix(h ^ flags);
+        return buf.getInt(pos + 8 + 8 * valueCount + 4) == (int) (h ^ (h >>> 32));
+    }
+
+    /** 64 位混合函数 (SplitMix64 的终结步骤) */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * 启动恢复：列出已有段，定位最后一段的有效尾部。
+     */
+    private void recover() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, prefix + "-*" + SUFFIX)) {
+            for (Path path : stream) files.add(path);
+        }
+        files.sort(null);
+        for (Path path : files) {
+            Segment segment = new Segment(path, parseIndex(path));
+            segment.count = validCount(path);
+            segment.firstTimestamp = segment.count > 0 ? readTimestamp(path, 0) : Long.MIN_VALUE;
+            sealed.add(segment);
+        }
+        if (!sealed.isEmpty() && sealed.get(sealed.size() - 1).count < recordsPerSegment) {
+            // 最后一段未写满：重新映射并从有效尾部继续追加
+            Segment last = sealed.remove(sealed.size() - 1);
+            openActive(last);
+            if (last.count < recordsPerSegment && !isZeroRecord(last.path, last.count)) {
+                logger.warn("{} 尾部发现不完整记录，已从第 {} 条继续写入", last.path.getFileName(), last.count);
+            }
+        } else {
+            long next = sealed.isEmpty() ? 1 : sealed.get(sealed.size() - 1).index + 1;
+            openActive(new Segment(segmentPath(next), next));
+        }
+        if (activeCount > 0) {
+            lastTimestamp = readTimestamp(active.path, activeCount - 1);
+        } else if (!sealed.isEmpty()) {
+            Segment last = sealed.get(sealed.size() - 1);
+            if (last.count > 0) lastTimestamp = readTimestamp(last.path, last.count - 1);
+        }
+    }
+
+    private boolean isZeroRecord(Path path, int index) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(recordSize);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.read(buf, (long) index * recordSize);
+        }
+        for (int i = 0; i < buf.position(); i++) {
+            if (buf.get(i) != 0) return false;
+        }
+        return true;
+    }
+
+    private int validCount(Path path) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(recordSize * 256);
+        int count = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = Math.min(channel.size(), (long) recordsPerSegment * recordSize);
+            long position = 0;
+            while (position + recordSize <= size) {
+                buf.clear();
+                int n = channel.read(buf, position);
+                if (n < recordSize) break;
+                int records = n / recordSize;
+                for (int r = 0; r < records; r++) {
+                    if (!decode(buf, r * recordSize, null)) return count;
+                    count++;
+                }
+                position += (long) records * recordSize;
+            }
+        }
+        return count;
+    }
+
+    private long readTimestamp(Path path, int index) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.read(buf, (long) index * recordSize);
+        }
+        return buf.getLong(0);
+    }
+
+    private void openActive(Segment segment) throws IOException {
+        segment.channel = FileChannel.open(segment.path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        activeBuffer = segment.channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) recordsPerSegment * recordSize);
+        active = segment;
+        activeCount = segment.count;
+    }
+
+    private void roll(long timestamp) throws IOException {
+        // activeBuffer 为 null 说明上次切换在打开新段时失败，旧段已经封存
+        if (activeBuffer != null) {
+            activeBuffer.force();
+            MappedByteBuffer sealedBuffer = activeBuffer;
+            activeBuffer = null;
+            unmap(sealedBuffer);
+            active.count = activeCount;
+            active.close();
+            sealed.add(active);
+        }
+        openActive(new Segment(segmentPath(active.index + 1), active.index + 1));
+        purgeExpired(timestamp);
+    }
+
+    /** 删除整段都早于保留期的旧段（下一段的起始时间早于截止时间，说明本段已全部过期） */
+    private void purgeExpired(long now) {
+        if (retentionMillis <= 0) return;
+        pendingDeletes.removeIf(MappedRecordLog::tryDelete);
+        long cutoff = now - retentionMillis;
+        while (sealed.size() > 1 && sealed.get(1).firstTimestamp != Long.MIN_VALUE
+                && sealed.get(1).firstTimestamp < cutoff) {
+            Segment expired = sealed.remove(0);
+            if (!tryDelete(expired.path)) pendingDeletes.add(expired.path);
+        }
+    }
+
+    /**
+     * @return 是否已删除（或文件已不存在）
+     */
+    private static boolean tryDelete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+            return true;
+        } catch (IOException e) {
+            logger.warn("删除过期段失败，下次切换新段时重试: " + path + " " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 立即解除映射。调用后不能再访问 buffer，调用方须已丢弃对它的所有引用（读取走 FileChannel，不经过映射）。
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) return;
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException e) {
+            logger.warn("解除内存映射失败: " + e.getMessage());
+        }
+    }
+
+    private Path segmentPath(long index) {
+        return dir.resolve(String.format("%s-%012d%s", prefix, index, SUFFIX));
+    }
+
+    private long parseIndex(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(prefix.length() + 1, name.length() - SUFFIX.length()));
+    }
+
+    /** 一个段文件 */
+    private static final class Segment {
+        final Path path;
+        final long index;
+        volatile long firstTimestamp = Long.MIN_VALUE;
+        volatile int count;
+        FileChannel channel;
+
+        Segment(Path path, long index) {
+            this.path = path;
+            this.index = index;
+        }
+
+        void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+}
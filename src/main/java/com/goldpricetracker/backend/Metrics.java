@@ -0,0 +1,205 @@
+package com.goldpricetracker.backend;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内指标：上游请求延迟与结果、解析耗时、tick 到界面的延迟、各接口请求数，
+ * 由 PriceDataServer 的 /metrics 以 Prometheus 文本格式输出。
+ *
+ * 1. 记录路径只有数组下标 + LongAdder / 原子自增，无锁、无分配，可在生产环境常开。
+ * 2. 维度（数据源、结果）用枚举 ordinal 索引固定数组；接口维度在首次出现时注册，之后只做一次 map 读取。
+ * 3. tick 到界面的延迟：发布时按序号把 nanoTime 写入一个小环，界面渲染时按序号查回并计算差值。
+ */
+public final class Metrics {
+
+    /** 上游请求结果 */
+    public enum Outcome {
+        SUCCESS("success"),
+        FAILURE("failure"),
+        TIMEOUT("timeout"),
+        // 本轮已拿到所需数据而被主动取消，不算失败
+        CANCELLED("cancelled");
+
+        private final String id;
+
+        Outcome(String id) {
+            this.id = id;
+        }
+
+        public String id() {
+            return id;
+        }
+    }
+
+    private static final Metrics INSTANCE = new Metrics();
+    // 发布时刻环的容量：界面落后超过这么多个 tick 的样本直接丢弃
+    private static final int PUBLISH_RING = 64;
+
+    private final LatencyHistogram[] upstreamLatency = new LatencyHistogram[PriceSource.values().length];
+    private final LatencyHistogram[] parseTime = new LatencyHistogram[PriceSource.values().length];
+    private final LongAdder[][] upstreamOutcomes = new LongAdder[PriceSource.values().length][Outcome.values().length];
+    private final LatencyHistogram tickToUi = new LatencyHistogram();
+    // 交替存放 [序号, 发布时刻 nanoTime]
+    private final AtomicLongArray published = new AtomicLongArray(PUBLISH_RING * 2);
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    private Metrics() {
+        for (PriceSource source : PriceSource.values()) {
+            upstreamLatency[source.ordinal()] = new LatencyHistogram();
+            parseTime[source.ordinal()] = new LatencyHistogram();
+            for (Outcome outcome : Outcome.values()) {
+                upstreamOutcomes[source.ordinal()][outcome.ordinal()] = new LongAdder();
+            }
+        }
+        for (int i = 0; i < PUBLISH_RING; i++) published.set(i * 2, -1);
+    }
+
+    public static Metrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 记录一次上游请求的结果与耗时（从发出到结束或被取消）
+     */
+    public void recordUpstream(PriceSource source, Outcome outcome, long nanos) {
+        upstreamOutcomes[source.ordinal()][outcome.ordinal()].increment();
+        upstreamLatency[source.ordinal()].record(nanos);
+    }
+
+    /**
+     * 记录一次响应体解析耗时
+     */
+    public void recordParse(PriceSource source, long nanos) {
+        parseTime[source.ordinal()].record(nanos);
+    }
+
+    /**
+     * 快照发布时调用（发布线程），记下发布时刻
+     */
+    public void onPublished(long sequence) {
+        int slot = (int) (sequence & (PUBLISH_RING - 1)) * 2;
+        // 先写时刻再写序号，读取方校验序号后读到的时刻一定属于该序号
+        published.set(slot, -1);
+        published.set(slot + 1, System.nanoTime());
+        published.set(slot, sequence);
+    }
+
+    /**
+     * 快照显示到界面时调用；序号已被环覆盖（界面严重落后）时忽略
+     */
+    public void onRendered(long sequence) {
+        int slot = (int) (sequence & (PUBLISH_RING - 1)) * 2;
+        if (published.get(slot) != sequence) return;
+        long at = published.get(slot + 1);
+        if (published.get(slot) != sequence) return;
+        tickToUi.record(System.nanoTime() - at);
+    }
+
+    /**
+     * @return 指定接口的计数器，首次访问时注册
+     */
+    public Endpoint endpoint(String path) {
+        Endpoint endpoint = endpoints.get(path);
+        return endpoint != null ? endpoint : endpoints.computeIfAbsent(path, Endpoint::new);
+    }
+
+    /** 单个 HTTP 接口的计数 */
+    public static final class Endpoint {
+        private final String path;
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LatencyHistogram duration = new LatencyHistogram();
+
+        private Endpoint(String path) {
+            this.path = path;
+        }
+
+        /** 进入接口的请求（包括随后被拒绝的） */
+        public void onRequest() {
+            requests.increment();
+        }
+
+        /** 因过载以 503 拒绝的请求 */
+        public void onRejected() {
+            rejected.increment();
+        }
+
+        /** handler 的处理耗时；SSE 与长轮询只计到连接被挂起为止 */
+        public void recordDuration(long nanos) {
+            duration.record(nanos);
+        }
+    }
+
+    /**
+     * 以 Prometheus 文本格式（0.0.4）写出全部指标。
+     * @param latest 当前快照，用于计算快照年龄；可以为 null
+     */
+    public void appendPrometheus(StringBuilder sb, PriceSnapshot latest) {
+        header(sb, "gold_upstream_request_seconds", "summary", "Upstream request latency per source");
+        for (PriceSource source : PriceSource.values()) {
+            summary(sb, "gold_upstream_request_seconds", "source=\"" + source.id() + "\"", upstreamLatency[source.ordinal()]);
+        }
+        header(sb, "gold_upstream_request_max_seconds", "gauge", "Slowest upstream request since start");
+        for (PriceSource source : PriceSource.values()) {
+            sample(sb, "gold_upstream_request_max_seconds", "source=\"" + source.id() + "\"",
+                    seconds(upstreamLatency[source.ordinal()].maxNanos()));
+        }
+        header(sb, "gold_upstream_requests_total", "counter", "Upstream requests by source and outcome");
+        for (PriceSource source : PriceSource.values()) {
+            for (Outcome outcome : Outcome.values()) {
+                sample(sb, "gold_upstream_requests_total",
+                        "source=\"" + source.id() + "\",outcome=\"" + outcome.id() + "\"",
+                        upstreamOutcomes[source.ordinal()][outcome.ordinal()].sum());
+            }
+        }
+        header(sb, "gold_upstream_parse_seconds", "summary", "Response body parse time per source");
+        for (PriceSource source : PriceSource.values()) {
+            summary(sb, "gold_upstream_parse_seconds", "source=\"" + source.id() + "\"", parseTime[source.ordinal()]);
+        }
+        header(sb, "gold_tick_to_ui_seconds", "summary", "Delay from snapshot publish to on-screen render");
+        summary(sb, "gold_tick_to_ui_seconds", null, tickToUi);
+        header(sb, "gold_snapshot_age_seconds", "gauge", "Age of the latest published snapshot");
+        sample(sb, "gold_snapshot_age_seconds", null,
+                latest == null ? -1 : (System.currentTimeMillis() - latest.getTimestamp()) / 1000.0);
+
+        header(sb, "gold_http_requests_total", "counter", "Local server requests per endpoint");
+        endpoints.values().forEach(e -> sample(sb, "gold_http_requests_total", "endpoint=\"" + e.path + "\"", e.requests.sum()));
+        header(sb, "gold_http_rejected_total", "counter", "Requests shed with 503 per endpoint");
+        endpoints.values().forEach(e -> sample(sb, "gold_http_rejected_total", "endpoint=\"" + e.path + "\"", e.rejected.sum()));
+        header(sb, "gold_http_request_seconds", "summary", "Handler time per endpoint");
+        endpoints.values().forEach(e -> summary(sb, "gold_http_request_seconds", "endpoint=\"" + e.path + "\"", e.duration));
+    }
+
+    static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    static void sample(StringBuilder sb, String name, String labels, double value) {
+        sb.append(name);
+        if (labels != null) sb.append('{').append(labels).append('}');
+        sb.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            sb.append((long) value);
+        } else {
+            sb.append(String.format(Locale.ROOT, "%.6g", value));
+        }
+        sb.append('\n');
+    }
+
+    private static void summary(StringBuilder sb, String name, String labels, LatencyHistogram histogram) {
+        String prefix = labels == null ? "" : labels + ",";
+        sample(sb, name, prefix + "quantile=\"0.5\"", seconds(histogram.quantileNanos(0.5)));
+        sample(sb, name, prefix + "quantile=\"0.99\"", seconds(histogram.quantileNanos(0.99)));
+        sample(sb, name + "_sum", labels, seconds(histogram.sumNanos()));
+        sample(sb, name + "_count", labels, histogram.count());
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+}
@@ -0,0 +1,141 @@
+package com.goldpricetracker.backend;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 价格流水线的 JFR 事件：抓取 → 解析 → 校验 → 发布 → 界面渲染，以及本地服务的请求处理。
+ *
+ * 录制时与 GC、网络等待、线程阻塞等 JDK 事件放在同一时间轴上，
+ * 排查卡顿只需一次录制，例如：
+ * java -XX:StartFlightRecording=filename=gold.jfr,settings=profile ...
+ *
+ * 未开启录制时 shouldCommit() 直接返回 false，热路径上只剩一次对象创建（通常被逃逸分析消除）。
+ * 事件名统一以 goldpricetracker. 开头，便于在 JMC 或 jfr print --events 中过滤。
+ */
+public final class PipelineEvents {
+
+    private static final String CATEGORY = "Gold Price Tracker";
+
+    private PipelineEvents() {}
+
+    /** 一次上游请求：从发出到结束、超时或被取消 */
+    @Name("goldpricetracker.Fetch")
+    @Label("Upstream Fetch")
+    @Category({ CATEGORY, "Pipeline" })
+    @StackTrace(false)
+    public static final class Fetch extends Event {
+        @Label("Source")
+        public String source;
+
+        @Label("Response Bytes")
+        @DataAmount
+        public long bytes;
+
+        @Label("Outcome")
+        @Description("success / failure / timeout / cancelled")
+        public String outcome;
+    }
+
+    /** 一次响应体解析 */
+    @Name("goldpricetracker.Parse")
+    @Label("Parse Response")
+    @Category({ CATEGORY, "Pipeline" })
+    @StackTrace(false)
+    public static final class Parse extends Event {
+        @Label("Source")
+        public String source;
+
+        @Label("Input Bytes")
+        @DataAmount
+        public long bytes;
+
+        @Label("Outcome")
+        @Description("ok / empty / error")
+        public String outcome;
+    }
+
+    /** 国内金价校验与兜底，生成快照 */
+    @Name("goldpricetracker.Validate")
+    @Label("Validate Snapshot")
+    @Category({ CATEGORY, "Pipeline" })
+    @StackTrace(false)
+    public static final class Validate extends Event {
+        @Label("International Source")
+        public String source;
+
+        @Label("Sequence")
+        public long sequence;
+
+        @Label("Flags")
+        @Description("PriceSnapshot 的来源与兜底标志位")
+        public int flags;
+
+        @Label("Outcome")
+        @Description("live / calculated / cached / empty")
+        public String outcome;
+    }
+
+    /** 快照发布：写环形缓冲区、持久化、K 线聚合与通知监听者 */
+    @Name("goldpricetracker.Publish")
+    @Label("Publish Snapshot")
+    @Category({ CATEGORY, "Pipeline" })
+    @StackTrace(false)
+    public static final class Publish extends Event {
+        @Label("Sequence")
+        public long sequence;
+
+        @Label("Listeners")
+        public int listeners;
+
+        @Label("Outcome")
+        @Description("ok / listener_error")
+        public String outcome;
+    }
+
+    /** 本地服务处理一个请求（SSE 与长轮询只计到连接被挂起为止） */
+    @Name("goldpricetracker.ServerRequest")
+    @Label("Server Request")
+    @Category({ CATEGORY, "Server" })
+    @StackTrace(false)
+    public static final class ServerRequest extends Event {
+        @Label("Endpoint")
+        public String source;
+
+        @Label("Method")
+        public String method;
+
+        @Label("Response Bytes")
+        @DataAmount
+        public long bytes;
+
+        @Label("Status")
+        public int status;
+
+        @Label("Outcome")
+        @Description("served / rejected / error")
+        public String outcome;
+    }
+
+    /** 界面在一个脉冲内应用一个快照 */
+    @Name("goldpricetracker.Render")
+    @Label("FX Render")
+    @Category({ CATEGORY, "UI" })
+    @StackTrace(false)
+    public static final class Render extends Event {
+        @Label("Sequence")
+        public long sequence;
+
+        @Label("Nodes Touched")
+        public int nodes;
+
+        @Label("Outcome")
+        @Description("updated / unchanged / hidden")
+        public String outcome;
+    }
+}
@@ -0,0 +1,124 @@
+package com.goldpricetracker.backend;
+
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 自适应轮询策略：根据交易时段、近期波动和数据源健康状况决定下一次抓取的间隔。
+ *
+ * 规则（按优先级）：
+ * 1. 数据源连续失败：从基础间隔开始指数退避（上限 60 秒），并加入 ±20% 随机抖动，避免与上游同步重试。
+ * 2. 周末（国际金也休市，约周六 06:00 至周一 06:00）：60 秒一次，报价基本不动。
+ * 3. 行情剧烈波动：相邻两次国际金价的相对变化 (EWMA) 超过阈值时，缩短到 750 毫秒。
+ * 4. 国内开市：2 秒一次。
+ * 5. 国内休市但国际金仍在交易：5 秒一次（国内价由国际价推算，精度要求较低）。
+ * 国内休市期间，等待时间不会越过 TradingCalendar 给出的下一次开市时刻，保证开市后第一时间拿到行情。
+ *
+ * 该类只做计算，不持有线程；由 PriceHub 在每次抓取完成后调用，实现固定延迟 (fixed-delay) 语义。
+ */
+public class PollingPolicy {
+
+    static final long FAST_INTERVAL_MS = 750;
+    static final long OPEN_INTERVAL_MS = 2000;
+    static final long CLOSED_INTERVAL_MS = 5000;
+    static final long WEEKEND_INTERVAL_MS = 60_000;
+    static final long MAX_BACKOFF_MS = 60_000;
+
+    // 波动阈值：相邻两次相对变化的 EWMA 超过万分之三视为快市
+    private static final double FAST_MARKET_THRESHOLD = 0.0003;
+    // EWMA 平滑系数
+    private static final double ALPHA = 0.2;
+    // 周末判定：周六 / 周一的这个钟点（北京时间）为国际金休市边界
+    private static final int WEEKEND_BOUNDARY_HOUR = 6;
+
+    private final TradingCalendar calendar;
+    private Clock clock = Clock.system(ZoneId.of("Asia/Shanghai"));
+    private double volatility = 0.0;
+    private double lastInternational = 0.0;
+    private int consecutiveFailures = 0;
+
+    public PollingPolicy() {
+        this(TradingCalendar.getInstance());
+    }
+
+    public PollingPolicy(TradingCalendar calendar) {
+        this.calendar = calendar;
+    }
+
+    /**
+     * 允许外部注入 Clock 对象，便于固定时间
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * 根据刚完成的一次抓取结果计算下一次抓取前的等待时间。
+     * @param snapshot 本次抓取结果
+     * @return 等待毫秒数
+     */
+    public synchronized long nextDelay(PriceSnapshot snapshot) {
+        // 所有数据源都没给出实时国际金价，视为一次失败
+        if (snapshot.getInternationalSource() == null) {
+            return onFailure();
+        }
+        consecutiveFailures = 0;
+        updateVolatility(snapshot.getInternational());
+
+        if (!snapshot.isMarketClosed()) {
+            return volatility >= FAST_MARKET_THRESHOLD ? FAST_INTERVAL_MS : OPEN_INTERVAL_MS;
+        }
+        long delay;
+        if (isWeekend()) {
+            delay = WEEKEND_INTERVAL_MS;
+        } else {
+            delay = volatility >= FAST_MARKET_THRESHOLD ? FAST_INTERVAL_MS : CLOSED_INTERVAL_MS;
+        }
+        // 不要睡过下一次开市
+        long now = clock.millis();
+        long untilOpen = calendar.nextOpen(now) - now;
+        if (untilOpen > 0 && untilOpen < delay) {
+            delay = untilOpen;
+        }
+        return delay;
+    }
+
+    /**
+     * 抓取本身抛出异常时调用。
+     * @return 带抖动的退避等待毫秒数
+     */
+    public synchronized long onFailure() {
+        consecutiveFailures = Math.min(consecutiveFailures + 1, 16);
+        long backoff = Math.min(MAX_BACKOFF_MS, OPEN_INTERVAL_MS << (consecutiveFailures - 1));
+        double jitter = 0.8 + 0.4 * ThreadLocalRandom.current().nextDouble();
+        return (long) (backoff * jitter);
+    }
+
+    /**
+     * @return 当前的波动估计（相邻两次国际金价相对变化的 EWMA）
+     */
+    public synchronized double getVolatility() {
+        return volatility;
+    }
+
+    private void updateVolatility(double international) {
+        if (lastInternational > 0 && international > 0) {
+            double change = Math.abs(international - lastInternational) / lastInternational;
+            volatility = ALPHA * change + (1 - ALPHA) * volatility;
+        }
+        if (international > 0) lastInternational = international;
+    }
+
+    private boolean isWeekend() {
+        LocalDateTime now = LocalDateTime.now(clock);
+        DayOfWeek day = now.getDayOfWeek();
+        int hour = now.getHour();
+        if (day == DayOfWeek.SUNDAY) return true;
+        if (day == DayOfWeek.SATURDAY) return hour >= WEEKEND_BOUNDARY_HOUR;
+        if (day == DayOfWeek.MONDAY) return hour < WEEKEND_BOUNDARY_HOUR;
+        return false;
+    }
+}
@@ -3,70 +3,309 @@ package com.goldpricetracker.backend;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.Properties;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * 本地数据服务 (仅本机访问)
- * 提供 /price 与 /settings 接口，供原生 AppBar 或其他前端拉取展示。
+ * 提供 /price、/stream、/history、/settings、/health 与 /metrics 接口，供原生 AppBar 或其他前端拉取展示。
+ * /price 读取 PriceHub 的共享快照，不会为每个请求单独访问上游；
+ * 带 after=序号 时为长轮询，直到出现更新的快照或超时才返回。
+ * /stream 以 Server-Sent Events 推送每个新快照，客户端无需轮询。
+ * /history 只读本地 tick / K 线存储，参数见 HistoryQuery。
+ * 每个接口都有并发上限与排队准入控制（AdmissionFilter），过载时返回 503 + Retry-After；
+ * 总连接数另有上限 (MAX_CONNECTIONS)，超出的连接直接被关闭。
  */
 public class PriceDataServer {
+    private static final Logger logger = LoggerFactory.getLogger(PriceDataServer.class);
+
     private static HttpServer server;
-    private static final String CONFIG_FILE = "gold_tracker_config.properties";
-    private static final int PORT = 9876;
+    private static PriceStreamBroadcaster broadcaster;
+    private static PriceLongPoll longPoll;
+    // 可用系统属性 gold.server.port 覆盖（压测时避开正在运行的实例）
+    private static final int PORT = Integer.getInteger("gold.server.port", 9876);
+    // 同时保持的连接上限（keep-alive、SSE 与挂起的长轮询都算在内）。
+    // 请求在被分发到执行器之前（监听队列、分发线程）的等待服务端看不到，准入控制无从判断，
+    // 只能限制连接数：超出上限的连接在 accept 后立即关闭，客户端马上失败，而不是排上几秒
+    private static final int MAX_CONNECTIONS = 2048;
+    // 监听队列长度：突发连接的去留由 MAX_CONNECTIONS 决定，队列只需吸收 accept 的短暂延迟
+    private static final int BACKLOG = 256;
+    // 准入控制：排队超过该深度或等待超过该时长的请求直接返回 503
+    private static final int MAX_QUEUE_DEPTH = 512;
+    private static final long MAX_QUEUE_WAIT_MS = 1000;
+    private static final int RETRY_AFTER_SECONDS = 1;
+    // 同时保持的 SSE 连接与挂起的长轮询上限，两者之和小于 MAX_CONNECTIONS，给普通请求留出连接
+    private static final int MAX_STREAM_CLIENTS = 512;
+    private static final int MAX_LONG_POLL_WAITERS = 1024;
+    private static ServerExecutor executor;
 
     public static void startAsync() {
         try {
             if (server != null) return;
-            server = HttpServer.create(new InetSocketAddress("127.0.0.1", PORT), 0);
-            server.createContext("/price", new PriceHandler());
-            server.createContext("/settings", new SettingsHandler());
-            server.setExecutor(java.util.concurrent.Executors.newCachedThreadPool());
+            applyServerProperties();
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", PORT), BACKLOG);
+            executor = ServerExecutor.create(Math.max(8, Runtime.getRuntime().availableProcessors() * 4));
+            // 发布时就生成 /price 的响应体，请求路径上只剩一次数组写出；先于长轮询注册，等待者拿到的是现成的字节
+            PriceHub.getInstance().addListener(PricePayload::of);
+            longPoll = new PriceLongPoll(PriceHub.getInstance(), PriceDataServer::respondPrice, executor);
+            longPoll.start();
+            createContext("/price", new PriceHandler(longPoll), 256);
+            broadcaster = new PriceStreamBroadcaster(PriceHub.getInstance());
+            broadcaster.start();
+            createContext("/stream", new StreamHandler(broadcaster), 64);
+            // 大范围历史查询是唯一可能长时间占用线程的接口
+            createContext("/history", new HistoryHandler(), 4);
+            createContext("/settings", new SettingsHandler(), 8);
+            createContext("/health", new HealthHandler(), 16);
+            createContext("/metrics", new MetricsHandler(), 4);
+            server.setExecutor(executor);
             server.start();
-            System.out.println("PriceDataServer started on http://127.0.0.1:" + PORT);
+            System.out.println("PriceDataServer started on http://127.0.0.1:" + PORT
+                    + (executor.isVirtual() ? " (virtual threads)" : ""));
         } catch (IOException e) {
             System.err.println("Failed to start PriceDataServer: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
+    /**
+     * 设置 JDK 内置 HttpServer 的连接参数，已显式指定的不覆盖：
+     * 1. jdk.httpserver.maxConnections：总连接上限，超出的连接在 accept 后立即关闭。
+     * 2. sun.net.httpserver.maxIdleConnections：默认只保留 200 个空闲 keep-alive 连接，
+     *    超出的在每次响应后被关闭，客户端每个请求都要重新建连，几百个客户端时建连开销就压过了请求本身；
+     *    这里放宽到与连接上限相同。
+     * 3. sun.net.httpserver.nodelay：响应头与响应体分两次写出，开着 Nagle 算法时第二次写要等对端的延迟确认，
+     *    每个响应平白多出约 40ms。
+     * 这些属性在本 JVM 创建第一个 HttpServer 时读取一次，同一进程内还有其他 HttpServer 时（例如压测用的上游桩），
+     * 需要在它们之前调用。
+     */
+    public static void applyServerProperties() {
+        setDefault("jdk.httpserver.maxConnections", String.valueOf(MAX_CONNECTIONS));
+        setDefault("sun.net.httpserver.maxIdleConnections", String.valueOf(MAX_CONNECTIONS));
+        setDefault("sun.net.httpserver.nodelay", "true");
+    }
+
+    private static void setDefault(String key, String value) {
+        if (System.getProperty(key) == null) System.setProperty(key, value);
+    }
+
+    private static void createContext(String path, HttpHandler handler, int maxConcurrent) {
+        server.createContext(path, handler).getFilters().add(new AdmissionFilter(path, maxConcurrent, executor,
+                MAX_QUEUE_DEPTH, MAX_QUEUE_WAIT_MS, RETRY_AFTER_SECONDS));
+    }
+
+    /**
+     * GET /price 返回最新快照；GET /price?after=序号[&timeout=毫秒] 为长轮询，
+     * 超时仍无更新时返回 204，客户端带同样的 after 重新请求即可
+     */
     static class PriceHandler implements HttpHandler {
-        private final PriceService priceService = new PriceService();
+        private final PriceHub priceHub = PriceHub.getInstance();
+        private final PriceLongPoll longPoll;
+
+        PriceHandler(PriceLongPoll longPoll) {
+            this.longPoll = longPoll;
+        }
+
         @Override
         public void handle(HttpExchange exchange) throws IOException {
             if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
                 respond(exchange, 405, "{\"error\":\"method_not_allowed\"}");
                 return;
             }
-            Map<String, Double> prices = priceService.fetchPrices();
-            double domestic = prices.getOrDefault("domestic", 0.0);
-            double international = prices.getOrDefault("international", 0.0);
-            double marketClosed = prices.getOrDefault("market_closed", 0.0);
-
-            String json = String.format("{\"domestic\":%.4f,\"international\":%.4f,\"market_closed\":%d}",
-                    domestic, international, marketClosed > 0.5 ? 1 : 0);
-            respond(exchange, 200, json);
+            Map<String, String> params = parseQuery(exchange);
+            String after = params.get("after");
+            if (after != null) {
+                long afterSeq;
+                long timeout = PriceLongPoll.DEFAULT_TIMEOUT_MS;
+                try {
+                    afterSeq = Long.parseLong(after.trim());
+                    if (params.containsKey("timeout")) timeout = Long.parseLong(params.get("timeout").trim());
+                } catch (NumberFormatException e) {
+                    respond(exchange, 400, "{\"error\":\"bad_request\"}");
+                    return;
+                }
+                if (longPoll.waiting() >= MAX_LONG_POLL_WAITERS) {
+                    AdmissionFilter.reject(exchange, RETRY_AFTER_SECONDS);
+                    return;
+                }
+                // 不关闭 exchange：挂起期间由 longPoll 持有
+                longPoll.await(exchange, afterSeq, timeout);
+                return;
+            }
+            // 抓取节奏完全由 PollingPolicy 决定（休市、周末与退避时会放慢），这里只读最新快照；
+            // 仅在启动后尚无任何快照时才同步抓取一次
+            PriceSnapshot snapshot = priceHub.latest();
+            respondPrice(exchange, snapshot != null ? snapshot : priceHub.refresh());
         }
     }
 
-    static class SettingsHandler implements HttpHandler {
+    /**
+     * 写出快照的 JSON（发布时已预序列化）与 ETag；If-None-Match 命中时返回 304，
+     * snapshot 为 null（长轮询超时）时返回 204
+     */
+    static void respondPrice(HttpExchange exchange, PriceSnapshot snapshot) throws IOException {
+        if (snapshot == null) {
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+            return;
+        }
+        PricePayload payload = PricePayload.of(snapshot);
+        exchange.getResponseHeaders().set("ETag", payload.getEtag());
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        if (payload.matches(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        byte[] bytes = payload.getJson();
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    /**
+     * 上游数据源健康状态：EWMA 延迟、错误率、数据新鲜度与熔断器状态
+     */
+    static class HealthHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
-            Properties props = new Properties();
-            try (FileInputStream in = new FileInputStream(CONFIG_FILE)) {
-                props.load(in);
-            } catch (IOException ignored) {}
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                respond(exchange, 405, "{\"error\":\"method_not_allowed\"}");
+                return;
+            }
+            respond(exchange, 200, PriceHub.getInstance().getSourceHealth().toJson());
+        }
+    }
+
+    /**
+     * Prometheus 文本格式的运行指标：上游延迟与结果、解析耗时、tick 到界面延迟、快照年龄、各接口请求数，
+     * 以及服务端排队深度与挂起的连接数
+     */
+    static class MetricsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                respond(exchange, 405, "{\"error\":\"method_not_allowed\"}");
+                return;
+            }
+            StringBuilder sb = new StringBuilder(8192);
+            Metrics.getInstance().appendPrometheus(sb, PriceHub.getInstance().latest());
+            Metrics.header(sb, "gold_server_queue_depth", "gauge", "Requests waiting for a server thread");
+            Metrics.sample(sb, "gold_server_queue_depth", null, executor.queueDepth());
+            Metrics.header(sb, "gold_stream_clients", "gauge", "Open SSE connections");
+            Metrics.sample(sb, "gold_stream_clients", null, broadcaster.clientCount());
+            Metrics.header(sb, "gold_long_poll_waiters", "gauge", "Parked long-poll requests");
+            Metrics.sample(sb, "gold_long_poll_waiters", null, longPoll.waiting());
+            byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        }
+    }
 
+    /**
+     * SSE 推送：?delta=1 只发送变化的字段；Last-Event-ID 头或 ?last_event_id= 用于断线续传
+     */
+    static class StreamHandler implements HttpHandler {
+        private final PriceStreamBroadcaster broadcaster;
+
+        StreamHandler(PriceStreamBroadcaster broadcaster) {
+            this.broadcaster = broadcaster;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                respond(exchange, 405, "{\"error\":\"method_not_allowed\"}");
+                return;
+            }
+            Map<String, String> params = parseQuery(exchange);
+            boolean delta = "1".equals(params.get("delta")) || "true".equalsIgnoreCase(params.get("delta"));
+            String lastId = exchange.getRequestHeaders().getFirst("Last-Event-ID");
+            if (lastId == null) lastId = params.get("last_event_id");
+            long lastEventId = -1;
+            if (lastId != null) {
+                try {
+                    lastEventId = Long.parseLong(lastId.trim());
+                } catch (NumberFormatException ignored) {}
+            }
+            if (broadcaster.clientCount() >= MAX_STREAM_CLIENTS) {
+                AdmissionFilter.reject(exchange, RETRY_AFTER_SECONDS);
+                return;
+            }
+            // 不关闭 exchange：连接交给 broadcaster 持有
+            broadcaster.open(exchange, delta, lastEventId);
+        }
+    }
+
+    /**
+     * 历史区间查询：分块流式输出，客户端支持时 gzip 压缩
+     */
+    static class HistoryHandler implements HttpHandler {
+        private final PriceHub priceHub = PriceHub.getInstance();
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                respond(exchange, 405, "{\"error\":\"method_not_allowed\"}");
+                return;
+            }
+            HistoryQuery query;
+            try {
+                query = HistoryQuery.fromParams(parseQuery(exchange), System.currentTimeMillis());
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, "{\"error\":\"bad_request\",\"message\":\""
+                        + e.getMessage().replace("\\", "\\\\").replace("\"", "\\\"") + "\"}");
+                return;
+            }
+            TickStore tickStore = priceHub.getTickStore();
+            CandleStore candleStore = priceHub.getCandleStore();
+            if ("raw".equals(query.getResolutionId()) ? tickStore == null : candleStore == null) {
+                respond(exchange, 503, "{\"error\":\"store_unavailable\"}");
+                return;
+            }
+
+            boolean gzip = acceptsGzip(exchange);
+            exchange.getResponseHeaders().set("Content-Type", query.getContentType());
+            exchange.getResponseHeaders().set("X-Resolution", query.getResolutionId());
+            if (gzip) exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            // 长度 0 表示分块传输，边扫描边输出
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream body = new BufferedOutputStream(exchange.getResponseBody(), 64 * 1024);
+            if (gzip) body = new GZIPOutputStream(body, 64 * 1024);
+            try {
+                query.execute(tickStore, candleStore, priceHub.getCandles(), body);
+            } catch (IOException | IllegalStateException e) {
+                // 响应头已发出，只能中断连接。不能关闭 body 或 exchange：那会写出 gzip 尾部（对已写部分的有效 CRC）
+                // 和结束块，客户端会把截断的数据当成完整响应。异常抛出后 HttpServer 直接关闭底层连接
+                logger.warn("History query failed: " + e.getMessage());
+                throw e instanceof IOException ? (IOException) e : new IOException(e);
+            }
+            body.close();
+        }
+    }
+
+    static class SettingsHandler implements HttpHandler {
+        private final ConfigStore configStore = ConfigStore.getInstance();
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
             if ("GET".equalsIgnoreCase(exchange.getRequestMethod())) {
-                String fontSize = props.getProperty("font.size", "14");
-                String lang = props.getProperty("lang", "zh-CN");
+                ConfigSnapshot config = configStore.current();
+                String fontSize = config.get("font.size", "14");
+                String lang = config.get("lang", "zh-CN");
                 String json = String.format("{\"font_size\":%s,\"lang\":\"%s\"}", fontSize, lang);
                 respond(exchange, 200, json);
                 return;
@@ -75,15 +314,17 @@ public class PriceDataServer {
                 byte[] body = exchange.getRequestBody().readAllBytes();
                 String text = new String(body, StandardCharsets.UTF_8);
                 // 简单解析：key=value&key=value
+                Map<String, String> changes = new HashMap<>();
                 for (String pair : text.split("&")) {
                     String[] kv = pair.split("=");
                     if (kv.length == 2) {
-                        if ("font_size".equals(kv[0])) props.setProperty("font.size", kv[1]);
-                        if ("lang".equals(kv[0])) props.setProperty("lang", kv[1]);
+                        if ("font_size".equals(kv[0])) changes.put("font.size", kv[1]);
+                        if ("lang".equals(kv[0])) changes.put("lang", kv[1]);
                     }
                 }
-                try (FileOutputStream out = new FileOutputStream(CONFIG_FILE)) {
-                    props.store(out, null);
+                if (!configStore.update(changes)) {
+                    respond(exchange, 500, "{\"error\":\"save_failed\"}");
+                    return;
                 }
                 respond(exchange, 200, "{\"status\":\"ok\"}");
                 return;
@@ -92,6 +333,24 @@ public class PriceDataServer {
         }
     }
 
+    static Map<String, String> parseQuery(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null || raw.isEmpty()) return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static boolean acceptsGzip(HttpExchange exchange) {
+        String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        return accept != null && accept.toLowerCase().contains("gzip");
+    }
+
     private static void respond(HttpExchange exchange, int statusCode, String body) throws IOException {
         byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
         exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
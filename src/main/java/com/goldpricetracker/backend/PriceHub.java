@@ -0,0 +1,310 @@
+package com.goldpricetracker.backend;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * 进程级价格中心：全进程共享的唯一 PriceService 与轮询入口。
+ *
+ * 为什么需要它？
+ * 原来 DashboardController 和 PriceDataServer 各自创建 PriceService，
+ * 本地服务每收到一次 GET /price 就访问一次上游，N 个本地客户端就是 N 倍的上游请求。
+ * 现在：
+ * 1. 轮询由 PriceHub 统一负责，结果发布给所有监听者（界面、本地服务等）。
+ * 2. 读取最新快照不阻塞，只是一次 volatile 读。
+ * 3. 需要主动刷新时走 single-flight：同一时刻最多只有一次上游抓取，
+ *    并发的刷新请求共享这一次的结果。
+ * 因此无论有多少个窗口、脚本或 AppBar 读取本地服务，上游流量都保持不变。
+ *
+ * 每个发布的快照都会追加到 TickStore，启动时用其中最后一条记录预热，
+ * 界面与本地服务在首次抓取完成前就能显示上次的价格。
+ * 最近 24 小时的 tick 同时保存在内存环形缓冲区中，供界面、预警和本地服务无拷贝地读取。
+ * 发布时还会增量更新多周期 K 线，已完成的 K 线写入 CandleStore；
+ * 启动时用当天的 tick 重放一遍，恢复进行中的 K 线并补写崩溃前漏掉的 K 线。
+ */
+public final class PriceHub {
+    private static final Logger logger = LoggerFactory.getLogger(PriceHub.class);
+
+    private static final PriceHub INSTANCE = new PriceHub(new PriceService());
+
+    private final PriceService priceService;
+    private final PollingPolicy pollingPolicy = new PollingPolicy();
+    private final AtomicReference<CompletableFuture<PriceSnapshot>> inFlight = new AtomicReference<>();
+    private final List<Consumer<PriceSnapshot>> listeners = new CopyOnWriteArrayList<>();
+    private volatile PriceSnapshot latest;
+    private ScheduledExecutorService poller;
+    private final TickRingBuffer recentTicks = new TickRingBuffer();
+    private volatile TickStore tickStore;
+    private boolean storeErrorLogged = false;
+    private volatile CandleStore candleStore;
+    private final CandleAggregator candles = new CandleAggregator(this::storeCandle);
+    private boolean candleErrorLogged = false;
+
+    PriceHub(PriceService priceService) {
+        this.priceService = priceService;
+    }
+
+    /**
+     * @return 全进程共享的实例
+     */
+    public static PriceHub getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 启动后台轮询。重复调用无副作用。
+     * 轮询采用固定延迟语义：每次抓取完成后才按 PollingPolicy 计算下一次的等待时间，
+     * 慢抓取不会造成任务堆积或补跑。
+     */
+    public synchronized void start() {
+        if (poller != null) return;
+        openTickStore();
+        openCandleStore();
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "price-hub-poller");
+            t.setDaemon(true);
+            return t;
+        });
+        ScheduledExecutorService executor = poller;
+        executor.execute(() -> pollOnce(executor));
+    }
+
+    /**
+     * 停止后台轮询。
+     */
+    public synchronized void stop() {
+        if (poller == null) return;
+        poller.shutdownNow();
+        poller = null;
+        TickStore store = tickStore;
+        tickStore = null;
+        if (store != null) {
+            try {
+                store.close();
+            } catch (IOException e) {
+                logger.error("关闭 tick 存储失败: " + e.getMessage());
+            }
+        }
+        CandleStore candleStoreToClose = candleStore;
+        candleStore = null;
+        if (candleStoreToClose != null) {
+            try {
+                candleStoreToClose.close();
+            } catch (IOException e) {
+                logger.error("关闭 K 线存储失败: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return 最近 tick 的环形缓冲区（只读使用）
+     */
+    public TickRingBuffer getRecentTicks() {
+        return recentTicks;
+    }
+
+    /**
+     * @return 持久化的 tick 存储；未启动或打开失败时为 null
+     */
+    public TickStore getTickStore() {
+        return tickStore;
+    }
+
+    /**
+     * @return 增量 K 线聚合器，可读取各周期进行中的 K 线
+     */
+    public CandleAggregator getCandles() {
+        return candles;
+    }
+
+    /**
+     * @return 已完成 K 线的存储；未启动或打开失败时为 null
+     */
+    public CandleStore getCandleStore() {
+        return candleStore;
+    }
+
+    private void openCandleStore() {
+        if (candleStore != null) return;
+        try {
+            candleStore = new CandleStore(CandleStore.DEFAULT_DIR);
+        } catch (IOException e) {
+            logger.error("打开 K 线存储失败，K 线将不会保存: " + e.getMessage());
+            return;
+        }
+        TickStore store = tickStore;
+        if (store == null) return;
+        // 从最后一个 tick 所在日的零点重放即可覆盖所有周期（最长为日线）；已存储的 K 线会被 CandleStore 忽略
+        try {
+            PriceSnapshot last = store.readLast();
+            if (last == null) return;
+            long from = CandleResolution.D1.bucketStart(last.getTimestamp());
+            store.scan(from, last.getTimestamp(), (ts, domestic, international, rate, flags) -> {
+                candles.onTick(ts, domestic, international, rate);
+                return true;
+            });
+        } catch (IOException e) {
+            logger.error("重放 tick 恢复 K 线失败: " + e.getMessage());
+        }
+    }
+
+    private void openTickStore() {
+        if (tickStore != null) return;
+        try {
+            TickStore store = new TickStore(TickStore.DEFAULT_DIR);
+            PriceSnapshot last = store.readLast();
+            if (last != null) {
+                priceService.seed(last);
+                if (latest == null) latest = last;
+            }
+            tickStore = store;
+        } catch (IOException e) {
+            logger.error("打开 tick 存储失败，历史数据将不会保存: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 非阻塞读取最新快照。
+     * @return 最近一次发布的快照；尚未抓取过时为 null
+     */
+    public PriceSnapshot latest() {
+        return latest;
+    }
+
+    /**
+     * @return 上游数据源的健康度与熔断状态
+     */
+    public SourceHealthMonitor getSourceHealth() {
+        return priceService.getSourceHealth();
+    }
+
+    /**
+     * 立即向上游抓取一次并发布结果 (single-flight)。
+     * 已有抓取在进行时不会再发起新的请求，而是等待并共享那一次的结果。
+     * 单次抓取的耗时受 PriceService 的 tick 截止时间约束。
+     */
+    public PriceSnapshot refresh() {
+        while (true) {
+            CompletableFuture<PriceSnapshot> running = inFlight.get();
+            if (running != null) {
+                return running.join();
+            }
+            CompletableFuture<PriceSnapshot> mine = new CompletableFuture<>();
+            if (!inFlight.compareAndSet(null, mine)) {
+                continue;
+            }
+            try {
+                PriceSnapshot snapshot = priceService.fetchPrices();
+                publish(snapshot);
+                mine.complete(snapshot);
+                return snapshot;
+            } catch (RuntimeException e) {
+                mine.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.compareAndSet(mine, null);
+            }
+        }
+    }
+
+    /**
+     * 注册快照监听者。若已有快照，会立即在当前线程上回调一次。
+     * 之后的回调在发布快照的线程上执行：轮询线程，或任何调用了 refresh() 的线程（例如 /price 的请求线程）。
+     * 同一时刻只有一个线程在发布，但注册时的那次回调可能与发布并发；
+     * 持有非线程安全状态或需要更新界面的监听者应自行切换到单一线程。
+     */
+    public void addListener(Consumer<PriceSnapshot> listener) {
+        listeners.add(listener);
+        PriceSnapshot snapshot = latest;
+        if (snapshot != null) {
+            notifyListener(listener, snapshot);
+        }
+    }
+
+    public void removeListener(Consumer<PriceSnapshot> listener) {
+        listeners.remove(listener);
+    }
+
+    private void pollOnce(ScheduledExecutorService executor) {
+        long delay;
+        try {
+            delay = pollingPolicy.nextDelay(refresh());
+        } catch (Exception e) {
+            logger.error("价格轮询失败: " + e.getMessage());
+            delay = pollingPolicy.onFailure();
+        }
+        // 只在本轮所属的执行器上续约；stop() 之后执行器已关闭，循环自然结束
+        if (!executor.isShutdown()) {
+            executor.schedule(() -> pollOnce(executor), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void publish(PriceSnapshot snapshot) {
+        PipelineEvents.Publish event = new PipelineEvents.Publish();
+        event.begin();
+        // single-flight 保证同一时刻只有一个线程在发布，满足环形缓冲区单写者的要求
+        recentTicks.add(snapshot);
+        latest = snapshot;
+        Metrics.getInstance().onPublished(snapshot.getSequence());
+        persist(snapshot);
+        candles.onTick(snapshot);
+        int notified = 0;
+        boolean ok = true;
+        for (Consumer<PriceSnapshot> listener : listeners) {
+            ok &= notifyListener(listener, snapshot);
+            notified++;
+        }
+        if (event.shouldCommit()) {
+            event.sequence = snapshot.getSequence();
+            event.listeners = notified;
+            event.outcome = ok ? "ok" : "listener_error";
+            event.commit();
+        }
+    }
+
+    private void persist(PriceSnapshot snapshot) {
+        TickStore store = tickStore;
+        if (store == null) return;
+        try {
+            store.append(snapshot);
+        } catch (IOException e) {
+            if (!storeErrorLogged) {
+                storeErrorLogged = true;
+                logger.error("写入 tick 存储失败: " + e.getMessage());
+            }
+        }
+    }
+
+    private void storeCandle(CandleResolution resolution, long openTime, double[] values, int tickCount) {
+        CandleStore store = candleStore;
+        if (store == null) return;
+        try {
+            store.append(resolution, openTime, values, tickCount);
+        } catch (IOException e) {
+            if (!candleErrorLogged) {
+                candleErrorLogged = true;
+                logger.error("写入 K 线存储失败: " + e.getMessage());
+            }
+        }
+    }
+
+    private boolean notifyListener(Consumer<PriceSnapshot> listener, PriceSnapshot snapshot) {
+        try {
+            listener.accept(snapshot);
+            return true;
+        } catch (Exception e) {
+            logger.error("价格监听者处理失败: " + e.getMessage());
+            return false;
+        }
+    }
+}
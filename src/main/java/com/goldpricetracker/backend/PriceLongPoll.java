@@ -0,0 +1,172 @@
+package com.goldpricetracker.backend;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * /price?after=&lt;seq&gt; 的长轮询。
+ *
+ * 没有比 after 更新的快照时，请求被"挂起"：HttpExchange 放入等待列表，处理线程立即返回，
+ * 等待期间不占用任何线程。PriceHub 发布新快照时一次性完成所有等待者；
+ * 后台清扫线程每 500 毫秒检查一次，超时的请求以 204 结束，客户端带同样的 after 重新请求即可。
+ */
+public class PriceLongPoll {
+
+    public static final long DEFAULT_TIMEOUT_MS = 25_000;
+    public static final long MAX_TIMEOUT_MS = 60_000;
+    private static final long SWEEP_MS = 500;
+
+    /** 写出响应；snapshot 为 null 表示超时 */
+    @FunctionalInterface
+    public interface Completion {
+        void complete(HttpExchange exchange, PriceSnapshot snapshot) throws IOException;
+    }
+
+    private static final class Waiter {
+        final HttpExchange exchange;
+        final long after;
+        final long deadline;
+        final AtomicBoolean done = new AtomicBoolean(false);
+
+        Waiter(HttpExchange exchange, long after, long deadline) {
+            this.exchange = exchange;
+            this.after = after;
+            this.deadline = deadline;
+        }
+    }
+
+    private final PriceHub priceHub;
+    private final Completion completion;
+    private final Executor responder;
+    private final Consumer<PriceSnapshot> listener = this::onPublish;
+    private List<Waiter> waiters = new ArrayList<>();
+    private ScheduledExecutorService sweeper;
+
+    /**
+     * @param responder 执行响应写出的线程池，避免在发布线程上做网络 I/O
+     */
+    public PriceLongPoll(PriceHub priceHub, Completion completion, Executor responder) {
+        this.priceHub = priceHub;
+        this.completion = completion;
+        this.responder = responder;
+    }
+
+    public synchronized void start() {
+        if (sweeper != null) return;
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "price-long-poll-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, SWEEP_MS, SWEEP_MS, TimeUnit.MILLISECONDS);
+        priceHub.addListener(listener);
+    }
+
+    public synchronized void stop() {
+        if (sweeper == null) return;
+        priceHub.removeListener(listener);
+        sweeper.shutdownNow();
+        sweeper = null;
+        List<Waiter> pending = waiters;
+        waiters = new ArrayList<>();
+        for (Waiter waiter : pending) {
+            finish(waiter, null);
+        }
+    }
+
+    /**
+     * @return 当前挂起的请求数
+     */
+    public synchronized int waiting() {
+        return waiters.size();
+    }
+
+    /**
+     * 处理一次长轮询：已有更新的快照（或 after 来自上一次运行，比当前序号还大）时立即返回，否则挂起。
+     */
+    public void await(HttpExchange exchange, long after, long timeoutMillis) throws IOException {
+        PriceSnapshot latest = priceHub.latest();
+        if (latest != null && latest.getSequence() != after) {
+            completion.complete(exchange, latest);
+            return;
+        }
+        long timeout = Math.max(0, Math.min(timeoutMillis, MAX_TIMEOUT_MS));
+        Waiter waiter = new Waiter(exchange, after, System.currentTimeMillis() + timeout);
+        synchronized (this) {
+            waiters.add(waiter);
+        }
+        // 入队前刚好发布的快照不会再触发回调，这里补查一次
+        latest = priceHub.latest();
+        if (latest != null && latest.getSequence() > after) {
+            finish(waiter, latest);
+        }
+    }
+
+    private void onPublish(PriceSnapshot snapshot) {
+        List<Waiter> ready;
+        synchronized (this) {
+            if (waiters.isEmpty()) return;
+            ready = waiters;
+            waiters = new ArrayList<>();
+        }
+        for (Waiter waiter : ready) {
+            if (snapshot.getSequence() > waiter.after) {
+                dispatch(waiter, snapshot);
+            } else {
+                synchronized (this) {
+                    waiters.add(waiter);
+                }
+            }
+        }
+    }
+
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        List<Waiter> expired = null;
+        synchronized (this) {
+            for (int i = waiters.size() - 1; i >= 0; i--) {
+                Waiter waiter = waiters.get(i);
+                if (waiter.done.get() || waiter.deadline <= now) {
+                    // 与最后一个交换后删除，O(1)
+                    int last = waiters.size() - 1;
+                    waiters.set(i, waiters.get(last));
+                    waiters.remove(last);
+                    if (!waiter.done.get()) {
+                        if (expired == null) expired = new ArrayList<>();
+                        expired.add(waiter);
+                    }
+                }
+            }
+        }
+        if (expired == null) return;
+        for (Waiter waiter : expired) {
+            dispatch(waiter, null);
+        }
+    }
+
+    private void dispatch(Waiter waiter, PriceSnapshot snapshot) {
+        try {
+            responder.execute(() -> finish(waiter, snapshot));
+        } catch (RuntimeException e) {
+            finish(waiter, snapshot);
+        }
+    }
+
+    private void finish(Waiter waiter, PriceSnapshot snapshot) {
+        if (!waiter.done.compareAndSet(false, true)) return;
+        try {
+            completion.complete(waiter.exchange, snapshot);
+        } catch (IOException e) {
+            waiter.exchange.close();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.goldpricetracker.backend;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * /price 响应体的预序列化结果：每个快照只格式化一次，所有请求共享同一个不可变字节数组。
+ *
+ * ETag 为强校验值 "启动标识-序号"：序号在一次运行内单调递增，
+ * 启动标识保证重启后序号从头开始时不会与旧的 ETag 冲突。
+ */
+public final class PricePayload {
+
+    /** 本次运行的标识 */
+    static final String BOOT_ID = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36);
+
+    private static volatile PricePayload cached;
+
+    private final PriceSnapshot snapshot;
+    private final byte[] json;
+    private final String etag;
+
+    private PricePayload(PriceSnapshot snapshot) {
+        this.snapshot = snapshot;
+        StringBuilder sb = new StringBuilder(128);
+        sb.append("{\"seq\":").append(snapshot.getSequence())
+                .append(",\"ts\":").append(snapshot.getTimestamp())
+                .append(",\"domestic\":");
+        Decimals.appendFixed4(sb, snapshot.getDomestic());
+        sb.append(",\"international\":");
+        Decimals.appendFixed4(sb, snapshot.getInternational());
+        sb.append(",\"market_closed\":").append(snapshot.isMarketClosed() ? 1 : 0).append('}');
+        this.json = sb.toString().getBytes(StandardCharsets.UTF_8);
+        this.etag = "\"" + BOOT_ID + "-" + snapshot.getSequence() + "\"";
+    }
+
+    /**
+     * 取得快照对应的响应体。通常在发布时已生成，这里只是一次 volatile 读；
+     * 并发情况下最坏是同一个快照被多序列化一次。
+     */
+    public static PricePayload of(PriceSnapshot snapshot) {
+        PricePayload payload = cached;
+        if (payload != null && payload.snapshot == snapshot) return payload;
+        payload = new PricePayload(snapshot);
+        PricePayload current = cached;
+        // 只让更新的快照进入缓存，避免迟到的旧请求把缓存覆盖回去
+        if (current == null || current.snapshot.getSequence() <= snapshot.getSequence()) {
+            cached = payload;
+        }
+        return payload;
+    }
+
+    public PriceSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return 响应体；调用方不得修改
+     */
+    public byte[] getJson() {
+        return json;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * 判断 If-None-Match 头是否与本 ETag 匹配（支持逗号分隔的多个值与 *）。
+     */
+    public boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null) return false;
+        for (String tag : ifNoneMatch.split(",")) {
+            String t = tag.trim();
+            if (t.equals("*") || t.equals(etag)) return true;
+        }
+        return false;
+    }
+}
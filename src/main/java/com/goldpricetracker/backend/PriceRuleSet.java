@@ -0,0 +1,48 @@
+package com.goldpricetracker.backend;
+
+/**
+ * 由配置编译出的不可变显示规则：智能显隐区间。
+ *
+ * 配置变化时编译一次（字符串解析、默认值处理都在这里完成），
+ * 每个 tick 的判断只剩基本类型的比较，不再有 getProperty / parseDouble / 哈希查找。
+ * 价格预警由 AlertEngine 负责。
+ */
+public final class PriceRuleSet {
+
+    private final boolean visibilityEnabled;
+    private final double minDomestic;
+    private final double maxDomestic;
+    private final double minInternational;
+    private final double maxInternational;
+
+    private PriceRuleSet(boolean visibilityEnabled, double minDomestic, double maxDomestic,
+                         double minInternational, double maxInternational) {
+        this.visibilityEnabled = visibilityEnabled;
+        this.minDomestic = minDomestic;
+        this.maxDomestic = maxDomestic;
+        this.minInternational = minInternational;
+        this.maxInternational = maxInternational;
+    }
+
+    /**
+     * 从配置编译规则集。
+     */
+    public static PriceRuleSet compile(ConfigSnapshot config) {
+        return new PriceRuleSet(config.getBoolean("visibility.enabled", false),
+                config.getDouble("threshold.domestic.min", 0),
+                config.getDouble("threshold.domestic.max", 0),
+                config.getDouble("threshold.international.min", 0),
+                config.getDouble("threshold.international.max", 0));
+    }
+
+    /**
+     * 智能显隐：未启用时总是显示；某个品种的上下限都为 0 表示不限制该品种。
+     */
+    public boolean isVisible(double domestic, double international) {
+        if (!visibilityEnabled) return true;
+        boolean showD = (minDomestic == 0 && maxDomestic == 0) || (domestic >= minDomestic && domestic <= maxDomestic);
+        boolean showI = (minInternational == 0 && maxInternational == 0)
+                || (international >= minInternational && international <= maxInternational);
+        return showD && showI;
+    }
+}
@@ -2,13 +2,13 @@ package com.goldpricetracker.backend;
 
 import java.io.IOException;
 import java.time.Clock;
-import java.time.DayOfWeek;
-import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.time.ZoneId;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
@@ -26,18 +26,26 @@ import org.slf4j.LoggerFactory;
  */
 public class PriceService {
     private static final Logger logger = LoggerFactory.getLogger(PriceService.class);
+    // 解析失败时日志中保留的原始字段长度
+    private static final int MAX_LOGGED_FIELD_CHARS = 32;
     private final OkHttpClient client;
     private final ObjectMapper mapper = new ObjectMapper();
     // 使用 Clock 对象获取时间，便于单元测试时模拟特定时间
     private Clock clock = Clock.system(ZoneId.of("Asia/Shanghai"));
+    // 交易日历：预编译的开/休市分钟位图
+    private final TradingCalendar tradingCalendar = TradingCalendar.getInstance();
 
     // API 数据源地址
     // hf_XAU: 伦敦金 (国际金价)
     // gds_AUTD: 上海金 (国内金价)
     // USDCNY: 美元兑人民币汇率 (用于换算)
-    private static final String SINA_API_URL = "http://hq.sinajs.cn/list=hf_XAU,gds_AUTD,USDCNY";
-    private static final String BINANCE_API_URL = "https://api.binance.com/api/v3/ticker/price?symbol=PAXGUSDT";
-    private static final String COINBASE_API_URL = "https://api.coinbase.com/v2/prices/PAXG-USD/spot";
+    // 可用系统属性 gold.upstream.sina / binance / coinbase 覆盖，压测与故障注入时指向本地桩服务
+    private static final String SINA_API_URL = System.getProperty("gold.upstream.sina",
+        "http://hq.sinajs.cn/list=hf_XAU,gds_AUTD,USDCNY");
+    private static final String BINANCE_API_URL = System.getProperty("gold.upstream.binance",
+        "https://api.binance.com/api/v3/ticker/price?symbol=PAXGUSDT");
+    private static final String COINBASE_API_URL = System.getProperty("gold.upstream.coinbase",
+        "https://api.coinbase.com/v2/prices/PAXG-USD/spot");
 
     // 缓存字段：用于保存上一次获取到的有效数据
     // 作用：当网络请求失败或数据源返回 0 时，使用缓存值避免界面显示 0.00
@@ -45,8 +53,27 @@ public class PriceService {
     private double lastDomestic = 0.0;
     private double lastRate = 7.20; // 默认兜底汇率，防止首次启动无数据时计算异常
 
+    // 快照序号：每次 fetchPrices() 递增，下游据此判断是否有新数据
+    private final AtomicLong sequence = new AtomicLong();
+
+    // 对冲延迟：新浪请求发出后若在该时间内仍未拿到国际金价，则并行发出备用源请求
+    private static final long DEFAULT_HEDGE_DELAY_MS = 300;
+    // 单次 tick 的总截止时间：到期后取消所有未完成的请求，只使用已经拿到的数据
+    private static final long DEFAULT_TICK_DEADLINE_MS = 3000;
+
+    private volatile long hedgeDelayMs = DEFAULT_HEDGE_DELAY_MS;
+    private volatile long tickDeadlineMs = DEFAULT_TICK_DEADLINE_MS;
+
+    // 备用源（只提供国际金价），每轮按健康度重新排序
+    private static final List<PriceSource> BACKUP_SOURCES = List.of(PriceSource.BINANCE, PriceSource.COINBASE);
+    // 各数据源的延迟、错误率与熔断状态
+    private final SourceHealthMonitor sourceHealth = new SourceHealthMonitor();
+    // 延迟直方图与请求结果计数，由 /metrics 输出
+    private final Metrics metrics = Metrics.getInstance();
+
     public PriceService() {
         // 初始化 HTTP 客户端，设置超时时间为 10 秒
+        // 注意：单次 tick 的耗时由 tickDeadlineMs 约束，超时的请求会被主动取消
         this.client = new OkHttpClient.Builder()
             .connectTimeout(10, TimeUnit.SECONDS)
             .readTimeout(10, TimeUnit.SECONDS)
@@ -57,33 +84,65 @@ public class PriceService {
     /**
      * 主方法：获取最新的价格数据
      * 流程：
-     * 1. 尝试从新浪财经获取所有数据（国内金、国际金、汇率）。
-     * 2. 如果新浪接口的国际金价无效 (<=0)，尝试备用源 (Binance/Coinbase)。
-     * 3. 对国内金价进行校验和修正（处理休市、数据异常等情况）。
-     * 4. 更新缓存并返回结果。
+     * 1. 立即向新浪财经发出请求（国内金、国际金、汇率）；新浪熔断时跳过。
+     * 2. 若 hedgeDelayMs 内仍未拿到有效国际金价（超时或已失败），按健康度排序依次向备用源 (Binance/Coinbase)
+     *    发出对冲请求，每隔 hedgeDelayMs 追加一个，国际金价取最先到达的有效值。
+     * 3. 所需字段全部到齐或到达 tickDeadlineMs 截止时间后，取消其余仍在进行的请求。
+     * 4. 对国内金价进行校验和修正（处理休市、数据异常等情况）。
+     * 5. 更新缓存并返回结果。
      * 
-     * @return 包含 'domestic', 'international', 'rate' 等键值的 Map
+     * @return 本次抓取的不可变快照
      */
-    public Map<String, Double> fetchPrices() {
-        Map<String, Double> prices = new HashMap<>();
-        
-        // 1. 获取基础数据 (新浪接口同时提供伦敦金、上海金、汇率)
-        fetchFromSina(prices);
-        
-        // 2. 如果新浪接口的国际金价无效 (<=0)，尝试从备用源获取
-        if (prices.getOrDefault("international", 0.0) <= 0) {
-            fetchFromBinanceOrCoinbase(prices);
+    public PriceSnapshot fetchPrices() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(tickDeadlineMs);
+        long hedgeDelayNanos = TimeUnit.MILLISECONDS.toNanos(hedgeDelayMs);
+        FetchRound round = new FetchRound();
+
+        // 1. 主源：新浪接口同时提供伦敦金、上海金、汇率
+        long nextHedge = System.nanoTime();
+        if (sourceHealth.allowRequest(PriceSource.SINA)) {
+            fetchFromSina(round);
+            nextHedge += hedgeDelayNanos;
+        }
+
+        // 2. 对冲：迟迟拿不到国际金价时，按健康度依次请求备用源
+        for (PriceSource backup : sourceHealth.rank(BACKUP_SOURCES)) {
+            if (round.awaitHedgeDecision(Math.min(deadline, nextHedge))) break;
+            if (System.nanoTime() - deadline >= 0) break;
+            if (!sourceHealth.allowRequest(backup)) continue;
+            fetchFromBackup(round, backup);
+            nextHedge = System.nanoTime() + hedgeDelayNanos;
         }
+
+        // 3. 等待所需字段到齐，或到达本轮截止时间
+        boolean complete = round.awaitComplete(deadline);
+        round.close(complete);
         
-        // 3. 校验并修正国内金价
-        validateAndFixDomesticPrice(prices);
+        // 4. 校验并修正国内金价，生成快照
+        PriceSnapshot snapshot = validateAndFixDomesticPrice(round);
         
-        // 4. 更新缓存：只要获取到大于 0 的有效值，就更新缓存
-        if (prices.getOrDefault("international", 0.0) > 0) lastInternational = prices.get("international");
-        if (prices.getOrDefault("domestic", 0.0) > 0) lastDomestic = prices.get("domestic");
-        if (prices.getOrDefault("rate", 0.0) > 0) lastRate = prices.get("rate");
+        // 5. 更新缓存：只要获取到大于 0 的有效值，就更新缓存
+        if (snapshot.getInternational() > 0) lastInternational = snapshot.getInternational();
+        if (snapshot.getDomestic() > 0) lastDomestic = snapshot.getDomestic();
+        if (round.rate > 0) lastRate = round.rate;
         
-        return prices;
+        return snapshot;
+    }
+
+    /**
+     * 用持久化的最后一个快照预热缓存，使启动后首次抓取失败时仍有兜底值。
+     */
+    public void seed(PriceSnapshot snapshot) {
+        if (snapshot.getInternational() > 0) lastInternational = snapshot.getInternational();
+        if (snapshot.getDomestic() > 0) lastDomestic = snapshot.getDomestic();
+        if (snapshot.getRate() > 0) lastRate = snapshot.getRate();
+    }
+
+    /**
+     * @return 各数据源的健康度与熔断状态
+     */
+    public SourceHealthMonitor getSourceHealth() {
+        return sourceHealth;
     }
 
     /**
@@ -95,200 +154,410 @@ public class PriceService {
     }
 
     /**
-     * 从新浪财经 API 获取原始数据。
+     * 设置对冲延迟：主源在该时间内没有给出国际金价时，才向备用源发请求。
+     * 设为 0 表示所有数据源同时发出。
+     * @param millis 毫秒数，不能为负
+     */
+    public void setHedgeDelay(long millis) {
+        if (millis < 0) throw new IllegalArgumentException("对冲延迟不能为负数");
+        this.hedgeDelayMs = millis;
+    }
+
+    /**
+     * 设置单次 tick 的总截止时间，fetchPrices() 保证在该时间内返回。
+     * @param millis 毫秒数，必须大于 0
+     */
+    public void setTickDeadline(long millis) {
+        if (millis <= 0) throw new IllegalArgumentException("截止时间必须大于 0");
+        this.tickDeadlineMs = millis;
+    }
+
+    /**
+     * 从新浪财经 API 获取原始数据（异步发出，结果写入本轮 FetchRound）。
      * 
      * 步骤：
      * 1. 构造 HTTP 请求。
-     * 2. 解析返回的 JS 变量格式数据。
+     * 2. 用 SinaQuoteParser 直接在响应字节上解析 JS 变量格式数据。
      * 3. 提取伦敦金、上海金和美元汇率。
      *
-     * @param prices 用于存储解析结果的 Map
+     * @param round 本轮抓取的结果收集器
      */
-    private void fetchFromSina(Map<String, Double> prices) {
+    private void fetchFromSina(FetchRound round) {
         Request request = new Request.Builder()
             .url(SINA_API_URL)
             .addHeader("Referer", "http://finance.sina.com.cn")
             .build();
-            
-        try (Response response = client.newCall(request).execute()) {
-            if (response.isSuccessful() && response.body() != null) {
-                String content = response.body().string();
-                parseSinaResponse(content, prices);
-            }
-        } catch (IOException e) {
-            logger.error("从新浪获取数据失败: " + e.getMessage());
-        }
+
+        enqueue(round, PriceSource.SINA, request, body -> parseSinaResponse(body, round));
     }
 
     /**
-     * 解析新浪 API 返回的特殊格式字符串。
+     * 解析新浪 API 返回的特殊格式数据并写入本轮结果。
      * 示例格式: var hq_str_hf_XAU="...";
+     * @return 是否解析出至少一个有效字段
      */
-    private void parseSinaResponse(String content, Map<String, Double> prices) {
-        // 1. 处理国际金价 (hf_XAU)
-        if (content.contains("hf_XAU")) {
-            String[] parts = extractData(content, "hf_XAU");
-            if (parts.length > 0) {
-                try {
-                    prices.put("international", Double.parseDouble(parts[0]));
-                } catch (NumberFormatException e) {
-                    logger.warn("国际金价格式错误: " + parts[0]);
-                }
-            }
+    private boolean parseSinaResponse(byte[] body, FetchRound round) {
+        double[] slots = new double[SinaQuoteParser.SLOT_COUNT];
+        int seen = SinaQuoteParser.parse(body, slots);
+
+        double domestic = sinaSlot(body, seen, slots, SinaQuoteParser.DOMESTIC, "国内金价格式错误");
+        double international = sinaSlot(body, seen, slots, SinaQuoteParser.INTERNATIONAL, "国际金价格式错误");
+        double rate = sinaSlot(body, seen, slots, SinaQuoteParser.RATE, "汇率格式错误");
+        round.offerSina(domestic, international, rate);
+        return domestic > 0 || international > 0 || rate > 0;
+    }
+
+    /**
+     * @return 槽位中的有效数值；未出现或格式错误时返回 0
+     */
+    private double sinaSlot(byte[] body, int seen, double[] slots, int slot, String warning) {
+        if ((seen & (1 << slot)) == 0) return 0.0;
+        if (Double.isNaN(slots[slot])) {
+            // 出错的字段截断后写入日志，畸形的上游数据才有据可查
+            logger.warn(warning + ": " + SinaQuoteParser.rawField(body, slot, MAX_LOGGED_FIELD_CHARS));
+            return 0.0;
+        }
+        return slots[slot];
+    }
+
+    /**
+     * 备用数据源：当新浪迟迟拿不到国际金价时，从币安或 Coinbase 获取 Pax Gold (锚定黄金的代币) 价格。
+     * Pax Gold 价格极度接近国际现货金价，是极佳的备用参考。
+     */
+    private void fetchFromBackup(FetchRound round, PriceSource source) {
+        if (source == PriceSource.BINANCE) {
+            fetchFromBinance(round);
+        } else if (source == PriceSource.COINBASE) {
+            fetchFromCoinbase(round);
         }
+    }
+
+    private void fetchFromBinance(FetchRound round) {
+        Request request = new Request.Builder().url(BINANCE_API_URL).build();
+        enqueue(round, PriceSource.BINANCE, request, body -> {
+            JsonNode node = mapper.readTree(body);
+            double price = node.get("price").asDouble();
+            round.offerInternational(PriceSource.BINANCE, price);
+            return price > 0;
+        });
+    }
 
-        // 2. 处理国内金价 (gds_AUTD)
-        if (content.contains("gds_AUTD")) {
-            String[] parts = extractData(content, "gds_AUTD");
-            if (parts.length > 0) {
-                try {
-                    prices.put("domestic", Double.parseDouble(parts[0]));
-                } catch (NumberFormatException e) {
-                    logger.warn("国内金价格式错误: " + parts[0]);
+    private void fetchFromCoinbase(FetchRound round) {
+        Request request = new Request.Builder().url(COINBASE_API_URL).build();
+        enqueue(round, PriceSource.COINBASE, request, body -> {
+            JsonNode node = mapper.readTree(body);
+            double price = node.get("data").get("amount").asDouble();
+            round.offerInternational(PriceSource.COINBASE, price);
+            return price > 0;
+        });
+    }
+
+    /**
+     * 异步发出请求，响应体交给 handler 解析；无论成功失败，最后都通知 round 该数据源已结束，
+     * 并把结果与耗时记入数据源健康度。
+     * 本轮结束后被取消的请求不再记录错误日志，由 round.close() 统一处理。
+     */
+    private void enqueue(FetchRound round, PriceSource source, Request request, BodyHandler handler) {
+        Call call = client.newCall(request);
+        Attempt attempt = new Attempt(source, call);
+        if (!round.track(attempt)) {
+            sourceHealth.release(source);
+            return;
+        }
+        call.enqueue(new Callback() {
+            @Override
+            public void onResponse(Call call, Response response) {
+                boolean ok = false;
+                try (response) {
+                    if (response.isSuccessful() && response.body() != null) {
+                        byte[] body = response.body().bytes();
+                        attempt.bytes = body.length;
+                        ok = parse(source, handler, body);
+                    }
+                } catch (Exception e) {
+                    if (!round.isClosed()) {
+                        logger.error("从 " + source.id() + " 获取数据失败: " + e.getMessage());
+                    }
+                } finally {
+                    finish(round, attempt, ok);
                 }
             }
-        }
 
-        // 3. 处理汇率 (USDCNY)
-        if (content.contains("USDCNY")) {
-            String[] parts = extractData(content, "USDCNY");
-            if (parts.length > 1) {
-                try {
-                    // 新浪汇率接口通常在第2个位置是中间价
-                    prices.put("rate", Double.parseDouble(parts[1]));
-                } catch (NumberFormatException e) {
-                    logger.warn("汇率格式错误: " + parts[1]);
+            @Override
+            public void onFailure(Call call, IOException e) {
+                if (!round.isClosed()) {
+                    logger.error("从 " + source.id() + " 获取数据失败: " + e.getMessage());
                 }
+                finish(round, attempt, false);
             }
-        }
+        });
     }
 
     /**
-     * 辅助方法：从 JS 字符串中提取数组内容
+     * 解析响应体，记录解析耗时与 JFR 事件；解析异常原样抛出，由回调按失败处理
      */
-    private String[] extractData(String content, String symbol) {
-        int start = content.indexOf(symbol + "=\"") + symbol.length() + 2;
-        int end = content.indexOf("\"", start);
-        if (start > symbol.length() + 1 && end > start) {
-            return content.substring(start, end).split(",");
+    private boolean parse(PriceSource source, BodyHandler handler, byte[] body) throws Exception {
+        PipelineEvents.Parse event = new PipelineEvents.Parse();
+        event.begin();
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            boolean ok = handler.handle(body);
+            outcome = ok ? "ok" : "empty";
+            return ok;
+        } finally {
+            metrics.recordParse(source, System.nanoTime() - start);
+            if (event.shouldCommit()) {
+                event.source = source.id();
+                event.bytes = body.length;
+                event.outcome = outcome;
+                event.commit();
+            }
         }
-        return new String[0];
     }
 
-    /**
-     * 备用数据源：当新浪失效时，从币安或 Coinbase 获取 Pax Gold (锚定黄金的代币) 价格。
-     * Pax Gold 价格极度接近国际现货金价，是极佳的备用参考。
-     */
-    private void fetchFromBinanceOrCoinbase(Map<String, Double> prices) {
-        // 1. 优先尝试币安
-        if (fetchFromBinance(prices)) return;
+    private void finish(FetchRound round, Attempt attempt, boolean ok) {
+        // 已被 close() 结算过的请求（超时或被取消）不再重复记录
+        if (!round.finish(attempt)) return;
+        long latency = attempt.elapsedMillis();
+        record(attempt, ok ? Metrics.Outcome.SUCCESS : Metrics.Outcome.FAILURE);
+        if (ok) {
+            sourceHealth.recordSuccess(attempt.source, latency);
+        } else {
+            sourceHealth.recordFailure(attempt.source, latency);
+        }
+    }
 
-        // 2. 币安失败则尝试 Coinbase
-        fetchFromCoinbase(prices);
+    @FunctionalInterface
+    private interface BodyHandler {
+        /**
+         * @return 响应中是否包含有效数据
+         */
+        boolean handle(byte[] body) throws Exception;
     }
 
-    private boolean fetchFromBinance(Map<String, Double> prices) {
-        Request request = new Request.Builder().url(BINANCE_API_URL).build();
-        try (Response response = client.newCall(request).execute()) {
-            if (response.isSuccessful() && response.body() != null) {
-                JsonNode node = mapper.readTree(response.body().string());
-                double price = node.get("price").asDouble();
-                if (price > 0) {
-                    prices.put("international", price);
-                    return true;
-                }
-            }
-        } catch (Exception e) {
-            logger.error("从币安获取数据失败: " + e.getMessage());
+    /**
+     * 记录请求结果：指标与 JFR 事件
+     */
+    private void record(Attempt attempt, Metrics.Outcome outcome) {
+        metrics.recordUpstream(attempt.source, outcome, attempt.elapsedNanos());
+        PipelineEvents.Fetch event = attempt.event;
+        if (event.shouldCommit()) {
+            event.source = attempt.source.id();
+            event.bytes = attempt.bytes;
+            event.outcome = outcome.id();
+            event.commit();
         }
-        return false;
     }
 
-    private void fetchFromCoinbase(Map<String, Double> prices) {
-        Request request = new Request.Builder().url(COINBASE_API_URL).build();
-        try (Response response = client.newCall(request).execute()) {
-            if (response.isSuccessful() && response.body() != null) {
-                JsonNode node = mapper.readTree(response.body().string());
-                double price = node.get("data").get("amount").asDouble();
-                if (price > 0) {
-                    prices.put("international", price);
-                }
-            }
-        } catch (Exception e) {
-            logger.error("从 Coinbase 获取数据失败: " + e.getMessage());
+    /** 一次对某个数据源的请求 */
+    private static final class Attempt {
+        final PriceSource source;
+        final Call call;
+        final long startNanos = System.nanoTime();
+        // 请求发出即开始计时，在 finish() 或 close() 中提交
+        final PipelineEvents.Fetch event = new PipelineEvents.Fetch();
+        volatile long bytes;
+        boolean finished = false; // 由 FetchRound 的锁保护
+
+        Attempt(PriceSource source, Call call) {
+            this.source = source;
+            this.call = call;
+            event.begin();
+        }
+
+        long elapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(elapsedNanos());
+        }
+
+        long elapsedNanos() {
+            return System.nanoTime() - startNanos;
         }
     }
 
     /**
-     * 判断当前是否为国内黄金交易所 (上海黄金交易所) 的休市时间。
-     * 
-     * 为什么要判断休市？
-     * 因为在休市期间，交易所接口返回的国内金价是收盘价，不再变动。
-     * 而国际金价（伦敦金）是 24 小时交易的。
-     * 为了让用户在休市期间也能看到参考的国内金价变动，我们需要在休市期间
-     * 强制使用 "国际金价 * 汇率" 的公式来估算国内金价。
-     * 
-     * 交易时间规则：
-     * 周一至周五：09:00-11:30, 13:30-15:30, 20:00-02:30(次日)
-     * 周末休市
+     * 单次 tick 的结果收集器。
+     * 各数据源的回调在 OkHttp 的调度线程上执行，这里用对象锁保护共享状态；
+     * 同一字段只保留最先到达的有效值 (> 0)，未拿到的字段保持为 0。
+     * close() 之后字段不再变化，可以直接读取。
      */
-    private boolean isMarketClosed() {
-        // 使用注入的 Clock 获取当前时间 (默认为 Asia/Shanghai)
-        LocalDateTime now = LocalDateTime.now(clock);
-        DayOfWeek day = now.getDayOfWeek();
-        LocalTime time = now.toLocalTime();
+    private final class FetchRound {
+        private final List<Attempt> attempts = new ArrayList<>();
+        private double domestic = 0.0;
+        private double international = 0.0;
+        private double rate = 0.0;
+        private PriceSource internationalSource = null;
+        private boolean sinaPending = false;
+        private int pending = 0;
+        private volatile boolean closed = false;
 
-        // 周日全天休市
-        if (day == DayOfWeek.SUNDAY) {
+        synchronized boolean track(Attempt attempt) {
+            if (closed) return false;
+            attempts.add(attempt);
+            pending++;
+            if (attempt.source == PriceSource.SINA) sinaPending = true;
             return true;
         }
 
-        // 周六 02:30 之后休市 (周五夜盘结束)
-        if (day == DayOfWeek.SATURDAY) {
-            return time.isAfter(LocalTime.of(2, 30));
+        synchronized void offerSina(double domestic, double international, double rate) {
+            if (closed) return;
+            if (this.domestic <= 0 && domestic > 0) this.domestic = domestic;
+            if (this.rate <= 0 && rate > 0) this.rate = rate;
+            offerInternationalLocked(PriceSource.SINA, international);
+            notifyAll();
         }
 
-        // 周一 09:00 之前休市 (周一凌晨无夜盘)
-        if (day == DayOfWeek.MONDAY) {
-            if (time.isBefore(LocalTime.of(9, 0))) {
-                return true;
-            }
-        } else {
-            // 周二至周五 02:30 - 09:00 休市 (夜盘结束到早盘开始之间)
-            if (time.isAfter(LocalTime.of(2, 30)) && time.isBefore(LocalTime.of(9, 0))) {
-                return true;
+        synchronized void offerInternational(PriceSource source, double value) {
+            if (closed) return;
+            offerInternationalLocked(source, value);
+            notifyAll();
+        }
+
+        private void offerInternationalLocked(PriceSource source, double value) {
+            if (international <= 0 && value > 0) {
+                international = value;
+                internationalSource = source;
             }
         }
 
-        // 午间休市 11:30 - 13:30
-        if (time.isAfter(LocalTime.of(11, 30)) && time.isBefore(LocalTime.of(13, 30))) {
+        /**
+         * 标记请求结束。
+         * @return false 表示该请求已在 close() 中结算过
+         */
+        synchronized boolean finish(Attempt attempt) {
+            if (attempt.finished) return false;
+            attempt.finished = true;
+            pending--;
+            if (attempt.source == PriceSource.SINA) sinaPending = false;
+            notifyAll();
             return true;
         }
 
-        // 傍晚休市 15:30 - 20:00
-        if (time.isAfter(LocalTime.of(15, 30)) && time.isBefore(LocalTime.of(20, 0))) {
+        boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * 等待到 hedgeAt，或已拿到国际金价 / 已发出的请求全部结束为止。
+         * @return true 表示已拿到国际金价，无需继续对冲
+         */
+        synchronized boolean awaitHedgeDecision(long hedgeAt) {
+            while (international <= 0 && pending > 0) {
+                if (!waitUntil(hedgeAt)) break;
+            }
+            return international > 0;
+        }
+
+        /**
+         * 等待本轮所需字段到齐：新浪已结束，且国际金价已拿到或所有请求都已结束。
+         * @return false 表示到达截止时间时仍未到齐
+         */
+        synchronized boolean awaitComplete(long deadline) {
+            while (!isComplete()) {
+                if (!waitUntil(deadline)) return isComplete();
+            }
             return true;
         }
 
-        return false;
+        private boolean isComplete() {
+            if (sinaPending) return false;
+            return international > 0 || pending <= 0;
+        }
+
+        /**
+         * @return false 表示已到达截止时间
+         */
+        private boolean waitUntil(long deadlineNanos) {
+            long remaining = deadlineNanos - System.nanoTime();
+            if (remaining <= 0) return false;
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        /**
+         * 结束本轮：取消仍在进行的请求，此后字段不再变化。
+         * 到达截止时间仍未返回的请求记为该数据源的一次超时失败；
+         * 因本轮已拿到所需数据而被取消的请求不计入健康度。
+         *
+         * @param complete 本轮是否在截止时间前拿齐了数据
+         */
+        void close(boolean complete) {
+            List<Attempt> unfinished = new ArrayList<>();
+            synchronized (this) {
+                closed = true;
+                for (Attempt attempt : attempts) {
+                    if (attempt.finished) continue;
+                    attempt.finished = true;
+                    unfinished.add(attempt);
+                    attempt.call.cancel();
+                }
+            }
+            for (Attempt attempt : unfinished) {
+                if (complete) {
+                    record(attempt, Metrics.Outcome.CANCELLED);
+                    sourceHealth.release(attempt.source);
+                } else {
+                    record(attempt, Metrics.Outcome.TIMEOUT);
+                    sourceHealth.recordFailure(attempt.source, attempt.elapsedMillis());
+                }
+            }
+        }
     }
 
     /**
-     * 核心校验逻辑：决定最终显示的国内金价
+     * 判断当前是否为国内黄金交易所 (上海黄金交易所) 的休市时间。
+     * 
+     * 为什么要判断休市？
+     * 因为在休市期间，交易所接口返回的国内金价是收盘价，不再变动。
+     * 而国际金价（伦敦金）是 24 小时交易的。
+     * 为了让用户在休市期间也能看到参考的国内金价变动，我们需要在休市期间
+     * 强制使用 "国际金价 * 汇率" 的公式来估算国内金价。
+     * 
+     * 交易时段与节假日规则见 TradingCalendar，这里只做一次位图查询。
+     */
+    private boolean isMarketClosed() {
+        return !tradingCalendar.isOpen(clock.millis());
+    }
+
+    /**
+     * 核心校验逻辑：决定最终显示的国内金价，并生成快照
      * 
      * 逻辑如下：
      * 1. 检查市场状态：
      *    - 如果开市：直接使用 API 返回的实时国内金价。
      *    - 如果休市：停止使用 API 的国内金价（因为它是收盘价，不会变动），
      *      改为使用 "国际金价 * 汇率" 实时计算，以提供参考。
+     * 2. 每个字段的来源与兜底情况记录在快照的 flags 中。
      */
-    private void validateAndFixDomesticPrice(Map<String, Double> prices) {
-        double international = prices.getOrDefault("international", lastInternational);
-        double domestic = prices.getOrDefault("domestic", 0.0);
+    private PriceSnapshot validateAndFixDomesticPrice(FetchRound round) {
+        PipelineEvents.Validate event = new PipelineEvents.Validate();
+        event.begin();
+        int flags = 0;
+
+        // 国际金价兜底：本轮没拿到则沿用缓存
+        double international = round.international;
+        PriceSource internationalSource = round.internationalSource;
+        if (international <= 0) {
+            internationalSource = null;
+            if (lastInternational > 0) {
+                international = lastInternational;
+                flags |= PriceSnapshot.INTERNATIONAL_CACHED;
+            }
+        } else if (internationalSource != PriceSource.SINA) {
+            flags |= PriceSnapshot.INTERNATIONAL_BACKUP;
+        }
         
         // 获取汇率，若失效则使用缓存或默认值
-        double rate = prices.getOrDefault("rate", lastRate);
-        if (rate <= 0) rate = 7.20; 
+        double rate = round.rate;
+        if (rate <= 0) {
+            rate = lastRate > 0 ? lastRate : 7.20;
+            flags |= PriceSnapshot.RATE_CACHED;
+        }
         
         // 计算理论国内金价
         double calculatedDomestic = 0.0;
@@ -298,16 +567,19 @@ public class PriceService {
         
         // 标记市场状态，传给前端
         boolean marketClosed = isMarketClosed();
-        prices.put("market_closed", marketClosed ? 1.0 : 0.0);
+        if (marketClosed) flags |= PriceSnapshot.MARKET_CLOSED;
         
+        double domestic = round.domestic;
         if (marketClosed) {
             // 休市期间：强制使用计算值，实现 24 小时动态更新
             if (calculatedDomestic > 0) {
-                prices.put("domestic", calculatedDomestic);
-                logger.debug("休市中，使用计算值: " + calculatedDomestic);
+                domestic = calculatedDomestic;
+                flags |= PriceSnapshot.DOMESTIC_CALCULATED;
+                logger.debug("休市中，使用计算值: {}", calculatedDomestic);
             } else if (lastDomestic > 0) {
                 // 如果计算值也无效（例如拿不到国际金价），就保持最后的有效值
-                prices.put("domestic", lastDomestic);
+                domestic = lastDomestic;
+                flags |= PriceSnapshot.DOMESTIC_CACHED;
             }
         } else {
             // 开市期间：优先使用 API 返回的国内金价
@@ -315,15 +587,25 @@ public class PriceService {
                 // 正常情况，不做修改，使用 API 值
                 // 但如果 API 值异常（例如为0），则用计算值兜底
             } else if (calculatedDomestic > 0) {
-                prices.put("domestic", calculatedDomestic);
+                domestic = calculatedDomestic;
+                flags |= PriceSnapshot.DOMESTIC_CALCULATED;
             } else if (lastDomestic > 0) {
-                prices.put("domestic", lastDomestic);
+                domestic = lastDomestic;
+                flags |= PriceSnapshot.DOMESTIC_CACHED;
             }
         }
-        
-        // 国际金价兜底
-        if (prices.getOrDefault("international", 0.0) <= 0 && lastInternational > 0) {
-            prices.put("international", lastInternational);
+
+        PriceSnapshot snapshot = new PriceSnapshot(sequence.incrementAndGet(), clock.millis(),
+            domestic, international, rate, flags, internationalSource);
+        if (event.shouldCommit()) {
+            event.source = internationalSource == null ? "none" : internationalSource.id();
+            event.sequence = snapshot.getSequence();
+            event.flags = flags;
+            event.outcome = domestic <= 0 ? "empty"
+                : (flags & PriceSnapshot.DOMESTIC_CALCULATED) != 0 ? "calculated"
+                : (flags & PriceSnapshot.DOMESTIC_CACHED) != 0 ? "cached" : "live";
+            event.commit();
         }
+        return snapshot;
     }
 }
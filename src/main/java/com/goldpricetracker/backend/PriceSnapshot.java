@@ -0,0 +1,108 @@
+package com.goldpricetracker.backend;
+
+/**
+ * 一次价格抓取的不可变快照。
+ *
+ * 替代原来每个 tick 新建的 Map&lt;String, Double&gt;：
+ * 1. 全部使用基本类型字段，避免装箱与字符串 key 的哈希查找。
+ * 2. 携带时间戳与单调递增的序号，下游只需比较序号即可判断是否有新数据。
+ * 3. 通过 flags 标记每个字段的来源与兜底情况（推算值、缓存值、备用源等）。
+ */
+public final class PriceSnapshot {
+
+    // --- 字段来源 / 兜底标记 (flags 位) ---
+    /** 国内金价由 "国际金价 × 汇率" 推算得出（休市或交易所数据无效） */
+    public static final int DOMESTIC_CALCULATED = 1;
+    /** 国内金价沿用上一次的有效值 */
+    public static final int DOMESTIC_CACHED = 1 << 1;
+    /** 国际金价来自备用源 (Binance / Coinbase) */
+    public static final int INTERNATIONAL_BACKUP = 1 << 2;
+    /** 国际金价沿用上一次的有效值 */
+    public static final int INTERNATIONAL_CACHED = 1 << 3;
+    /** 汇率沿用缓存值或默认兜底值 */
+    public static final int RATE_CACHED = 1 << 4;
+    /** 国内市场 (上海黄金交易所) 处于休市时间 */
+    public static final int MARKET_CLOSED = 1 << 5;
+
+    private final long sequence;
+    private final long timestamp;
+    private final double domestic;
+    private final double international;
+    private final double rate;
+    private final int flags;
+    private final PriceSource internationalSource;
+
+    /**
+     * @param sequence 单调递增的序号
+     * @param timestamp 抓取完成时间 (epoch 毫秒)
+     * @param domestic 国内金价 (CNY/g)，无数据时为 0
+     * @param international 国际金价 (USD/oz)，无数据时为 0
+     * @param rate USD/CNY 汇率
+     * @param flags 来源与兜底标记的组合
+     * @param internationalSource 国际金价的实时来源；沿用缓存或无数据时为 null
+     */
+    public PriceSnapshot(long sequence, long timestamp, double domestic, double international,
+                         double rate, int flags, PriceSource internationalSource) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.domestic = domestic;
+        this.international = international;
+        this.rate = rate;
+        this.flags = flags;
+        this.internationalSource = internationalSource;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public double getDomestic() {
+        return domestic;
+    }
+
+    public double getInternational() {
+        return international;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    public PriceSource getInternationalSource() {
+        return internationalSource;
+    }
+
+    public boolean isMarketClosed() {
+        return (flags & MARKET_CLOSED) != 0;
+    }
+
+    public boolean hasFlag(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    /**
+     * 判断展示相关的数值是否与另一个快照相同（忽略序号与时间戳）。
+     */
+    public boolean samePrices(PriceSnapshot other) {
+        return other != null
+            && Double.compare(domestic, other.domestic) == 0
+            && Double.compare(international, other.international) == 0
+            && Double.compare(rate, other.rate) == 0
+            && flags == other.flags;
+    }
+
+    @Override
+    public String toString() {
+        return "PriceSnapshot{seq=" + sequence + ", ts=" + timestamp + ", domestic=" + domestic
+            + ", international=" + international + ", rate=" + rate + ", flags=" + flags
+            + ", source=" + (internationalSource == null ? "-" : internationalSource.id()) + "}";
+    }
+}
@@ -0,0 +1,26 @@
+package com.goldpricetracker.backend;
+
+/**
+ * 上游行情数据源枚举。
+ *
+ * SINA 同时提供国内金价、国际金价与汇率；
+ * BINANCE / COINBASE 只提供 PAXG 价格，作为国际金价的备用源。
+ */
+public enum PriceSource {
+    SINA("sina"),
+    BINANCE("binance"),
+    COINBASE("coinbase");
+
+    private final String id;
+
+    PriceSource(String id) {
+        this.id = id;
+    }
+
+    /**
+     * @return 用于日志与接口输出的小写标识
+     */
+    public String id() {
+        return id;
+    }
+}
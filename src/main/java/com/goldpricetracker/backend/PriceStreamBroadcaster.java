@@ -0,0 +1,370 @@
+package com.goldpricetracker.backend;
+
+import com.sun.net.httpserver.HttpExchange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * /stream 的 Server-Sent Events 推送。
+ *
+ * 每次 PriceHub 发布快照，只序列化一次（完整帧 + 相对上一条的增量帧），
+ * 再放入每个连接各自的有界队列。连接的写出由共享的固定大小写线程池按需排空，
+ * 处理请求的线程在建立连接后立即返回，空闲连接不占用任何线程。
+ *
+ * - 慢客户端：队列满时丢弃最旧的帧，永远不会拖慢发布路径。
+ * - 卡住的客户端：写出是阻塞的，单次写出超过 WRITE_TIMEOUT_MS 即中断写线程并断开该连接，
+ *   写线程池不会被不读数据的客户端占满，其他客户端最多被耽搁这么久。
+ * - 增量模式 (?delta=1)：只发送变化的字段；若上一帧被丢弃，自动改发完整帧。
+ * - 心跳：每 15 秒一条注释帧，保持连接并及时发现已断开的客户端。
+ * - 断线续传：Last-Event-ID（或 ?last_event_id=）之后的 tick 从环形缓冲区补发，最多补发一个队列的长度。
+ */
+public class PriceStreamBroadcaster {
+    private static final Logger logger = LoggerFactory.getLogger(PriceStreamBroadcaster.class);
+
+    private static final int QUEUE_CAPACITY = 64;
+    // 写线程数：正常客户端一次写出只需几微秒，少量线程足以服务上百个连接
+    private static final int WRITER_THREADS = 4;
+    private static final long WRITE_TIMEOUT_MS = 5_000;
+    private static final long WRITE_CHECK_INTERVAL_MS = 1_000;
+    private static final long HEARTBEAT_MS = 15_000;
+    private static final byte[] HEARTBEAT = ": ping\n\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PREAMBLE = "retry: 3000\n\n".getBytes(StandardCharsets.US_ASCII);
+
+    /** 一条已序列化的事件；delta 相对序号为 previousSequence 的快照 */
+    private static final class Frame {
+        final long sequence;
+        final long previousSequence;
+        final byte[] full;
+        final byte[] delta;
+
+        Frame(long sequence, long previousSequence, byte[] full, byte[] delta) {
+            this.sequence = sequence;
+            this.previousSequence = previousSequence;
+            this.full = full;
+            this.delta = delta;
+        }
+    }
+
+    private final PriceHub priceHub;
+    private final List<Client> clients = new CopyOnWriteArrayList<>();
+    private final Consumer<PriceSnapshot> listener = this::broadcast;
+    private ExecutorService writers;
+    private ScheduledExecutorService heartbeat;
+
+    // 上一条发布的值，用于生成增量帧（只在持有 this 锁时访问）
+    private long lastSequence = -1;
+    private double lastDomestic;
+    private double lastInternational;
+    private double lastRate;
+    private boolean lastClosed;
+
+    public PriceStreamBroadcaster(PriceHub priceHub) {
+        this.priceHub = priceHub;
+    }
+
+    public synchronized void start() {
+        if (writers != null) return;
+        writers = Executors.newFixedThreadPool(WRITER_THREADS, r -> {
+            Thread t = new Thread(r, "sse-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sse-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+        heartbeat.scheduleWithFixedDelay(this::sendHeartbeat, HEARTBEAT_MS, HEARTBEAT_MS, TimeUnit.MILLISECONDS);
+        heartbeat.scheduleWithFixedDelay(this::closeStuckClients,
+                WRITE_CHECK_INTERVAL_MS, WRITE_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        priceHub.addListener(listener);
+    }
+
+    public synchronized void stop() {
+        if (writers == null) return;
+        priceHub.removeListener(listener);
+        heartbeat.shutdownNow();
+        writers.shutdownNow();
+        writers = null;
+        heartbeat = null;
+        for (Client client : clients) {
+            client.close();
+        }
+        clients.clear();
+    }
+
+    /**
+     * @return 当前连接数
+     */
+    public int clientCount() {
+        return clients.size();
+    }
+
+    /**
+     * 接管一个已校验过方法的请求：发送响应头、补发断线期间的数据并注册为推送目标。
+     * 返回后请求线程即可释放，连接由本类负责写出与关闭。
+     */
+    public void open(HttpExchange exchange, boolean delta, long lastEventId) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        Client client = new Client(exchange, delta);
+        client.enqueue(PREAMBLE);
+        // 与 broadcast 互斥：补发与注册之间不会漏掉或重复任何一条
+        synchronized (this) {
+            replay(client, lastEventId);
+            clients.add(client);
+        }
+    }
+
+    private void replay(Client client, long lastEventId) {
+        PriceSnapshot latest = priceHub.latest();
+        if (latest == null) return;
+        if (lastEventId < 0 || lastEventId >= latest.getSequence()) {
+            // 新连接或序号来自上一次运行：先发一条当前快照
+            client.offer(serialize(latest.getSequence(), latest.getTimestamp(), latest.getDomestic(),
+                    latest.getInternational(), latest.getRate(), latest.getFlags(), false));
+            return;
+        }
+        long from = Math.max(lastEventId, latest.getSequence() - QUEUE_CAPACITY);
+        priceHub.getRecentTicks().forEachAfterSequence(from, (seq, ts, d, i, r, f) -> {
+            client.offer(serialize(seq, ts, d, i, r, f, false));
+            return true;
+        });
+    }
+
+    private synchronized void broadcast(PriceSnapshot snapshot) {
+        Frame frame = serialize(snapshot.getSequence(), snapshot.getTimestamp(), snapshot.getDomestic(),
+                snapshot.getInternational(), snapshot.getRate(), snapshot.getFlags(), true);
+        for (Client client : clients) {
+            client.offer(frame);
+        }
+    }
+
+    private void sendHeartbeat() {
+        for (Client client : clients) {
+            client.enqueue(HEARTBEAT);
+        }
+    }
+
+    private void closeStuckClients() {
+        long now = System.nanoTime();
+        for (Client client : clients) {
+            client.interruptIfStuck(now);
+        }
+    }
+
+    /**
+     * 生成完整帧；live 为 true 时（发布路径）同时生成相对上一条发布的增量帧，并记住本次的值作为下一条的基准。
+     * 只在持有 this 锁时调用。
+     */
+    private Frame serialize(long seq, long ts, double domestic, double international,
+                            double rate, int flags, boolean live) {
+        boolean closed = (flags & PriceSnapshot.MARKET_CLOSED) != 0;
+        StringBuilder sb = new StringBuilder(192);
+        sb.append("id: ").append(seq).append("\nevent: tick\ndata: {\"seq\":").append(seq).append(",\"ts\":").append(ts);
+        int head = sb.length();
+
+        sb.append(",\"domestic\":");
+        Decimals.appendFixed4(sb, domestic);
+        sb.append(",\"international\":");
+        Decimals.appendFixed4(sb, international);
+        sb.append(",\"rate\":");
+        Decimals.appendFixed4(sb, rate);
+        sb.append(",\"market_closed\":").append(closed ? 1 : 0).append(",\"flags\":").append(flags).append("}\n\n");
+        byte[] full = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        if (!live) return new Frame(seq, -1, full, null);
+
+        long previousSeq = lastSequence;
+        byte[] delta = null;
+        if (previousSeq >= 0) {
+            sb.setLength(head);
+            if (domestic != lastDomestic) {
+                sb.append(",\"domestic\":");
+                Decimals.appendFixed4(sb, domestic);
+            }
+            if (international != lastInternational) {
+                sb.append(",\"international\":");
+                Decimals.appendFixed4(sb, international);
+            }
+            if (rate != lastRate) {
+                sb.append(",\"rate\":");
+                Decimals.appendFixed4(sb, rate);
+            }
+            if (closed != lastClosed) {
+                sb.append(",\"market_closed\":").append(closed ? 1 : 0);
+            }
+            sb.append("}\n\n");
+            delta = sb.toString().getBytes(StandardCharsets.UTF_8);
+        }
+
+        lastSequence = seq;
+        lastDomestic = domestic;
+        lastInternational = international;
+        lastRate = rate;
+        lastClosed = closed;
+        return new Frame(seq, delta != null ? previousSeq : -1, full, delta);
+    }
+
+    /**
+     * 单个 SSE 连接：有界队列 + 按需提交到写线程池的排空任务
+     */
+    private final class Client {
+        private final HttpExchange exchange;
+        private final OutputStream out;
+        private final boolean delta;
+        // 元素为 Frame 或心跳等原始字节
+        private final ArrayDeque<Object> queue = new ArrayDeque<>();
+        private boolean draining = false;
+        private boolean closed = false;
+        // 最近一次写出的 tick 序号，用于判断增量帧是否可用
+        private long deliveredSequence = -1;
+        // 最近一次入队的 tick 序号，补发与实时推送交界处的重复帧据此丢弃
+        private long offeredSequence = -1;
+        // 正在写出的线程与开始时刻，超时检查据此中断写线程（持 this 锁访问）
+        private Thread writer;
+        private long writeStartedNanos;
+        private boolean writeTimedOut = false;
+
+        Client(HttpExchange exchange, boolean delta) {
+            this.exchange = exchange;
+            this.out = exchange.getResponseBody();
+            this.delta = delta;
+        }
+
+        void offer(Frame frame) {
+            synchronized (this) {
+                if (closed || frame.sequence <= offeredSequence) return;
+                offeredSequence = frame.sequence;
+                if (queue.size() >= QUEUE_CAPACITY) {
+                    queue.pollFirst(); // 慢客户端：丢弃最旧的
+                }
+                queue.addLast(frame);
+            }
+            schedule();
+        }
+
+        void enqueue(byte[] raw) {
+            synchronized (this) {
+                if (closed || queue.size() >= QUEUE_CAPACITY) return; // 队列已满时心跳没有意义
+                queue.addLast(raw);
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            ExecutorService executor;
+            synchronized (this) {
+                if (draining || closed || queue.isEmpty()) return;
+                draining = true;
+                executor = writers;
+            }
+            if (executor == null) {
+                close();
+                return;
+            }
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                close();
+            }
+        }
+
+        private void drain() {
+            try {
+                while (true) {
+                    Object item;
+                    synchronized (this) {
+                        item = queue.pollFirst();
+                        if (item == null) {
+                            draining = false;
+                            break;
+                        }
+                    }
+                    beginWrite();
+                    try {
+                        if (item instanceof Frame) {
+                            Frame frame = (Frame) item;
+                            boolean useDelta = delta && frame.delta != null && frame.previousSequence == deliveredSequence;
+                            out.write(useDelta ? frame.delta : frame.full);
+                            deliveredSequence = frame.sequence;
+                        } else {
+                            out.write((byte[]) item);
+                        }
+                        boolean idle;
+                        synchronized (this) {
+                            idle = queue.isEmpty();
+                        }
+                        // 攒着的帧写完再 flush；flush 可能阻塞，不能持锁
+                        if (idle) out.flush();
+                    } finally {
+                        endWrite();
+                    }
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private synchronized void beginWrite() {
+            writer = Thread.currentThread();
+            writeStartedNanos = System.nanoTime();
+        }
+
+        /**
+         * 写出结束；若期间已被判定超时，清除中断标记（线程要还给线程池）并以异常结束本连接
+         */
+        private void endWrite() throws IOException {
+            boolean timedOut;
+            synchronized (this) {
+                writer = null;
+                timedOut = writeTimedOut;
+            }
+            if (timedOut) {
+                Thread.interrupted();
+                throw new InterruptedIOException("SSE 写出超时");
+            }
+        }
+
+        /**
+         * 单次写出超时：中断写线程。阻塞在 SocketChannel 上的写会因此关闭通道并抛出异常，
+         * 不能改用 exchange.close()，它要写结束块，会和卡住的写一起阻塞。
+         */
+        void interruptIfStuck(long now) {
+            synchronized (this) {
+                if (writer == null || writeTimedOut
+                        || now - writeStartedNanos < TimeUnit.MILLISECONDS.toNanos(WRITE_TIMEOUT_MS)) {
+                    return;
+                }
+                writeTimedOut = true;
+                writer.interrupt();
+            }
+            logger.info("SSE 客户端 {} 超过 {} ms 未读取数据，已断开", exchange.getRemoteAddress(), WRITE_TIMEOUT_MS);
+        }
+
+        void close() {
+            synchronized (this) {
+                if (closed) return;
+                closed = true;
+                queue.clear();
+            }
+            clients.remove(this);
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.goldpricetracker.backend;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PriceDataServer 的请求执行器。
+ *
+ * 运行在 Java 21+ 上时每个请求一个虚拟线程（通过反射创建，编译目标仍为 17）；
+ * 否则使用固定大小的平台线程池。可用 -Dgold.server.virtualThreads=false 强制使用线程池。
+ *
+ * 包装层记录每个任务的排队时长与当前排队数，供 AdmissionFilter 做准入判断：
+ * 线程池满载时新请求仍会入队，但出队后发现等得太久或队伍太长，会立即以 503 结束，
+ * 不会去做真正的工作，积压因此能快速消化，而不是无限增长。
+ */
+public final class ServerExecutor implements Executor {
+    private static final Logger logger = LoggerFactory.getLogger(ServerExecutor.class);
+
+    private static final ThreadLocal<Long> QUEUE_WAIT_NANOS = new ThreadLocal<>();
+
+    private final ExecutorService delegate;
+    private final boolean virtual;
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private ServerExecutor(ExecutorService delegate, boolean virtual) {
+        this.delegate = delegate;
+        this.virtual = virtual;
+    }
+
+    /**
+     * @param poolSize 不支持虚拟线程时平台线程池的大小
+     */
+    public static ServerExecutor create(int poolSize) {
+        if (Boolean.parseBoolean(System.getProperty("gold.server.virtualThreads", "true"))) {
+            try {
+                ExecutorService vt = (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                return new ServerExecutor(vt, true);
+            } catch (ReflectiveOperationException e) {
+                logger.info("当前 JVM 不支持虚拟线程，使用 " + poolSize + " 个线程的线程池");
+            }
+        }
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "price-server-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return new ServerExecutor(pool, false);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        long enqueued = System.nanoTime();
+        queued.incrementAndGet();
+        delegate.execute(() -> {
+            queued.decrementAndGet();
+            QUEUE_WAIT_NANOS.set(System.nanoTime() - enqueued);
+            try {
+                task.run();
+            } finally {
+                QUEUE_WAIT_NANOS.remove();
+            }
+        });
+    }
+
+    /**
+     * @return 已提交但尚未开始执行的任务数
+     */
+    public int queueDepth() {
+        return queued.get();
+    }
+
+    /**
+     * @return 当前线程上正在执行的任务的排队时长（纳秒）；不在本执行器线程上时为 0
+     */
+    public static long currentQueueWaitNanos() {
+        Long wait = QUEUE_WAIT_NANOS.get();
+        return wait == null ? 0 : wait;
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    public void shutdown() {
+        delegate.shutdownNow();
+    }
+}
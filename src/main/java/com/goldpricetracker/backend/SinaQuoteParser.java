@@ -0,0 +1,242 @@
+package com.goldpricetracker.backend;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 新浪行情接口 (hq.sinajs.cn) 的字节级解析器。
+ *
+ * 返回内容形如：
+ *   var hq_str_hf_XAU="2034.56,2030.10,...";
+ *   var hq_str_gds_AUTD="480.50,0,...";
+ *   var hq_str_USDCNY="15:30:00,7.1234,...";
+ *
+ * 为什么不直接用 String.split？
+ * 这是程序里调用最频繁的 CPU 工作（每 2 秒一次）。旧实现先把整个响应转成 String，
+ * 再对每个品种做 indexOf / substring / split，产生大量临时字符串。
+ * 这里直接在字节数组上扫描一遍，找到每个 hq_str_&lt;symbol&gt;="..." 块，
+ * 把需要的数值字段直接解析到 double 槽位中，不创建任何中间对象。
+ *
+ * 数值字段只含 ASCII 字符，因此不关心响应本身是 GBK 还是 UTF-8 编码。
+ */
+public final class SinaQuoteParser {
+
+    // 槽位下标：parse() 把结果写入 slots[下标]
+    public static final int INTERNATIONAL = 0; // hf_XAU 第 1 个字段：伦敦金
+    public static final int DOMESTIC = 1;      // gds_AUTD 第 1 个字段：上海金 T+D
+    public static final int RATE = 2;          // USDCNY 第 2 个字段：美元兑人民币
+    public static final int SLOT_COUNT = 3;
+
+    private static final byte[] PREFIX = ascii("hq_str_");
+    // 与槽位下标一一对应的品种代码，以及需要读取的字段序号（从 0 开始）
+    private static final byte[][] SYMBOLS = { ascii("hf_XAU"), ascii("gds_AUTD"), ascii("USDCNY") };
+    private static final int[] FIELD_INDEX = { 0, 0, 1 };
+
+    // 快速路径：尾数不超过 2^53、小数位不超过 22 时，m / 10^k 是正确舍入的结果，与 Double.parseDouble 一致
+    // 新浪接口的响应编码，只用于在日志里还原出错的字段
+    private static final Charset RESPONSE_CHARSET = Charset.forName("GBK");
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private SinaQuoteParser() {}
+
+    /**
+     * 解析 data[offset, offset + length) 中的行情数据。
+     *
+     * slots 长度至少为 SLOT_COUNT。出现且格式正确的字段写入对应数值；
+     * 未出现或格式错误的字段写入 NaN。
+     *
+     * @return 响应中出现过的品种位掩码：第 i 位对应槽位 i（无论数值是否合法）
+     */
+    public static int parse(byte[] data, int offset, int length, double[] slots) {
+        for (int s = 0; s < SLOT_COUNT; s++) {
+            slots[s] = Double.NaN;
+        }
+        int seen = 0;
+        int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            int p = indexOfPrefix(data, i, end);
+            if (p < 0) break;
+            p += PREFIX.length;
+
+            int slot = matchSymbol(data, p, end);
+            if (slot < 0) {
+                i = p;
+                continue;
+            }
+            seen |= 1 << slot;
+
+            // 跳过 symbol 与 ="，定位到引号内的值
+            int valueStart = p + SYMBOLS[slot].length + 2;
+            int valueEnd = indexOf(data, (byte) '"', valueStart, end);
+            if (valueEnd < 0) break;
+
+            slots[slot] = parseField(data, valueStart, valueEnd, FIELD_INDEX[slot]);
+            i = valueEnd + 1;
+        }
+        return seen;
+    }
+
+    /**
+     * 便捷重载：解析整个字节数组。
+     */
+    public static int parse(byte[] data, double[] slots) {
+        return parse(data, 0, data.length, slots);
+    }
+
+    /**
+     * 取出某个槽位对应的原始字段文本，用于格式错误时写日志（只在出错时调用，会分配字符串）。
+     * 与 parse 一致，品种出现多次时取最后一次。
+     *
+     * @param maxChars 超过该长度时截断并以 "..." 结尾
+     * @return 字段文本；品种未出现时返回 null，字段个数不足时返回空串
+     */
+    public static String rawField(byte[] data, int slot, int maxChars) {
+        int end = data.length;
+        int fieldStart = -1;
+        int fieldEnd = -1;
+        int i = 0;
+        while (i < end) {
+            int p = indexOfPrefix(data, i, end);
+            if (p < 0) break;
+            p += PREFIX.length;
+            int s = matchSymbol(data, p, end);
+            if (s < 0) {
+                i = p;
+                continue;
+            }
+            int valueStart = p + SYMBOLS[s].length + 2;
+            int valueEnd = indexOf(data, (byte) '"', valueStart, end);
+            if (valueEnd < 0) valueEnd = end;
+            if (s == slot) {
+                fieldStart = valueStart;
+                fieldEnd = valueStart;
+                int start = valueStart;
+                for (int f = 0; f < FIELD_INDEX[slot] && start >= 0; f++) {
+                    int comma = indexOf(data, (byte) ',', start, valueEnd);
+                    start = comma < 0 ? -1 : comma + 1;
+                }
+                if (start >= 0) {
+                    int stop = indexOf(data, (byte) ',', start, valueEnd);
+                    fieldStart = start;
+                    fieldEnd = stop < 0 ? valueEnd : stop;
+                }
+            }
+            i = valueEnd + 1;
+        }
+        if (fieldStart < 0) return null;
+        String text = new String(data, fieldStart, fieldEnd - fieldStart, RESPONSE_CHARSET);
+        return text.length() <= maxChars ? text : text.substring(0, maxChars) + "...";
+    }
+
+    private static int indexOfPrefix(byte[] data, int from, int end) {
+        int last = end - PREFIX.length;
+        outer:
+        for (int i = from; i <= last; i++) {
+            for (int k = 0; k < PREFIX.length; k++) {
+                if (data[i + k] != PREFIX[k]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @return 匹配到的槽位下标；symbol 后必须紧跟 ="，否则返回 -1
+     */
+    private static int matchSymbol(byte[] data, int from, int end) {
+        outer:
+        for (int s = 0; s < SYMBOLS.length; s++) {
+            byte[] symbol = SYMBOLS[s];
+            if (from + symbol.length + 2 > end) continue;
+            for (int k = 0; k < symbol.length; k++) {
+                if (data[from + k] != symbol[k]) continue outer;
+            }
+            if (data[from + symbol.length] == '=' && data[from + symbol.length + 1] == '"') {
+                return s;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(byte[] data, byte b, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (data[i] == b) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * 取逗号分隔的第 fieldIndex 个字段并解析为 double。
+     */
+    private static double parseField(byte[] data, int from, int to, int fieldIndex) {
+        int start = from;
+        for (int f = 0; f < fieldIndex; f++) {
+            int comma = indexOf(data, (byte) ',', start, to);
+            if (comma < 0) return Double.NaN;
+            start = comma + 1;
+        }
+        int stop = indexOf(data, (byte) ',', start, to);
+        return parseDecimal(data, start, stop < 0 ? to : stop);
+    }
+
+    /**
+     * 解析形如 [-+]digits[.digits] 的十进制数；格式不符返回 NaN。
+     * 位数过多或带指数的罕见情况退回 Double.parseDouble，保证结果一致。
+     */
+    static double parseDecimal(byte[] data, int from, int to) {
+        int i = from;
+        if (i >= to) return Double.NaN;
+        boolean negative = false;
+        if (data[i] == '-' || data[i] == '+') {
+            negative = data[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean dot = false;
+        boolean exact = true;
+        for (; i < to; i++) {
+            byte b = data[i];
+            if (b >= '0' && b <= '9') {
+                if (mantissa < MAX_EXACT_MANTISSA) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (dot) fractionDigits++;
+                } else {
+                    exact = false;
+                }
+                digits++;
+            } else if (b == '.' && !dot) {
+                dot = true;
+            } else if (b == 'e' || b == 'E') {
+                exact = false;
+                break;
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (digits == 0 && exact) return Double.NaN;
+        if (!exact || mantissa > MAX_EXACT_MANTISSA || fractionDigits >= POW10.length) {
+            return slowParse(data, from, to);
+        }
+        double value = mantissa / POW10[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    private static double slowParse(byte[] data, int from, int to) {
+        try {
+            return Double.parseDouble(new String(data, from, to - from, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,189 @@
+package com.goldpricetracker.backend;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 数据源健康度监控：为每个上游维护延迟、错误率与数据新鲜度，并实现熔断器。
+ *
+ * 1. 延迟与错误率都用 EWMA 平滑，反映近期表现。
+ * 2. 熔断器：连续失败 FAILURE_THRESHOLD 次后打开 (OPEN)，冷却期内不再请求该源；
+ *    冷却期满进入半开 (HALF_OPEN)，只放行一个探测请求，成功则关闭，失败则重新打开并加倍冷却时间。
+ * 3. 备用源按得分排序（延迟越低、错误率越低越靠前），最健康的源最先被请求。
+ */
+public class SourceHealthMonitor {
+
+    /** 熔断器状态 */
+    public enum CircuitState { CLOSED, OPEN, HALF_OPEN }
+
+    /** 连续失败多少次打开熔断器 */
+    public static final int FAILURE_THRESHOLD = 3;
+    /** 首次打开后的冷却时间，之后每次探测失败翻倍，直到上限 */
+    public static final long BASE_COOLDOWN_MS = 10_000;
+    private static final long MAX_COOLDOWN_MS = 5 * 60_000;
+    // EWMA 平滑系数
+    private static final double ALPHA = 0.2;
+    // 尚无样本时假定的延迟 (毫秒)
+    private static final double DEFAULT_LATENCY_MS = 500;
+
+    private final Stats[] stats = new Stats[PriceSource.values().length];
+
+    public SourceHealthMonitor() {
+        for (PriceSource source : PriceSource.values()) {
+            stats[source.ordinal()] = new Stats(source);
+        }
+    }
+
+    /**
+     * 是否允许向该源发出请求。
+     * 熔断器打开且冷却期已满时转为半开，并占用唯一的探测名额。
+     */
+    public boolean allowRequest(PriceSource source) {
+        Stats s = stats[source.ordinal()];
+        synchronized (s) {
+            switch (s.state) {
+                case CLOSED:
+                    return true;
+                case OPEN:
+                    if (System.currentTimeMillis() - s.openedAt < s.cooldownMs) return false;
+                    s.state = CircuitState.HALF_OPEN;
+                    s.probeInFlight = true;
+                    return true;
+                default:
+                    if (s.probeInFlight) return false;
+                    s.probeInFlight = true;
+                    return true;
+            }
+        }
+    }
+
+    public void recordSuccess(PriceSource source, long latencyMillis) {
+        Stats s = stats[source.ordinal()];
+        synchronized (s) {
+            s.updateLatency(latencyMillis);
+            s.errorRate = (1 - ALPHA) * s.errorRate;
+            s.consecutiveFailures = 0;
+            s.lastSuccessAt = System.currentTimeMillis();
+            s.successes++;
+            s.probeInFlight = false;
+            s.state = CircuitState.CLOSED;
+            s.cooldownMs = BASE_COOLDOWN_MS;
+        }
+    }
+
+    /**
+     * 记录一次失败（异常、非 2xx、无有效数据或超时）。
+     */
+    public void recordFailure(PriceSource source, long latencyMillis) {
+        Stats s = stats[source.ordinal()];
+        synchronized (s) {
+            s.updateLatency(latencyMillis);
+            s.errorRate = ALPHA + (1 - ALPHA) * s.errorRate;
+            s.consecutiveFailures++;
+            s.failures++;
+            if (s.state == CircuitState.HALF_OPEN) {
+                // 探测失败：重新打开并加倍冷却时间
+                s.probeInFlight = false;
+                s.cooldownMs = Math.min(MAX_COOLDOWN_MS, s.cooldownMs * 2);
+                open(s);
+            } else if (s.state == CircuitState.CLOSED && s.consecutiveFailures >= FAILURE_THRESHOLD) {
+                open(s);
+            }
+        }
+    }
+
+    /**
+     * 放弃一次已获准的请求（例如本轮已拿到数据而被取消），归还半开状态下的探测名额。
+     */
+    public void release(PriceSource source) {
+        Stats s = stats[source.ordinal()];
+        synchronized (s) {
+            s.probeInFlight = false;
+        }
+    }
+
+    public CircuitState getState(PriceSource source) {
+        Stats s = stats[source.ordinal()];
+        synchronized (s) {
+            return s.state;
+        }
+    }
+
+    /**
+     * 按健康度排序给定的数据源：熔断器关闭的在前，其余按得分升序。
+     */
+    public List<PriceSource> rank(List<PriceSource> candidates) {
+        List<PriceSource> ranked = new ArrayList<>(candidates);
+        ranked.sort(Comparator
+            .comparing((PriceSource p) -> getState(p) != CircuitState.CLOSED)
+            .thenComparingDouble(this::score));
+        return ranked;
+    }
+
+    /**
+     * 得分越低越健康：EWMA 延迟按错误率放大。
+     */
+    public double score(PriceSource source) {
+        Stats s = stats[source.ordinal()];
+        synchronized (s) {
+            return s.latencyMs * (1 + 4 * s.errorRate);
+        }
+    }
+
+    /**
+     * 以 JSON 输出当前健康状态，供本地服务的 /health 接口使用。
+     */
+    public String toJson() {
+        long now = System.currentTimeMillis();
+        StringBuilder sb = new StringBuilder("{\"sources\":[");
+        for (int i = 0; i < stats.length; i++) {
+            Stats s = stats[i];
+            if (i > 0) sb.append(',');
+            synchronized (s) {
+                sb.append(String.format(Locale.ROOT,
+                    "{\"source\":\"%s\",\"state\":\"%s\",\"latency_ms\":%.1f,\"error_rate\":%.3f,"
+                        + "\"staleness_ms\":%d,\"consecutive_failures\":%d,\"successes\":%d,\"failures\":%d}",
+                    s.source.id(), s.state.name().toLowerCase(Locale.ROOT), s.latencyMs, s.errorRate,
+                    s.lastSuccessAt == 0 ? -1 : now - s.lastSuccessAt,
+                    s.consecutiveFailures, s.successes, s.failures));
+            }
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static void open(Stats s) {
+        s.state = CircuitState.OPEN;
+        s.openedAt = System.currentTimeMillis();
+    }
+
+    /** 单个数据源的统计，使用自身对象锁保护 */
+    private static final class Stats {
+        final PriceSource source;
+        CircuitState state = CircuitState.CLOSED;
+        double latencyMs = DEFAULT_LATENCY_MS;
+        double errorRate = 0.0;
+        boolean hasLatency = false;
+        int consecutiveFailures = 0;
+        long successes = 0;
+        long failures = 0;
+        long lastSuccessAt = 0;
+        long openedAt = 0;
+        long cooldownMs = BASE_COOLDOWN_MS;
+        boolean probeInFlight = false;
+
+        Stats(PriceSource source) {
+            this.source = source;
+        }
+
+        void updateLatency(long latencyMillis) {
+            if (!hasLatency) {
+                latencyMs = latencyMillis;
+                hasLatency = true;
+            } else {
+                latencyMs = ALPHA * latencyMillis + (1 - ALPHA) * latencyMs;
+            }
+        }
+    }
+}
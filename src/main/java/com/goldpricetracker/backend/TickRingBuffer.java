@@ -0,0 +1,156 @@
+package com.goldpricetracker.backend;
+
+import java.lang.invoke.VarHandle;
+
+/**
+ * 最近 tick 的定长环形缓冲区：单写者、多读者、无锁。
+ *
+ * 数据按列存放在基本类型数组中（序号、时间戳、国内金价、国际金价、汇率、flags），
+ * 容量固定，内存占用可预期：默认 131072 条 × 44 字节 ≈ 5.8MB，
+ * 即使按最快的 750 毫秒轮询也能容纳 24 小时的逐笔数据。
+ *
+ * 并发约定：
+ * 1. 只有一个线程调用 add()（PriceHub 的发布路径）。
+ * 2. 写者先写槽位数据，再以 volatile 写发布新的计数 published。
+ * 3. 读者读取槽位后执行 acquireFence 再重读 published，若该槽位可能已被覆盖（或正在被覆盖）则丢弃。
+ * 遍历不分配对象，直接把基本类型值交给回调。
+ */
+public class TickRingBuffer {
+
+    public static final int DEFAULT_CAPACITY = 1 << 17;
+
+    /** 遍历回调 */
+    @FunctionalInterface
+    public interface TickVisitor {
+        /**
+         * @return false 表示停止遍历
+         */
+        boolean onTick(long sequence, long timestamp, double domestic, double international, double rate, int flags);
+    }
+
+    private final int capacity;
+    private final int mask;
+    private final long[] sequences;
+    private final long[] timestamps;
+    private final double[] domestic;
+    private final double[] international;
+    private final double[] rate;
+    private final int[] flags;
+
+    // 已发布的总条数；槽位下标 = 条目编号 & mask
+    private volatile long published = 0;
+
+    public TickRingBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity 容量，必须是 2 的幂
+     */
+    public TickRingBuffer(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("容量必须是 2 的幂");
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.sequences = new long[capacity];
+        this.timestamps = new long[capacity];
+        this.domestic = new double[capacity];
+        this.international = new double[capacity];
+        this.rate = new double[capacity];
+        this.flags = new int[capacity];
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return 当前可读的条数
+     */
+    public int size() {
+        return (int) Math.min(published, capacity - 1);
+    }
+
+    /**
+     * 追加一个快照（仅限单一写线程调用）。
+     */
+    public void add(PriceSnapshot snapshot) {
+        long n = published;
+        int slot = (int) (n & mask);
+        sequences[slot] = snapshot.getSequence();
+        timestamps[slot] = snapshot.getTimestamp();
+        domestic[slot] = snapshot.getDomestic();
+        international[slot] = snapshot.getInternational();
+        rate[slot] = snapshot.getRate();
+        flags[slot] = snapshot.getFlags();
+        published = n + 1;
+    }
+
+    /**
+     * 从时间戳不早于 fromTimestamp 的第一条开始，按时间顺序遍历。
+     */
+    public void forEachSince(long fromTimestamp, TickVisitor visitor) {
+        long end = published;
+        long start = oldest(end);
+        forEach(lowerBound(timestamps, start, end, fromTimestamp), end, visitor);
+    }
+
+    /**
+     * 遍历序号大于 afterSequence 的所有条目（用于断线重连后的补发）。
+     */
+    public void forEachAfterSequence(long afterSequence, TickVisitor visitor) {
+        long end = published;
+        long start = oldest(end);
+        forEach(lowerBound(sequences, start, end, afterSequence + 1), end, visitor);
+    }
+
+    /**
+     * @return 缓冲区中最早一条的序号；为空时返回 -1
+     */
+    public long oldestSequence() {
+        long end = published;
+        long start = oldest(end);
+        if (start >= end) return -1;
+        long seq = sequences[(int) (start & mask)];
+        VarHandle.acquireFence();
+        return isValid(start) ? seq : -1;
+    }
+
+    private void forEach(long from, long end, TickVisitor visitor) {
+        for (long i = from; i < end; i++) {
+            int slot = (int) (i & mask);
+            long seq = sequences[slot];
+            long ts = timestamps[slot];
+            double d = domestic[slot];
+            double in = international[slot];
+            double r = rate[slot];
+            int f = flags[slot];
+            VarHandle.acquireFence();
+            if (!isValid(i)) continue; // 读取期间被写者覆盖，丢弃
+            if (!visitor.onTick(seq, ts, d, in, r, f)) return;
+        }
+    }
+
+    /**
+     * 写者正在写的条目编号是 published，它会覆盖编号 published - capacity 的槽位，
+     * 所以只有编号大于 published - capacity 的条目是可靠的。
+     */
+    private boolean isValid(long index) {
+        return index > published - capacity;
+    }
+
+    private long oldest(long end) {
+        return Math.max(0, end - capacity + 1);
+    }
+
+    /** 在单调不减的列上二分查找第一个 >= key 的条目编号 */
+    private long lowerBound(long[] column, long lo, long hi, long key) {
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (column[(int) (mid & mask)] < key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
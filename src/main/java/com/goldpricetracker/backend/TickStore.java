@@ -0,0 +1,75 @@
+package com.goldpricetracker.backend;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 价格 tick 的持久化存储：每个快照追加为一条定长二进制记录
+ * (时间戳, 国内金价, 国际金价, 汇率, flags)，底层是 MappedRecordLog 的内存映射段文件。
+ *
+ * 每条记录 40 字节，按 2 秒一次约 1.7MB/天；每段 65536 条（约 36 小时），
+ * 原始 tick 默认保留 90 天，更长的历史由 K 线数据承担。
+ * 追加不经过堆分配，可以长期每个 tick 调用。
+ */
+public class TickStore implements Closeable {
+
+    /** 默认存储目录（相对运行目录，与配置文件放在一起） */
+    public static final Path DEFAULT_DIR = Paths.get("data", "ticks");
+
+    private static final int RECORDS_PER_SEGMENT = 65536;
+    private static final long RETENTION_MS = TimeUnit.DAYS.toMillis(90);
+
+    /** 范围扫描的回调 */
+    @FunctionalInterface
+    public interface TickVisitor {
+        /**
+         * @return false 表示停止扫描
+         */
+        boolean onTick(long timestamp, double domestic, double international, double rate, int flags);
+    }
+
+    private final MappedRecordLog log;
+    private final double[] values = new double[3];
+
+    public TickStore(Path dir) throws IOException {
+        this.log = new MappedRecordLog(dir, "ticks", 3, RECORDS_PER_SEGMENT, RETENTION_MS);
+    }
+
+    /**
+     * 追加一个快照。
+     */
+    public synchronized void append(PriceSnapshot snapshot) throws IOException {
+        values[0] = snapshot.getDomestic();
+        values[1] = snapshot.getInternational();
+        values[2] = snapshot.getRate();
+        log.append(snapshot.getTimestamp(), values, snapshot.getFlags());
+    }
+
+    /**
+     * 读取最后一条记录，还原为快照（序号为 0，国际金价来源未知）。
+     * @return 最后一条记录；存储为空时返回 null
+     */
+    public PriceSnapshot readLast() throws IOException {
+        PriceSnapshot[] last = new PriceSnapshot[1];
+        log.readLast((ts, v, flags) -> {
+            last[0] = new PriceSnapshot(0, ts, v[0], v[1], v[2], flags, null);
+            return false;
+        });
+        return last[0];
+    }
+
+    /**
+     * 按时间范围 [from, to] 顺序扫描 tick。
+     */
+    public void scan(long from, long to, TickVisitor visitor) throws IOException {
+        log.scan(from, to, (ts, v, flags) -> visitor.onTick(ts, v[0], v[1], v[2], flags));
+    }
+
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+}
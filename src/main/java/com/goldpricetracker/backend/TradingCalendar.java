@@ -0,0 +1,262 @@
+package com.goldpricetracker.backend;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 上海黄金交易所交易日历：把交易时段规则与节假日表预编译成按分钟的开/休市位图。
+ *
+ * 交易时间规则（北京时间）：
+ * 周一至周五：09:00-11:30, 13:30-15:30, 20:00-02:30(次日)
+ * 周末休市；周一凌晨没有夜盘（周日晚上不开夜盘）。
+ * 节假日全天休市，节假日前最后一个交易日没有夜盘。
+ *
+ * 为什么要预编译？
+ * 原来每个 tick 都要构造 LocalDateTime / LocalTime 并做一串 isAfter / isBefore 比较，
+ * 而且不认识节假日。现在每年编译一次位图（366 天 × 1440 分钟 ≈ 64KB），
+ * 查询只是一次除法加一次位运算，不分配任何对象；
+ * 同时可以快速回答 "下一次开市 / 休市是什么时候"，让轮询在长休市期间直接睡到开市。
+ *
+ * 时段按分钟、左闭右开计算：09:00 开市，11:30 这一分钟视为休市。
+ *
+ * 节假日表 sge_holidays.txt 需要每年按交易所公告补上新一年的休市日。
+ * 表中没有某一年的日期时，该年只按周末休市计算（节假日会被当成交易日），编译该年位图时会记一条警告。
+ */
+public class TradingCalendar {
+    private static final Logger logger = LoggerFactory.getLogger(TradingCalendar.class);
+
+    // 运行目录下的节假日文件，优先于内置资源
+    private static final String HOLIDAY_FILE = "sge_holidays.txt";
+    private static final String HOLIDAY_RESOURCE = "/calendar/sge_holidays.txt";
+
+    private static final long MINUTE_MS = 60_000L;
+    private static final long OFFSET_MS = 8 * 3_600_000L;
+    private static final int MINUTES_PER_DAY = 1440;
+    // next 查询最多向后搜索的年数
+    private static final int SEARCH_YEARS = 2;
+
+    // 交易时段 (当天起始分钟, 结束分钟)，左闭右开
+    private static final int[][] DAY_SESSIONS = { { 9 * 60, 11 * 60 + 30 }, { 13 * 60 + 30, 15 * 60 + 30 } };
+    private static final int NIGHT_START = 20 * 60;
+    private static final int NIGHT_END_NEXT_DAY = 2 * 60 + 30;
+
+    private final Set<LocalDate> holidays;
+    private final Map<Integer, YearBitmap> compiled = new HashMap<>();
+    // 最近一次命中的年份，热路径上只读这个 volatile 字段
+    private volatile YearBitmap current;
+
+    public TradingCalendar(Collection<LocalDate> holidays) {
+        this.holidays = new HashSet<>(holidays);
+    }
+
+    /**
+     * @return 全进程共享的默认日历（首次使用时加载节假日文件）
+     */
+    public static TradingCalendar getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * 加载节假日：运行目录下的 sge_holidays.txt 优先，否则使用内置资源。
+     */
+    public static TradingCalendar load() {
+        Set<LocalDate> dates = new HashSet<>();
+        Path file = Paths.get(HOLIDAY_FILE);
+        try {
+            if (Files.isRegularFile(file)) {
+                try (InputStream in = Files.newInputStream(file)) {
+                    readHolidays(in, dates);
+                }
+            } else {
+                try (InputStream in = TradingCalendar.class.getResourceAsStream(HOLIDAY_RESOURCE)) {
+                    if (in != null) readHolidays(in, dates);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("读取节假日文件失败，仅按周末规则计算: " + e.getMessage());
+        }
+        return new TradingCalendar(dates);
+    }
+
+    private static void readHolidays(InputStream in, Set<LocalDate> dates) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            try {
+                dates.add(LocalDate.parse(line));
+            } catch (DateTimeParseException e) {
+                logger.warn("忽略无法识别的节假日: " + line);
+            }
+        }
+    }
+
+    /**
+     * 判断某一时刻是否处于交易时段。不分配对象。
+     */
+    public boolean isOpen(long epochMillis) {
+        long minute = Math.floorDiv(epochMillis + OFFSET_MS, MINUTE_MS);
+        YearBitmap year = current;
+        if (year == null || !year.contains(minute)) {
+            year = yearFor(minute);
+        }
+        return year.isOpen(minute);
+    }
+
+    /**
+     * @return 不早于 epochMillis 的下一次开市时刻；当前已开市则返回 epochMillis；
+     *         搜索范围内没有开市时段时返回 Long.MAX_VALUE
+     */
+    public long nextOpen(long epochMillis) {
+        return nextTransition(epochMillis, true);
+    }
+
+    /**
+     * @return 不早于 epochMillis 的下一次休市时刻；当前已休市则返回 epochMillis；
+     *         搜索范围内一直开市时返回 Long.MAX_VALUE
+     */
+    public long nextClose(long epochMillis) {
+        return nextTransition(epochMillis, false);
+    }
+
+    private long nextTransition(long epochMillis, boolean wantOpen) {
+        if (isOpen(epochMillis) == wantOpen) return epochMillis;
+        long minute = Math.floorDiv(epochMillis + OFFSET_MS, MINUTE_MS);
+        for (int i = 0; i <= SEARCH_YEARS; i++) {
+            YearBitmap year = yearFor(minute);
+            long found = year.find(minute, wantOpen);
+            if (found >= 0) {
+                return found * MINUTE_MS - OFFSET_MS;
+            }
+            minute = year.endMinute;
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private synchronized YearBitmap yearFor(long localMinute) {
+        int year = LocalDate.ofEpochDay(Math.floorDiv(localMinute, MINUTES_PER_DAY)).getYear();
+        YearBitmap bitmap = compiled.get(year);
+        if (bitmap == null) {
+            bitmap = compile(year);
+            compiled.put(year, bitmap);
+        }
+        current = bitmap;
+        return bitmap;
+    }
+
+    /**
+     * 编译某一年的分钟位图。上一年 12 月 31 日的夜盘会延续到本年 1 月 1 日凌晨，一并处理。
+     */
+    private YearBitmap compile(int year) {
+        if (holidays.stream().noneMatch(d -> d.getYear() == year)) {
+            logger.warn("节假日表中没有 " + year + " 年的休市日，该年仅按周末规则计算；"
+                    + "请按上海黄金交易所的休市安排公告更新 " + HOLIDAY_FILE);
+        }
+        LocalDate first = LocalDate.of(year, 1, 1);
+        LocalDate last = LocalDate.of(year, 12, 31);
+        YearBitmap bitmap = new YearBitmap(first, last);
+        for (LocalDate day = first.minusDays(1); !day.isAfter(last); day = day.plusDays(1)) {
+            if (!isTradingDay(day)) continue;
+            long dayStart = day.toEpochDay() * MINUTES_PER_DAY;
+            for (int[] session : DAY_SESSIONS) {
+                bitmap.markOpen(dayStart + session[0], dayStart + session[1]);
+            }
+            if (hasNightSession(day)) {
+                bitmap.markOpen(dayStart + NIGHT_START, dayStart + MINUTES_PER_DAY + NIGHT_END_NEXT_DAY);
+            }
+        }
+        return bitmap;
+    }
+
+    private boolean isTradingDay(LocalDate day) {
+        DayOfWeek dow = day.getDayOfWeek();
+        return dow != DayOfWeek.SATURDAY && dow != DayOfWeek.SUNDAY && !holidays.contains(day);
+    }
+
+    /**
+     * 夜盘只在下一个工作日不是节假日时才开（节假日前最后一个交易日无夜盘）。
+     */
+    private boolean hasNightSession(LocalDate day) {
+        LocalDate next = day.plusDays(1);
+        while (next.getDayOfWeek() == DayOfWeek.SATURDAY || next.getDayOfWeek() == DayOfWeek.SUNDAY) {
+            next = next.plusDays(1);
+        }
+        return !holidays.contains(next);
+    }
+
+    /**
+     * 一年的分钟位图：第 i 位表示该年第 i 分钟（北京时间）是否开市。
+     */
+    private static final class YearBitmap {
+        final long startMinute; // 本地分钟序号 (含 +8 小时偏移)
+        final long endMinute;   // 不含
+        final long[] words;
+
+        YearBitmap(LocalDate first, LocalDate last) {
+            this.startMinute = first.toEpochDay() * MINUTES_PER_DAY;
+            this.endMinute = (last.toEpochDay() + 1) * MINUTES_PER_DAY;
+            this.words = new long[(int) ((endMinute - startMinute + 63) >>> 6)];
+        }
+
+        boolean contains(long minute) {
+            return minute >= startMinute && minute < endMinute;
+        }
+
+        boolean isOpen(long minute) {
+            int index = (int) (minute - startMinute);
+            return (words[index >>> 6] & (1L << index)) != 0;
+        }
+
+        /** 标记 [from, to) 为开市，超出本年范围的部分忽略 */
+        void markOpen(long from, long to) {
+            long a = Math.max(from, startMinute);
+            long b = Math.min(to, endMinute);
+            for (long m = a; m < b; m++) {
+                int index = (int) (m - startMinute);
+                words[index >>> 6] |= 1L << index;
+            }
+        }
+
+        /**
+         * 从 minute 开始查找第一个开市 (wantOpen) 或休市的分钟。
+         * @return 本地分钟序号；本年内没有则返回 -1
+         */
+        long find(long minute, boolean wantOpen) {
+            int index = (int) (Math.max(minute, startMinute) - startMinute);
+            int total = (int) (endMinute - startMinute);
+            int w = index >>> 6;
+            long word = wantOpen ? words[w] : ~words[w];
+            word &= -1L << index; // 屏蔽 index 之前的位
+            while (true) {
+                if (word != 0) {
+                    int found = (w << 6) + Long.numberOfTrailingZeros(word);
+                    return found < total ? startMinute + found : -1;
+                }
+                if (++w >= words.length) return -1;
+                word = wantOpen ? words[w] : ~words[w];
+            }
+        }
+    }
+
+    private static final class Holder {
+        static final TradingCalendar INSTANCE = load();
+    }
+}
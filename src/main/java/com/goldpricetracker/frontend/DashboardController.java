@@ -1,6 +1,11 @@
 package com.goldpricetracker.frontend;
 
-import com.goldpricetracker.backend.PriceService;
+import com.goldpricetracker.backend.AlertEngine;
+import com.goldpricetracker.backend.ConfigSnapshot;
+import com.goldpricetracker.backend.ConfigStore;
+import com.goldpricetracker.backend.PriceHub;
+import com.goldpricetracker.backend.PriceRuleSet;
+import com.goldpricetracker.backend.PriceSnapshot;
 import com.goldpricetracker.backend.StartupManager;
 import com.goldpricetracker.backend.TaskbarLocator;
 import com.goldpricetracker.backend.WindowStyleHelper;
@@ -13,6 +18,7 @@ import javafx.scene.control.ContextMenu;
 import javafx.scene.control.Label;
 import javafx.scene.control.MenuItem;
 import javafx.scene.control.CheckMenuItem;
+import javafx.scene.control.Tooltip;
 import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.VBox;
@@ -26,6 +32,7 @@ import javafx.geometry.Rectangle2D;
 import javafx.util.Duration;
 import javafx.animation.PauseTransition;
 
+import java.awt.EventQueue;
 import java.awt.SystemTray;
 import java.awt.TrayIcon;
 import java.awt.PopupMenu;
@@ -35,7 +42,6 @@ import java.awt.Toolkit;
 import java.awt.Font;
 import java.awt.CheckboxMenuItem;
 import java.awt.image.BufferedImage;
-import java.awt.Graphics2D;
 import java.awt.GraphicsEnvironment;
 import javax.swing.JPopupMenu;
 import javax.swing.JMenuItem;
@@ -46,9 +52,6 @@ import javax.swing.SwingUtilities;
 import java.io.*;
 import java.util.Map;
 import java.util.HashMap;
-import java.util.Properties;
-import java.util.Timer;
-import java.util.TimerTask;
 
 /**
  * 主界面控制器：负责处理 UI 逻辑、数据更新和用户交互。
@@ -62,32 +65,31 @@ public class DashboardController {
     @FXML private Label domesticTrendLabel; 
     @FXML private Label internationalTrendLabel; 
 
-    // 后端服务实例
-    private final PriceService priceService = new PriceService();
-    private final Timer timer = new Timer(true);
-    private Properties config = new Properties();
+    // 后端服务实例：全进程共享的价格中心
+    private final PriceHub priceHub = PriceHub.getInstance();
+    // 全进程共享的配置；读取当前值用 configStore.current()
+    private final ConfigStore configStore = ConfigStore.getInstance();
     
     private boolean isLocked = false;
     private boolean alwaysOnTop = false;
     private boolean clickThrough = false;
     private boolean snapToEdges = false;
     
-    private static final String CONFIG_FILE = "gold_tracker_config.properties";
     private Stage stage;
     
-    private Map<String, Long> lastAlertTime = new HashMap<>();
-    private static final long ALERT_COOLDOWN = 10 * 60 * 1000;
-    
-    // 记录上一次价格用于计算趋势
-    private double prevDomestic = 0.0;
-    private double prevInternational = 0.0;
+    // 由配置编译的显隐规则，配置变化时整体替换
+    private volatile PriceRuleSet rules;
+    // 差量渲染层：与脉冲同步合并快照，只更新变化的节点
+    private PriceRenderer renderer;
+    // 根节点上注入的颜色变量（looked-up color），由 dashboard.css 引用
+    private String colorVars = "";
 
     @FXML
     public void initialize() {
         loadConfig();
-        
-        // 设置默认样式：透明背景，圆角
-        rootBox.setStyle("-fx-background-color: transparent; -fx-padding: 2 8;");
+        // 背景、字体与涨跌颜色见 css/dashboard.css
+        renderer = new PriceRenderer(rootBox, domesticPriceLabel, internationalPriceLabel,
+                domesticTrendLabel, internationalTrendLabel, () -> rules);
         
         // 给文字添加阴影，确保在浅色背景下也能看清
         DropShadow dropShadow = new DropShadow();
@@ -103,6 +105,7 @@ public class DashboardController {
         
         applySettings();
         setupContextMenu();
+        setupRangeTooltips();
         startDataPolling(); // 仅用于数据更新，不再维护窗口位置
         setupSystemTray();
     }
@@ -117,38 +120,48 @@ public class DashboardController {
     }
 
     private void loadConfig() {
-        try (InputStream input = new FileInputStream(CONFIG_FILE)) {
-            config.load(input);
-            System.out.println("DashboardController: Config loaded.");
-            alwaysOnTop = Boolean.parseBoolean(config.getProperty("window.always_on_top", "false"));
-            isLocked = Boolean.parseBoolean(config.getProperty("window.locked", "false"));
-            clickThrough = Boolean.parseBoolean(config.getProperty("window.click_through", "false"));
-            snapToEdges = Boolean.parseBoolean(config.getProperty("snap_to_edges", "false"));
-        } catch (IOException ignored) {
-            System.out.println("DashboardController: Config file not found or error loading.");
-        }
+        ConfigSnapshot config = configStore.current();
+        alwaysOnTop = config.getBoolean("window.always_on_top", false);
+        isLocked = config.getBoolean("window.locked", false);
+        clickThrough = config.getBoolean("window.click_through", false);
+        snapToEdges = config.getBoolean("snap_to_edges", false);
+        compileRules(configStore.current());
+        // 配置文件被外部修改时重新应用样式；窗口位置等无关的键变化不触发
+        configStore.addListener(c -> {
+            compileRules(c);
+            if (!appearanceKey(c).equals(appliedAppearance)) Platform.runLater(this::applySettings);
+        });
+    }
+
+    // 配置变化时编译一次，每个 tick 只做基本类型比较
+    private void compileRules(ConfigSnapshot config) {
+        rules = PriceRuleSet.compile(config);
+    }
+
+    // 最近一次应用的外观配置（颜色、字号），用于过滤无关的配置变化
+    private volatile String appliedAppearance = "";
+
+    private static String appearanceKey(ConfigSnapshot config) {
+        return config.get("color.domestic", "#FFD700") + "|" + config.get("color.international", "#FFFFFF")
+                + "|" + config.get("font.size", "14");
     }
 
     // 应用配置中的样式设置 (背景色、字体大小等)
-    public void applySettings() {
+    private void applySettings() {
         // 背景色强制透明，忽略配置中的 color.bg
         // String bg = config.getProperty("color.bg", "rgba(30, 30, 30, 0.85)"); 
-        String domesticColor = config.getProperty("color.domestic", "#FFD700");
-        String internationalColor = config.getProperty("color.international", "#FFFFFF");
-        String fontSize = config.getProperty("font.size", "14"); // 默认字体大小改为 14px
-
-        // 保持透明背景
-        rootBox.setStyle("-fx-background-color: transparent; -fx-padding: 2 8;");
-        
-        // 增加字体粗细和内部留白，避免趋势符号遮挡数字
-        String fontStyle = String.format("-fx-font-family: 'Segoe UI', sans-serif; -fx-font-size: %spx; -fx-font-weight: bold;", fontSize);
-        domesticPriceLabel.setStyle(fontStyle + " -fx-text-fill: " + domesticColor + "; -fx-padding: 0 6 0 0;");
-        internationalPriceLabel.setStyle(fontStyle + " -fx-text-fill: " + internationalColor + "; -fx-padding: 0 6 0 0;");
-        
-        // 趋势标签样式
-        String trendStyle = "-fx-font-family: 'Segoe UI', sans-serif; -fx-font-size: 12px; -fx-padding: 0 0 0 2;";
-        domesticTrendLabel.setStyle(trendStyle);
-        internationalTrendLabel.setStyle(trendStyle);
+        ConfigSnapshot config = configStore.current();
+        String domesticColor = config.get("color.domestic", "#FFD700");
+        String internationalColor = config.get("color.international", "#FFFFFF");
+        String fontSize = config.get("font.size", "14"); // 默认字体大小改为 14px
+        appliedAppearance = appearanceKey(config);
+
+        // 颜色以变量形式注入根节点，标签本身只覆盖字号；透明背景、字重等由样式表提供
+        colorVars = "-domestic-color: " + domesticColor + "; -international-color: " + internationalColor + ";";
+        rootBox.setStyle(colorVars);
+        String fontStyle = "-fx-font-size: " + fontSize + "px;";
+        domesticPriceLabel.setStyle(fontStyle);
+        internationalPriceLabel.setStyle(fontStyle);
     }
 
     private void setupContextMenu() {
@@ -201,14 +214,6 @@ public class DashboardController {
         }
     }
 
-    private void saveConfig() {
-        try (OutputStream output = new FileOutputStream(CONFIG_FILE)) {
-            config.store(output, null);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
-
     private boolean isSettingsOpen = false;
 
     private void openSettings() {
@@ -218,7 +223,7 @@ public class DashboardController {
             Parent root = loader.load();
             
             SettingsController controller = loader.getController();
-            controller.setMainController(this, config);
+            controller.setConfigStore(configStore);
             
             Stage settingsStage = new Stage();
             settingsStage.setTitle("设置");
@@ -235,96 +240,38 @@ public class DashboardController {
         }
     }
 
-    private void updatePrices() {
-        Map<String, Double> prices = priceService.fetchPrices();
-        double domestic = prices.getOrDefault("domestic", 0.0);
-        double international = prices.getOrDefault("international", 0.0);
-        boolean isMarketClosed = prices.getOrDefault("market_closed", 0.0) > 0.5;
-
-        checkAlerts(domestic, international);
-
-        Platform.runLater(() -> {
-            boolean isVisibilityEnabled = Boolean.parseBoolean(config.getProperty("visibility.enabled", "false"));
-            boolean showContent = true;
-
-            if (isVisibilityEnabled && !shouldShow(domestic, international)) {
-                showContent = false;
-            }
-
-            if (showContent) {
-                rootBox.setOpacity(1.0);
-                if (domestic > 0) {
-                    domesticPriceLabel.setText(String.format("%.2f", domestic));
-                    internationalPriceLabel.setText(String.format("%.2f", international));
-                    
-                    // 样式调整：休市时国内金价颜色变暗，提示用户这是计算值/收盘值
-                    if (isMarketClosed) {
-                        domesticPriceLabel.setStyle("-fx-text-fill: #AAA; -fx-font-weight: bold; -fx-font-size: 14px;");
-                    } else {
-                        // 开市：恢复亮金色
-                        String domesticColor = config.getProperty("color.domestic", "#FFD700");
-                        domesticPriceLabel.setStyle("-fx-text-fill: " + domesticColor + "; -fx-font-weight: bold; -fx-font-size: 14px;");
-                    }
-                    // 国际金：保持 14px 与配置颜色
-                    String internationalColor = config.getProperty("color.international", "#FFFFFF");
-                    internationalPriceLabel.setStyle("-fx-text-fill: " + internationalColor + "; -fx-font-weight: bold; -fx-font-size: 14px;");
-                    
-                    // 更新趋势
-                    updateTrend(domestic, prevDomestic, domesticTrendLabel);
-                    updateTrend(international, prevInternational, internationalTrendLabel);
-                    
-                    prevDomestic = domestic;
-                    prevInternational = international;
-                } else {
-                    domesticPriceLabel.setText("--");
-                    internationalPriceLabel.setText("--");
-                }
-            } else {
-                domesticPriceLabel.setText("");
-                internationalPriceLabel.setText("");
-                rootBox.setOpacity(0.01); 
-            }
-        });
+    // 在发布快照的线程上调用（任何调用了 PriceHub.refresh() 的线程，注册时则是当前线程）；合并与 FX 线程切换由渲染层负责
+    private void updatePrices(PriceSnapshot snapshot) {
+        renderer.submit(snapshot);
     }
 
-    // 更新趋势箭头和颜色
-    private void updateTrend(double current, double prev, Label label) {
-        if (prev <= 0) {
-            label.setText("");
-            return;
-        }
-        if (current > prev) {
-            label.setText("▲");
-            label.setStyle("-fx-text-fill: #FF4444; -fx-font-size: 10px;"); // 红涨
-        } else if (current < prev) {
-            label.setText("▼");
-            label.setStyle("-fx-text-fill: #44FF44; -fx-font-size: 10px;"); // 绿跌
-        } else {
-            label.setText("");
-        }
+    // 悬停提示：最近 24 小时的涨跌幅与区间，仅在提示框弹出时从环形缓冲区计算
+    private void setupRangeTooltips() {
+        installRangeTooltip(domesticPriceLabel, true);
+        installRangeTooltip(internationalPriceLabel, false);
     }
 
-    private void checkAlerts(double domestic, double international) {
-        if (domestic <= 0 && international <= 0) return;
-
-        double dMax = parseDouble(config.getProperty("alert.domestic.max", "0"));
-        double dMin = parseDouble(config.getProperty("alert.domestic.min", "0"));
-        double iMax = parseDouble(config.getProperty("alert.international.max", "0"));
-        double iMin = parseDouble(config.getProperty("alert.international.min", "0"));
-
-        if (dMax > 0 && domestic >= dMax) triggerAlert("domestic_max", "国内金价预警", "当前价格: " + domestic + " (高于 " + dMax + ")");
-        if (dMin > 0 && domestic > 0 && domestic <= dMin) triggerAlert("domestic_min", "国内金价预警", "当前价格: " + domestic + " (低于 " + dMin + ")");
-        
-        if (iMax > 0 && international >= iMax) triggerAlert("intl_max", "国际金价预警", "当前价格: " + international + " (高于 " + iMax + ")");
-        if (iMin > 0 && international > 0 && international <= iMin) triggerAlert("intl_min", "国际金价预警", "当前价格: " + international + " (低于 " + iMin + ")");
+    private void installRangeTooltip(Label label, boolean domestic) {
+        Tooltip tooltip = new Tooltip();
+        tooltip.setOnShowing(e -> tooltip.setText(describeRecentRange(domestic)));
+        label.setTooltip(tooltip);
     }
 
-    private void triggerAlert(String key, String title, String message) {
-        long now = System.currentTimeMillis();
-        if (now - lastAlertTime.getOrDefault(key, 0L) > ALERT_COOLDOWN) {
-            lastAlertTime.put(key, now);
-            Platform.runLater(() -> showNotification(title, message));
-        }
+    private String describeRecentRange(boolean domestic) {
+        double[] stats = { 0, Double.MAX_VALUE, 0, 0 }; // 首个值、最低、最高、最新
+        long since = System.currentTimeMillis() - 24L * 60 * 60 * 1000;
+        priceHub.getRecentTicks().forEachSince(since, (seq, ts, d, i, r, flags) -> {
+            double v = domestic ? d : i;
+            if (v <= 0) return true;
+            if (stats[0] == 0) stats[0] = v;
+            stats[1] = Math.min(stats[1], v);
+            stats[2] = Math.max(stats[2], v);
+            stats[3] = v;
+            return true;
+        });
+        if (stats[0] == 0) return "暂无近 24 小时数据";
+        double change = (stats[3] - stats[0]) / stats[0] * 100;
+        return String.format("24h %+.2f%%  区间 %.2f - %.2f", change, stats[1], stats[2]);
     }
 
     private void showNotification(String title, String message) {
@@ -359,29 +306,13 @@ public class DashboardController {
         delay.play();
     }
 
-    private double parseDouble(String val) {
-        try { return Double.parseDouble(val); } catch (Exception e) { return 0.0; }
-    }
-
-    private boolean shouldShow(double domestic, double international) {
-        double minD = parseDouble(config.getProperty("threshold.domestic.min", "0"));
-        double maxD = parseDouble(config.getProperty("threshold.domestic.max", "0"));
-        double minI = parseDouble(config.getProperty("threshold.international.min", "0"));
-        double maxI = parseDouble(config.getProperty("threshold.international.max", "0"));
-
-        boolean showD = (minD == 0 && maxD == 0) || (domestic >= minD && domestic <= maxD);
-        boolean showI = (minI == 0 && maxI == 0) || (international >= minI && international <= maxI);
-
-        return showD && showI;
-    }
-
+    // 订阅价格中心的快照推送；轮询本身由 PriceHub 负责，预警由 AlertEngine 在发布快照的线程上求值
     private void startDataPolling() {
-        timer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                updatePrices();
-            }
-        }, 0, 2000); 
+        AlertEngine alertEngine = AlertEngine.getInstance();
+        alertEngine.addListener(alert -> Platform.runLater(() -> showNotification(alert.getTitle(), alert.getMessage())));
+        alertEngine.start();
+        priceHub.addListener(this::updatePrices);
+        priceHub.start();
     }
     
     // 诊断：仅输出一次坐标计算日志
@@ -414,21 +345,17 @@ public class DashboardController {
                 return;
             }
             // 读取配置的期望字体大小
-            int targetFont = 14;
-            try { targetFont = Integer.parseInt(config.getProperty("font.size", "14")); } catch (Exception ignored) {}
+            ConfigSnapshot config = configStore.current();
+            int targetFont = config.getInt("font.size", 14);
             // 自顶向下尝试，直到上下布局高度 <= 任务栏高度 - 2
             int font = targetFont;
             for (; font >= 10; font--) {
-                String domesticColor = config.getProperty("color.domestic", "#FFD700");
-                String internationalColor = config.getProperty("color.international", "#FFFFFF");
-                String fontStyle = String.format("-fx-font-family: 'Segoe UI', sans-serif; -fx-font-size: %dpx; -fx-font-weight: bold;", font);
-                domesticPriceLabel.setStyle(fontStyle + " -fx-text-fill: " + domesticColor + "; -fx-padding: 0 4 0 0;");
-                internationalPriceLabel.setStyle(fontStyle + " -fx-text-fill: " + internationalColor + "; -fx-padding: 0 4 0 0;");
-                String trendStyle = String.format("-fx-font-family: 'Segoe UI', sans-serif; -fx-font-size: %dpx; -fx-padding: 0 0 0 2;", Math.max(10, font - 2));
-                domesticTrendLabel.setStyle(trendStyle);
-                internationalTrendLabel.setStyle(trendStyle);
+                // 只覆盖字号与留白，颜色仍取根节点上的变量
+                String fontStyle = "-fx-font-size: " + font + "px; -fx-padding: 0 4 0 0;";
+                domesticPriceLabel.setStyle(fontStyle);
+                internationalPriceLabel.setStyle(fontStyle);
                 // 更新容器 padding 与 spacing，进一步压缩高度
-                rootBox.setStyle("-fx-background-color: transparent; -fx-padding: 2 6;"); // 较小的上下 padding
+                rootBox.setStyle(colorVars + " -fx-padding: 2 6;"); // 较小的上下 padding
                 // 强制布局并测量高度
                 rootBox.applyCss();
                 rootBox.layout();
@@ -481,10 +408,7 @@ public class DashboardController {
             stage.setX(nx);
             stage.setY(ny);
         });
-        rootBox.setOnMouseReleased(e -> {
-            saveWindowPosition();
-            saveConfig();
-        });
+        rootBox.setOnMouseReleased(e -> saveWindowPosition());
     }
     private void setupSystemTray() {
         try {
@@ -494,17 +418,14 @@ public class DashboardController {
                 return;
             }
             SystemTray tray = SystemTray.getSystemTray();
-            // 创建简易图标：金色圆点配白色边框，避免缺图导致图标不可见
-            BufferedImage img = new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB);
-            Graphics2D g = img.createGraphics();
-            g.setRenderingHint(java.awt.RenderingHints.KEY_ANTIALIASING, java.awt.RenderingHints.VALUE_ANTIALIAS_ON);
-            g.setColor(new java.awt.Color(255, 215, 0)); // 金色
-            g.fillOval(2, 2, 12, 12);
-            g.setColor(java.awt.Color.WHITE);
-            g.drawOval(2, 2, 12, 12);
-            g.dispose();
-            TrayIcon icon = new TrayIcon(img, "Gold Price Tracker");
+            // 托盘图标实时显示国内金价整数部分：按托盘尺寸与屏幕缩放取预光栅化的字形图集
+            double scale = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                    .getDefaultConfiguration().getDefaultTransform().getScaleX();
+            TrayGlyphAtlas atlas = TrayGlyphAtlas.forScale(tray.getTrayIconSize().height, scale, chooseBestFont().getFamily());
+            trayCanvas = atlas.newCanvas();
+            TrayIcon icon = new TrayIcon(trayCanvas.render(0, TRAY_GOLD), "Gold Price Tracker");
             icon.setImageAutoSize(true);
+            trayIcon = icon;
             // 使用 Swing JPopupMenu，实现中文稳定显示
             JPopupMenu swingMenu = buildSwingTrayMenu();
             JWindow popupWindow = new JWindow();
@@ -525,6 +446,9 @@ public class DashboardController {
                 }
             });
             tray.add(icon);
+            // 快照可能在轮询线程、按需抓取的请求线程上发布，注册时还会在当前（FX）线程上立即回调一次；
+            // 画布与涨跌基准都不是线程安全的，统一交给 AWT 事件分派线程
+            priceHub.addListener(snapshot -> EventQueue.invokeLater(() -> updateTrayIcon(snapshot)));
             setupDragging();
             applyWindowStyles();
         } catch (Exception ignored) {
@@ -532,6 +456,32 @@ public class DashboardController {
             applyWindowStyles();
         }
     }
+    // 托盘图标文字颜色：红涨绿跌、持平金色、休市灰色，与任务栏小部件一致
+    private static final int TRAY_GOLD = 0xFFD700;
+    private static final int TRAY_UP = 0xFF4444;
+    private static final int TRAY_DOWN = 0x44FF44;
+    private static final int TRAY_CLOSED = 0xAAAAAA;
+    private TrayIcon trayIcon;
+    private TrayGlyphAtlas.Canvas trayCanvas;
+    private long trayPreviousCents;
+
+    // 只在 AWT 事件分派线程上调用；内容不变时画布返回 null，不触碰托盘
+    private void updateTrayIcon(PriceSnapshot snapshot) {
+        double domestic = snapshot.getDomestic();
+        long cents = Math.round(domestic * 100);
+        int color;
+        if (snapshot.isMarketClosed()) {
+            color = TRAY_CLOSED;
+        } else if (trayPreviousCents <= 0 || cents == trayPreviousCents) {
+            color = TRAY_GOLD;
+        } else {
+            color = cents > trayPreviousCents ? TRAY_UP : TRAY_DOWN;
+        }
+        trayPreviousCents = cents;
+        BufferedImage frame = trayCanvas.render((long) domestic, color);
+        if (frame != null) trayIcon.setImage(frame);
+    }
+
     private JPopupMenu buildSwingTrayMenu() {
         JPopupMenu menu = new JPopupMenu();
         Font f = chooseBestFont();
@@ -539,31 +489,27 @@ public class DashboardController {
         top.setFont(f);
         top.addActionListener(a -> {
             alwaysOnTop = top.isSelected();
-            config.setProperty("window.always_on_top", String.valueOf(alwaysOnTop));
             applyWindowStyles();
-            saveConfig();
+            configStore.set("window.always_on_top", String.valueOf(alwaysOnTop));
         });
         JCheckBoxMenuItem lock = new JCheckBoxMenuItem("锁定位置", isLocked);
         lock.setFont(f);
         lock.addActionListener(a -> {
             isLocked = lock.isSelected();
-            config.setProperty("window.locked", String.valueOf(isLocked));
-            saveConfig();
+            configStore.set("window.locked", String.valueOf(isLocked));
         });
         JCheckBoxMenuItem click = new JCheckBoxMenuItem("鼠标穿透", clickThrough);
         click.setFont(f);
         click.addActionListener(a -> {
             clickThrough = click.isSelected();
-            config.setProperty("window.click_through", String.valueOf(clickThrough));
             applyWindowStyles();
-            saveConfig();
+            configStore.set("window.click_through", String.valueOf(clickThrough));
         });
         JCheckBoxMenuItem snap = new JCheckBoxMenuItem("贴边吸附", snapToEdges);
         snap.setFont(f);
         snap.addActionListener(a -> {
             snapToEdges = snap.isSelected();
-            config.setProperty("snap_to_edges", String.valueOf(snapToEdges));
-            saveConfig();
+            configStore.set("snap_to_edges", String.valueOf(snapToEdges));
         });
         JMenuItem settings = new JMenuItem("更多设置");
         settings.setFont(f);
@@ -602,19 +548,19 @@ public class DashboardController {
     // 保存窗口位置到配置文件
     private void saveWindowPosition() {
         if (stage == null) return;
-        try (OutputStream output = new FileOutputStream(CONFIG_FILE)) {
-            if (!Double.isNaN(stage.getX())) {
-                config.setProperty("window.x", String.valueOf(stage.getX()));
-                config.setProperty("window.y", String.valueOf(stage.getY()));
-                config.store(output, null);
-            }
-        } catch (IOException ignored) {}
+        if (!Double.isNaN(stage.getX())) {
+            Map<String, String> position = new HashMap<>();
+            position.put("window.x", String.valueOf(stage.getX()));
+            position.put("window.y", String.valueOf(stage.getY()));
+            configStore.update(position);
+        }
     }
 
     private void loadWindowPosition() {
         try {
-            String x = config.getProperty("window.x");
-            String y = config.getProperty("window.y");
+            ConfigSnapshot config = configStore.current();
+            String x = config.get("window.x");
+            String y = config.get("window.y");
             
             if (stage != null) {
                 if (x != null && y != null) {
@@ -0,0 +1,191 @@
+package com.goldpricetracker.frontend;
+
+import com.goldpricetracker.backend.Metrics;
+import com.goldpricetracker.backend.PipelineEvents;
+import com.goldpricetracker.backend.PriceRuleSet;
+import com.goldpricetracker.backend.PriceSnapshot;
+import javafx.application.Platform;
+import javafx.css.PseudoClass;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * 任务栏小部件的渲染层：只把"和当前显示不一样"的部分写到节点上。
+ *
+ * 1. 与脉冲同步合并：任意线程提交快照只是替换 pending，并请求下一个脉冲；
+ *    在场景的 pre-layout 脉冲回调里取走最新的一个渲染，一帧内的多次 tick 只渲染一次。
+ * 2. 差量更新：价格按分比较，显示文本没变就不调用 setText；
+ *    涨跌 / 休市状态用 CSS 伪类切换，不再拼接内联样式，也就不会触发 CSS 重新解析。
+ * 3. 价格文本直接由整数拆分拼出，不经过 String.format。
+ */
+final class PriceRenderer {
+
+    private static final PseudoClass UP = PseudoClass.getPseudoClass("up");
+    private static final PseudoClass DOWN = PseudoClass.getPseudoClass("down");
+    private static final PseudoClass CLOSED = PseudoClass.getPseudoClass("closed");
+    private static final double HIDDEN_OPACITY = 0.01;
+
+    private final Node root;
+    private final Label domesticPrice;
+    private final Label internationalPrice;
+    private final Label domesticTrend;
+    private final Label internationalTrend;
+    private final Supplier<PriceRuleSet> rules;
+
+    private final AtomicReference<PriceSnapshot> pending = new AtomicReference<>();
+    private final Runnable pulseListener = this::onPulse;
+    private Scene attachedScene;
+
+    // 当前显示状态（仅 FX 线程访问）；价格以"分"为单位，Long.MIN_VALUE 表示未显示
+    private long shownDomestic = Long.MIN_VALUE;
+    private long shownInternational = Long.MIN_VALUE;
+    private int domesticDirection;
+    private int internationalDirection;
+    private boolean shownClosed;
+    private boolean hidden;
+
+    PriceRenderer(Node root, Label domesticPrice, Label internationalPrice,
+                  Label domesticTrend, Label internationalTrend, Supplier<PriceRuleSet> rules) {
+        this.root = root;
+        this.domesticPrice = domesticPrice;
+        this.internationalPrice = internationalPrice;
+        this.domesticTrend = domesticTrend;
+        this.internationalTrend = internationalTrend;
+        this.rules = rules;
+        root.sceneProperty().addListener((obs, oldScene, newScene) -> attach(newScene));
+        attach(root.getScene());
+    }
+
+    /**
+     * 提交一个新快照，可在任意线程调用。
+     */
+    void submit(PriceSnapshot snapshot) {
+        if (pending.getAndSet(snapshot) != null) return; // 本帧已有待渲染的快照，合并
+        if (Platform.isFxApplicationThread() && attachedScene != null) {
+            Platform.requestNextPulse();
+        } else {
+            // 场景尚未就绪或不在 FX 线程：借 runLater 进入 FX 线程，在那里请求脉冲（无场景时直接渲染）
+            Platform.runLater(() -> {
+                if (attachedScene != null) {
+                    Platform.requestNextPulse();
+                } else {
+                    onPulse();
+                }
+            });
+        }
+    }
+
+    private void attach(Scene scene) {
+        if (attachedScene == scene) return;
+        if (attachedScene != null) attachedScene.removePreLayoutPulseListener(pulseListener);
+        attachedScene = scene;
+        if (scene != null) scene.addPreLayoutPulseListener(pulseListener);
+    }
+
+    private void onPulse() {
+        PriceSnapshot snapshot = pending.getAndSet(null);
+        if (snapshot == null) return;
+        PipelineEvents.Render event = new PipelineEvents.Render();
+        event.begin();
+        int touched = render(snapshot);
+        Metrics.getInstance().onRendered(snapshot.getSequence());
+        if (event.shouldCommit()) {
+            event.sequence = snapshot.getSequence();
+            event.nodes = touched;
+            event.outcome = hidden ? "hidden" : touched == 0 ? "unchanged" : "updated";
+            event.commit();
+        }
+    }
+
+    /**
+     * @return 本次实际改动的节点数
+     */
+    private int render(PriceSnapshot snapshot) {
+        double domestic = snapshot.getDomestic();
+        double international = snapshot.getInternational();
+
+        if (!rules.get().isVisible(domestic, international)) {
+            if (hidden) return 0;
+            hidden = true;
+            domesticPrice.setText("");
+            internationalPrice.setText("");
+            root.setOpacity(HIDDEN_OPACITY);
+            shownDomestic = Long.MIN_VALUE;
+            shownInternational = Long.MIN_VALUE;
+            return 3;
+        }
+        int touched = 0;
+        if (hidden) {
+            hidden = false;
+            root.setOpacity(1.0);
+            touched++;
+        }
+
+        if (domestic <= 0) {
+            if (shownDomestic != -1) {
+                domesticPrice.setText("--");
+                internationalPrice.setText("--");
+                shownDomestic = -1;
+                shownInternational = -1;
+                touched += 2;
+            }
+            return touched;
+        }
+
+        boolean closed = snapshot.isMarketClosed();
+        if (closed != shownClosed) {
+            shownClosed = closed;
+            domesticPrice.pseudoClassStateChanged(CLOSED, closed);
+            touched++;
+        }
+
+        long d = Math.round(domestic * 100);
+        long i = Math.round(international * 100);
+        int direction = updateTrend(domesticTrend, d, shownDomestic, domesticDirection);
+        if (direction != domesticDirection) touched++;
+        domesticDirection = direction;
+        direction = updateTrend(internationalTrend, i, shownInternational, internationalDirection);
+        if (direction != internationalDirection) touched++;
+        internationalDirection = direction;
+        if (d != shownDomestic) {
+            domesticPrice.setText(formatCents(d));
+            shownDomestic = d;
+            touched++;
+        }
+        if (i != shownInternational) {
+            internationalPrice.setText(formatCents(i));
+            shownInternational = i;
+            touched++;
+        }
+        return touched;
+    }
+
+    /**
+     * 趋势箭头：与上一次显示的价格比较，上涨 ▲ 下跌 ▼，持平则清空。方向没变时不触碰节点。
+     * @return 新的方向 (1 / -1 / 0)
+     */
+    private static int updateTrend(Label label, long current, long previous, int direction) {
+        int next = previous <= 0 ? 0 : Long.compare(current, previous);
+        if (next == direction) return direction;
+        label.setText(next > 0 ? "▲" : next < 0 ? "▼" : "");
+        label.pseudoClassStateChanged(UP, next > 0);
+        label.pseudoClassStateChanged(DOWN, next < 0);
+        return next;
+    }
+
+    private static String formatCents(long cents) {
+        StringBuilder sb = new StringBuilder(12);
+        if (cents < 0) {
+            sb.append('-');
+            cents = -cents;
+        }
+        long fraction = cents % 100;
+        sb.append(cents / 100).append('.');
+        if (fraction < 10) sb.append('0');
+        return sb.append(fraction).toString();
+    }
+}
@@ -1,16 +1,17 @@
 package com.goldpricetracker.frontend;
 
+import com.goldpricetracker.backend.ConfigSnapshot;
+import com.goldpricetracker.backend.ConfigStore;
 import javafx.fxml.FXML;
+import javafx.scene.control.Alert;
 import javafx.scene.control.ColorPicker;
 import javafx.scene.control.TextField;
 import javafx.scene.control.CheckBox;
 import javafx.scene.paint.Color;
 import javafx.stage.Stage;
 
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.OutputStream;
-import java.util.Properties;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * 设置界面控制器
@@ -46,43 +47,41 @@ public class SettingsController {
     @FXML private TextField alertInternationalMaxField; // 国际金价报警上限
     @FXML private TextField alertInternationalMinField; // 国际金价报警下限
 
-    // 持有主控制器引用，以便应用设置时回调
-    private DashboardController mainController;
-    // 配置对象
-    private Properties config;
+    // 共享的配置存储；保存后主界面经由它的监听者应用新设置
+    private ConfigStore configStore;
 
     /**
      * 初始化设置数据
      * 由 DashboardController 打开设置窗口时调用
      */
-    public void setMainController(DashboardController controller, Properties config) {
-        this.mainController = controller;
-        this.config = config;
+    public void setConfigStore(ConfigStore configStore) {
+        this.configStore = configStore;
         loadValues(); // 将配置填入界面控件
     }
 
     /**
-     * 将 Properties 中的配置加载到 UI 控件中
+     * 将当前配置加载到 UI 控件中
      */
     private void loadValues() {
+        ConfigSnapshot config = configStore.current();
         // 加载颜色 (默认值: 透明背景, 金色国内价, 白色国际价)
-        bgColorPicker.setValue(Color.web(config.getProperty("color.bg", "rgba(0,0,0,0.01)")));
-        domesticColorPicker.setValue(Color.web(config.getProperty("color.domestic", "#FFD700")));
-        internationalColorPicker.setValue(Color.web(config.getProperty("color.international", "#FFFFFF")));
-        fontSizeField.setText(config.getProperty("font.size", "12"));
+        bgColorPicker.setValue(Color.web(config.get("color.bg", "rgba(0,0,0,0.01)")));
+        domesticColorPicker.setValue(Color.web(config.get("color.domestic", "#FFD700")));
+        internationalColorPicker.setValue(Color.web(config.get("color.international", "#FFFFFF")));
+        fontSizeField.setText(config.get("font.size", "12"));
         
         // 加载智能显隐设置
-        smartVisibilityToggle.setSelected(Boolean.parseBoolean(config.getProperty("visibility.enabled", "false")));
-        minDomesticField.setText(config.getProperty("threshold.domestic.min", "0"));
-        maxDomesticField.setText(config.getProperty("threshold.domestic.max", "0"));
-        minInternationalField.setText(config.getProperty("threshold.international.min", "0"));
-        maxInternationalField.setText(config.getProperty("threshold.international.max", "0"));
+        smartVisibilityToggle.setSelected(Boolean.parseBoolean(config.get("visibility.enabled", "false")));
+        minDomesticField.setText(config.get("threshold.domestic.min", "0"));
+        maxDomesticField.setText(config.get("threshold.domestic.max", "0"));
+        minInternationalField.setText(config.get("threshold.international.min", "0"));
+        maxInternationalField.setText(config.get("threshold.international.max", "0"));
         
         // 加载预警设置
-        alertDomesticMaxField.setText(config.getProperty("alert.domestic.max", "0"));
-        alertDomesticMinField.setText(config.getProperty("alert.domestic.min", "0"));
-        alertInternationalMaxField.setText(config.getProperty("alert.international.max", "0"));
-        alertInternationalMinField.setText(config.getProperty("alert.international.min", "0"));
+        alertDomesticMaxField.setText(config.get("alert.domestic.max", "0"));
+        alertDomesticMinField.setText(config.get("alert.domestic.min", "0"));
+        alertInternationalMaxField.setText(config.get("alert.international.max", "0"));
+        alertInternationalMinField.setText(config.get("alert.international.min", "0"));
     }
 
     /**
@@ -90,34 +89,34 @@ public class SettingsController {
      */
     @FXML
     private void handleSave() {
-        // 1. 将 UI 控件的值写入 Properties 对象
-        config.setProperty("color.bg", toWeb(bgColorPicker.getValue()));
-        config.setProperty("color.domestic", toWeb(domesticColorPicker.getValue()));
-        config.setProperty("color.international", toWeb(internationalColorPicker.getValue()));
-        config.setProperty("font.size", fontSizeField.getText());
+        // 1. 收集 UI 控件的值
+        Map<String, String> changes = new HashMap<>();
+        changes.put("color.bg", toWeb(bgColorPicker.getValue()));
+        changes.put("color.domestic", toWeb(domesticColorPicker.getValue()));
+        changes.put("color.international", toWeb(internationalColorPicker.getValue()));
+        changes.put("font.size", fontSizeField.getText());
         
-        config.setProperty("visibility.enabled", String.valueOf(smartVisibilityToggle.isSelected()));
-        config.setProperty("threshold.domestic.min", minDomesticField.getText());
-        config.setProperty("threshold.domestic.max", maxDomesticField.getText());
-        config.setProperty("threshold.international.min", minInternationalField.getText());
-        config.setProperty("threshold.international.max", maxInternationalField.getText());
+        changes.put("visibility.enabled", String.valueOf(smartVisibilityToggle.isSelected()));
+        changes.put("threshold.domestic.min", minDomesticField.getText());
+        changes.put("threshold.domestic.max", maxDomesticField.getText());
+        changes.put("threshold.international.min", minInternationalField.getText());
+        changes.put("threshold.international.max", maxInternationalField.getText());
         
-        config.setProperty("alert.domestic.max", alertDomesticMaxField.getText());
-        config.setProperty("alert.domestic.min", alertDomesticMinField.getText());
-        config.setProperty("alert.international.max", alertInternationalMaxField.getText());
-        config.setProperty("alert.international.min", alertInternationalMinField.getText());
+        changes.put("alert.domestic.max", alertDomesticMaxField.getText());
+        changes.put("alert.domestic.min", alertDomesticMinField.getText());
+        changes.put("alert.international.max", alertInternationalMaxField.getText());
+        changes.put("alert.international.min", alertInternationalMinField.getText());
 
-        // 2. 将 Properties 持久化到磁盘文件
-        try (OutputStream output = new FileOutputStream("gold_tracker_config.properties")) {
-            config.store(output, null);
-        } catch (IOException e) {
-            e.printStackTrace();
+        // 2. 一次性写入配置存储（原子替换配置文件）；保存失败时保留窗口，便于重试
+        if (!configStore.update(changes)) {
+            Alert alert = new Alert(Alert.AlertType.ERROR, "无法写入配置文件 " + ConfigStore.CONFIG_FILE + "，设置未保存。");
+            alert.setHeaderText("保存失败");
+            alert.initOwner(bgColorPicker.getScene().getWindow());
+            alert.showAndWait();
+            return;
         }
 
-        // 3. 通知主界面应用新设置
-        mainController.applySettings();
-        
-        // 4. 关闭设置窗口
+        // 3. 关闭设置窗口；主界面经由 ConfigStore 的监听者应用新设置，不在这里直接回调，以免同一次保存应用两遍
         closeWindow();
     }
 
@@ -0,0 +1,227 @@
+package com.goldpricetracker.frontend;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 托盘图标的字形图集：按像素尺寸（托盘尺寸 × DPI 缩放）预先光栅化数字与符号，
+ * 之后每次更新图标只是把字形的 alpha 掩码按颜色拷贝进复用的图像缓冲，不再创建图像、不再调用字体光栅化。
+ *
+ * 图集本身不可变，按像素尺寸与字体缓存，多个显示缩放各自持有一份。
+ */
+final class TrayGlyphAtlas {
+
+    /** 支持的字形：0-9 与占位用的短横 */
+    private static final String GLYPHS = "0123456789-";
+    private static final int MINUS = 10;
+    /** 图标最多显示的字符数（国内金价整数部分，如 "785"、"1024"） */
+    static final int MAX_CHARS = 4;
+    /** 背景：半透明深色圆角底，保证浅色任务栏上也看得清 */
+    private static final int BACKGROUND_ARGB = 0xB0202020;
+
+    private static final Map<String, TrayGlyphAtlas> CACHE = new HashMap<>();
+
+    private final int size;
+    private final int cellHeight;
+    private final int[] widths = new int[GLYPHS.length()];
+    private final byte[][] masks = new byte[GLYPHS.length()][];
+    private final int[] background;
+
+    /**
+     * 取得指定托盘尺寸与 DPI 缩放下的图集（同一像素尺寸只光栅化一次）。
+     * @param logicalSize SystemTray.getTrayIconSize() 给出的逻辑尺寸
+     * @param scale 屏幕缩放（1.0 / 1.25 / 1.5 / 2.0 ...）
+     */
+    static synchronized TrayGlyphAtlas forScale(int logicalSize, double scale, String fontFamily) {
+        int size = Math.max(16, (int) Math.round(logicalSize * Math.max(1.0, scale)));
+        return CACHE.computeIfAbsent(size + "|" + fontFamily, k -> new TrayGlyphAtlas(size, fontFamily));
+    }
+
+    private TrayGlyphAtlas(int size, String fontFamily) {
+        this.size = size;
+        Font font = fitFont(fontFamily, size);
+
+        BufferedImage scratch = new BufferedImage(size * 2, size * 2, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = scratch.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_OFF);
+        g.setFont(font);
+        FontMetrics fm = g.getFontMetrics();
+        // 数字没有下伸部分，单元高度取 ascent 即可，节省小图标上宝贵的纵向像素
+        cellHeight = Math.min(size, fm.getAscent());
+        int[] pixels = ((DataBufferInt) scratch.getRaster().getDataBuffer()).getData();
+        int stride = scratch.getWidth();
+        for (int gi = 0; gi < GLYPHS.length(); gi++) {
+            char c = GLYPHS.charAt(gi);
+            int w = Math.max(1, fm.charWidth(c));
+            widths[gi] = w;
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, scratch.getWidth(), scratch.getHeight());
+            g.setComposite(AlphaComposite.SrcOver);
+            g.setColor(Color.WHITE);
+            g.drawString(String.valueOf(c), 0, fm.getAscent());
+            // 只保留 alpha 通道，着色在拼合时完成，一份掩码适用于任意颜色
+            byte[] mask = new byte[w * cellHeight];
+            int top = fm.getAscent() - cellHeight;
+            for (int y = 0; y < cellHeight; y++) {
+                for (int x = 0; x < w; x++) {
+                    mask[y * w + x] = (byte) (pixels[(top + y) * stride + x] >>> 24);
+                }
+            }
+            masks[gi] = mask;
+        }
+        g.dispose();
+
+        background = renderBackground(size);
+    }
+
+    /**
+     * 找出能横向放下 MAX_CHARS 个数字的最大粗体字号；方形图标上宽度先到极限，
+     * 再把字形纵向拉伸到约 3/4 图标高度，窄高的数字在 16px 下更易辨认。
+     */
+    private static Font fitFont(String family, int size) {
+        BufferedImage probe = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = probe.createGraphics();
+        try {
+            Font font = new Font(family, Font.BOLD, 6);
+            for (int pt = size; pt > 6; pt--) {
+                Font candidate = new Font(family, Font.BOLD, pt);
+                if (g.getFontMetrics(candidate).charWidth('0') * MAX_CHARS <= size) {
+                    font = candidate;
+                    break;
+                }
+            }
+            double stretch = Math.min(2.5, size * 0.75 / Math.max(1, g.getFontMetrics(font).getAscent()));
+            return stretch > 1.0 ? font.deriveFont(AffineTransform.getScaleInstance(1.0, stretch)) : font;
+        } finally {
+            g.dispose();
+        }
+    }
+
+    private static int[] renderBackground(int size) {
+        BufferedImage img = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(new Color(BACKGROUND_ARGB, true));
+        int arc = Math.max(2, size / 4);
+        g.fillRoundRect(0, 0, size, size, arc, arc);
+        g.dispose();
+        return ((DataBufferInt) img.getRaster().getDataBuffer()).getData().clone();
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** 为一个托盘图标创建双缓冲画布 */
+    Canvas newCanvas() {
+        return new Canvas();
+    }
+
+    /**
+     * 双缓冲画布：两张复用的图像交替绘制，托盘仍持有上一张时不会被改写。
+     * 内容（数值 + 颜色）没变时直接返回 null，调用方无需 setImage。
+     * 非线程安全，只能由单个线程调用（托盘由 AWT 事件分派线程更新）。
+     */
+    final class Canvas {
+        private final BufferedImage[] images = new BufferedImage[2];
+        private final int[][] buffers = new int[2][];
+        private final int[] text = new int[MAX_CHARS];
+        private int front;
+        private long shownValue = Long.MIN_VALUE;
+        private int shownRgb = -1;
+
+        private Canvas() {
+            for (int b = 0; b < 2; b++) {
+                images[b] = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+                buffers[b] = ((DataBufferInt) images[b].getRaster().getDataBuffer()).getData();
+            }
+        }
+
+        /**
+         * 绘制整数价格（超出 MAX_CHARS 位或 <= 0 时显示 "--"）。
+         * @param rgb 文字颜色（0xRRGGBB）
+         * @return 新的一帧；与当前显示相同时返回 null
+         */
+        BufferedImage render(long value, int rgb) {
+            rgb &= 0xFFFFFF;
+            if (value == shownValue && rgb == shownRgb) return null;
+            shownValue = value;
+            shownRgb = rgb;
+
+            int count = layout(value);
+            int back = front ^ 1;
+            int[] dst = buffers[back];
+            System.arraycopy(background, 0, dst, 0, dst.length);
+
+            int total = 0;
+            for (int k = 0; k < count; k++) total += widths[text[k]];
+            int x = Math.max(0, (size - total) / 2);
+            int y = (size - cellHeight) / 2;
+            for (int k = 0; k < count; k++) {
+                x = blit(dst, text[k], x, y, rgb);
+            }
+            front = back;
+            return images[back];
+        }
+
+        /** 把数值拆成字形下标写入 text，返回字符数 */
+        private int layout(long value) {
+            if (value <= 0 || value >= pow10(MAX_CHARS)) {
+                text[0] = MINUS;
+                text[1] = MINUS;
+                return 2;
+            }
+            int count = 0;
+            for (long v = value; v > 0; v /= 10) count++;
+            long v = value;
+            for (int k = count - 1; k >= 0; k--) {
+                text[k] = (int) (v % 10);
+                v /= 10;
+            }
+            return count;
+        }
+
+        private int blit(int[] dst, int glyph, int x0, int y0, int rgb) {
+            int w = widths[glyph];
+            byte[] mask = masks[glyph];
+            for (int y = 0; y < cellHeight; y++) {
+                int row = (y0 + y) * size;
+                for (int x = 0; x < w && x0 + x < size; x++) {
+                    int a = mask[y * w + x] & 0xFF;
+                    if (a == 0) continue;
+                    int i = row + x0 + x;
+                    // 文字盖在背景上：按 alpha 与背景混合，缓冲为非预乘 ARGB
+                    int bg = dst[i];
+                    int ba = bg >>> 24;
+                    int outA = a + ba * (255 - a) / 255;
+                    int r = mix((rgb >> 16) & 0xFF, (bg >> 16) & 0xFF, a, ba, outA);
+                    int gr = mix((rgb >> 8) & 0xFF, (bg >> 8) & 0xFF, a, ba, outA);
+                    int b = mix(rgb & 0xFF, bg & 0xFF, a, ba, outA);
+                    dst[i] = (outA << 24) | (r << 16) | (gr << 8) | b;
+                }
+            }
+            return x0 + w;
+        }
+    }
+
+    private static int mix(int fg, int bg, int fa, int ba, int outA) {
+        if (outA == 0) return 0;
+        return (fg * fa + bg * ba * (255 - fa) / 255) / outA;
+    }
+
+    private static long pow10(int n) {
+        long p = 1;
+        for (int k = 0; k < n; k++) p *= 10;
+        return p;
+    }
+}
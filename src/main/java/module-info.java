@@ -9,6 +9,7 @@ module com.goldpricetracker {
     requires org.slf4j;
     requires java.desktop;
     requires jdk.httpserver;
+    requires jdk.jfr;
 
     opens com.goldpricetracker to javafx.graphics, javafx.fxml;
     opens com.goldpricetracker.frontend to javafx.fxml;